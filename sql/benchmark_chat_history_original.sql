@@ -0,0 +1,94 @@
+-- 加载对话记忆的查询基准（MySQL 8.0+）
+-- 对比旧的 COUNT + 边界探测 + OFFSET 分页（最多 4 条 SQL，只有旧索引）与新的单条 keyset 查询（新索引）
+-- 在独立的测试库执行，不要在生产库执行；整个脚本执行完后，最后一条查询输出对比结果
+-- 记录方式：每条查询重复执行 repeatCount 次，记录平均耗时（毫秒）和平均读取的行数（Handler_read_* 之和，即存储引擎实际读取的索引 / 数据行）
+
+-- 已有库先调整索引（脚本按 create_table.sql 的索引执行）：
+-- alter table chat_history_original drop index idx_appId_id_messageType, add index idx_appId_isDelete_id (appId, isDelete, id);
+
+-- 1、造数据：1000 个应用，每个应用 1000 条记录（共 100 万行），另有一个热点应用 20 万条
+set session cte_max_recursion_depth = 1000000;
+
+insert into chat_history_original (message, messageType, appId, userId)
+with recursive seq(n) as (select 1 union all select n + 1 from seq where n < 1000000)
+select concat('benchmark message ', n),
+       elt(n % 4 + 1, 'user', 'ai', 'toolExecutionRequest', 'toolExecutionResult'),
+       n % 1000 + 1,
+       1
+from seq;
+
+insert into chat_history_original (message, messageType, appId, userId)
+with recursive seq(n) as (select 1 union all select n + 1 from seq where n < 200000)
+select concat('benchmark message ', n),
+       elt(n % 4 + 1, 'user', 'ai', 'toolExecutionRequest', 'toolExecutionResult'),
+       999999,
+       1
+from seq;
+
+-- 2、计时工具：执行 repeatCount 次，结果写入 benchmark_result
+drop table if exists benchmark_result;
+create table benchmark_result
+(
+    phase       varchar(16)  not null,
+    label       varchar(64)  not null,
+    avgMs       decimal(12, 3) not null,
+    rowsPerRun  bigint       not null
+);
+
+drop procedure if exists run_benchmark;
+delimiter //
+create procedure run_benchmark(in phase varchar(16), in label varchar(64), in querySql text, in repeatCount int)
+begin
+    declare i int default 0;
+    declare startedAt datetime(6);
+    declare rowsRead bigint;
+    -- 只取行数不返回结果集，避免客户端传输影响计时
+    set @benchmark_sql = concat('select count(*) into @benchmark_ignored from (', querySql, ') t');
+    prepare stmt from @benchmark_sql;
+    flush status;
+    set startedAt = now(6);
+    while i < repeatCount do
+        execute stmt;
+        set i = i + 1;
+    end while;
+    select sum(variable_value) into rowsRead
+    from performance_schema.session_status
+    where variable_name in ('Handler_read_first', 'Handler_read_key', 'Handler_read_last', 'Handler_read_next',
+                            'Handler_read_prev', 'Handler_read_rnd', 'Handler_read_rnd_next');
+    insert into benchmark_result
+    values (phase, label, timestampdiff(microsecond, startedAt, now(6)) / 1000 / repeatCount, rowsRead div repeatCount);
+    deallocate prepare stmt;
+end //
+delimiter ;
+
+-- 3、改造前（maxCount = 50，热点应用）：去掉新索引，旧查询只能用 idx_appId
+alter table chat_history_original drop index idx_appId_isDelete_id;
+analyze table chat_history_original;
+
+call run_benchmark('before', 'count', 'select count(*) from chat_history_original where appId = 999999 and isDelete = 0', 20);
+call run_benchmark('before', 'edge check (offset 50)', 'select * from chat_history_original where appId = 999999 and isDelete = 0 order by id desc limit 50, 1', 20);
+call run_benchmark('before', 'page (offset 1)', 'select * from chat_history_original where appId = 999999 and isDelete = 0 order by id desc limit 1, 51', 20);
+
+-- 4、改造后：一次取 maxCount + 2 条，只查询加载用到的列，边界在内存中修正
+alter table chat_history_original add index idx_appId_isDelete_id (appId, isDelete, id);
+analyze table chat_history_original;
+
+call run_benchmark('after', 'keyset', 'select id, message, messageType from chat_history_original where appId = 999999 and isDelete = 0 order by id desc limit 52', 20);
+-- 有摘要时只查询摘要之后的记录
+call run_benchmark('after', 'keyset after summary', 'select id, message, messageType from chat_history_original where appId = 999999 and isDelete = 0 and id > 1100000 order by id desc limit 52', 20);
+
+-- 执行计划：新查询应为 idx_appId_isDelete_id 上的倒序范围扫描（Backward index scan），没有 filesort，读取约 52 行即停止；
+-- message 是 text 列，不可能被二级索引覆盖，每行仍按主键回表
+explain analyze
+select id, message, messageType from chat_history_original where appId = 999999 and isDelete = 0
+order by id desc limit 52;
+
+-- 5、对比结果（旧链路一次加载依次执行 count + 边界探测 + 分页三条 SQL，合计一行；新链路只执行其中一条 keyset 查询）
+select phase, label, avgMs, rowsPerRun from benchmark_result
+union all
+select phase, 'total', sum(avgMs), sum(rowsPerRun) from benchmark_result where phase = 'before' group by phase;
+
+-- 6、清理
+drop procedure if exists run_benchmark;
+drop table if exists benchmark_result;
+-- delete from chat_history_original where message like 'benchmark message %';
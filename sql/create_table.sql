@@ -73,6 +73,38 @@ create table chat_history_original
     isDelete    tinyint  default 0                 not null comment '是否删除',
     INDEX idx_appId (appId),                       -- 提升基于应用的查询性能
     INDEX idx_createTime (createTime),             -- 提升基于时间的查询性能
-    INDEX idx_appId_createTime (appId, createTime) -- 游标查询核心索引
+    INDEX idx_appId_createTime (appId, createTime), -- 游标查询核心索引
+    INDEX idx_appId_isDelete_id (appId, isDelete, id) -- 加载对话记忆：按 id 倒序取最近 N 条（message 为 text，需要回表）
 ) comment '对话历史（加载对话记忆，包括工具调用信息）' collate = utf8mb4_unicode_ci;
 
+
+-- 对话摘要表（长对话的滚动摘要，加载对话记忆时作为前缀，替代已折叠的早期消息）
+create table chat_history_summary
+(
+    id            bigint auto_increment comment 'id' primary key,
+    appId         bigint                             not null comment '应用id',
+    summary       text                               not null comment '滚动摘要',
+    lastMessageId bigint                             not null comment '已折叠到摘要中的最后一条 chat_history_original 记录id',
+    messageCount  int      default 0                 not null comment '已折叠的消息总数',
+    createTime    datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime    datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    isDelete      tinyint  default 0                 not null comment '是否删除',
+    UNIQUE KEY uk_appId (appId)                      -- 每个应用只有一条滚动摘要
+) comment '对话摘要' collate = utf8mb4_unicode_ci;
+
+-- 对话事件表（统一的追加写对话日志，每条消息只写一次）
+-- chat_history / chat_history_original 迁移后成为该表上的视图，迁移步骤见 migration_conversation_event.sql
+create table conversation_event
+(
+    id          bigint auto_increment comment 'id' primary key,
+    appId       bigint                             not null comment '应用id',
+    userId      bigint                             not null comment '创建用户id',
+    messageType varchar(32)                        not null comment 'user/ai/toolExecutionRequest/toolExecutionResult',
+    visibility  tinyint                            not null comment '所属投影：1 展示（chat_history），2 记忆回放（chat_history_original），3 两者',
+    message     text                               not null comment '消息',
+    createTime  datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime  datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    isDelete    tinyint  default 0                 not null comment '是否删除',
+    INDEX idx_appId_createTime (appId, createTime), -- 两个投影的游标查询都走这个索引
+    INDEX idx_appId_isDelete_id (appId, isDelete, id) -- 加载对话记忆：按 id 倒序取最近 N 条（message 为 text，需要回表）
+) comment '对话事件' collate = utf8mb4_unicode_ci;
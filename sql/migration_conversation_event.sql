@@ -0,0 +1,84 @@
+-- 对话历史迁移到统一的对话事件表
+-- 迁移前：每条用户消息同时写入 chat_history 和 chat_history_original 两张表
+-- 迁移后：只写 conversation_event，两张表变为同名视图，已有的查询、分页、压缩、删除代码无需改动
+--
+-- 步骤：
+--  1、部署包含 conversation_event 的版本（chat-history.event-log.enabled 保持 false）
+--  2、停止写入（下线或维护窗口），执行本脚本
+--  3、设置 chat-history.event-log.enabled: true 后恢复服务
+-- 启动时会检查两张表是否为视图，与 chat-history.event-log.enabled 不一致时拒绝启动
+-- 回滚：见文件末尾
+
+-- 1、创建对话事件表（与 create_table.sql 一致）
+create table if not exists conversation_event
+(
+    id          bigint auto_increment comment 'id' primary key,
+    appId       bigint                             not null comment '应用id',
+    userId      bigint                             not null comment '创建用户id',
+    messageType varchar(32)                        not null comment 'user/ai/toolExecutionRequest/toolExecutionResult',
+    visibility  tinyint                            not null comment '所属投影：1 展示（chat_history），2 记忆回放（chat_history_original），3 两者',
+    message     text                               not null comment '消息',
+    createTime  datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    updateTime  datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    isDelete    tinyint  default 0                 not null comment '是否删除',
+    INDEX idx_appId_createTime (appId, createTime),
+    INDEX idx_appId_isDelete_id (appId, isDelete, id)
+) comment '对话事件' collate = utf8mb4_unicode_ci;
+
+-- 2、回填：两张表中完全相同的消息（同一应用、类型、时间、内容）合并为一条 visibility = 3 的事件
+insert into conversation_event (appId, userId, messageType, visibility, message, createTime, updateTime, isDelete)
+select appId, userId, messageType, visibility, message, createTime, updateTime, isDelete
+from (select o.appId, o.userId, o.messageType,
+             if(exists(select 1
+                       from chat_history h
+                       where h.appId = o.appId
+                         and h.messageType = o.messageType
+                         and h.createTime = o.createTime
+                         and h.message = o.message), 3, 2) as visibility,
+             o.message, o.createTime, o.updateTime, o.isDelete,
+             o.id as sourceId, 2 as sourceOrder
+      from chat_history_original o
+      union all
+      select h.appId, h.userId, h.messageType, 1 as visibility,
+             h.message, h.createTime, h.updateTime, h.isDelete,
+             h.id as sourceId, 1 as sourceOrder
+      from chat_history h
+      where not exists(select 1
+                       from chat_history_original o
+                       where o.appId = h.appId
+                         and o.messageType = h.messageType
+                         and o.createTime = h.createTime
+                         and o.message = h.message)) t
+order by createTime, sourceOrder, sourceId;
+
+-- 3、对话摘要记录的是 chat_history_original 的 id，改为对应事件的 id
+update chat_history_summary s
+set s.lastMessageId = coalesce((select max(e.id)
+                                from chat_history_original o
+                                         join conversation_event e
+                                              on e.appId = o.appId
+                                                  and e.messageType = o.messageType
+                                                  and e.createTime = o.createTime
+                                                  and e.message = o.message
+                                                  and e.visibility in (2, 3)
+                                where o.id = s.lastMessageId), 0);
+
+-- 4、保留旧表用于回滚
+rename table chat_history to chat_history_legacy,
+    chat_history_original to chat_history_original_legacy;
+
+-- 5、两个投影：与旧表列名一致的视图（可更新，压缩和逻辑删除直接作用于事件）
+create view chat_history as
+select id, message, messageType, appId, cast(null as signed) as parentId, userId, createTime, updateTime, isDelete
+from conversation_event
+where visibility in (1, 3);
+
+create view chat_history_original as
+select id, message, messageType, appId, userId, createTime, updateTime, isDelete
+from conversation_event
+where visibility in (2, 3);
+
+-- 回滚（先把 chat-history.event-log.enabled 设回 false 并停止写入）：
+-- drop view chat_history, chat_history_original;
+-- rename table chat_history_legacy to chat_history, chat_history_original_legacy to chat_history_original;
+-- 迁移后新增的消息需要从 conversation_event 按 visibility 补回两张表（id > 迁移时的最大事件 id）
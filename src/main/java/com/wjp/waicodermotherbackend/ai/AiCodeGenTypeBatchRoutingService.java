@@ -0,0 +1,20 @@
+package com.wjp.waicodermotherbackend.ai;
+
+import com.wjp.waicodermotherbackend.ai.model.CodeGenTypeBatchResult;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+
+/**
+ * AI代码生成类型批量路由服务
+ * 同一时刻的多个路由请求合并为一次模型调用
+ */
+public interface AiCodeGenTypeBatchRoutingService {
+
+    /**
+     * 批量选择代码生成类型
+     * @param itemsJson 需求列表 JSON：[{"index": 0, "prompt": "..."}]
+     * @return 批量路由结果
+     */
+    @SystemMessage(fromResource = "prompt/codegen-routing-batch-system-prompt.txt")
+    CodeGenTypeBatchResult routeCodeGenTypes(@UserMessage String itemsJson);
+}
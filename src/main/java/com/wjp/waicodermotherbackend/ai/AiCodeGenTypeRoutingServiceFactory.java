@@ -35,4 +35,15 @@ public class AiCodeGenTypeRoutingServiceFactory {
         return createAiCodeGenTypeRoutingService();
     }
 
+    /**
+     * 批量路由服务（输出多条结果，使用更大 maxTokens 的路由模型）
+     */
+    @Bean
+    public AiCodeGenTypeBatchRoutingService aiCodeGenTypeBatchRoutingService() {
+        ChatModel chatModel = SpringContextUtil.getBean("routingBatchChatModel", ChatModel.class);
+        return AiServices.builder(AiCodeGenTypeBatchRoutingService.class)
+                .chatModel(chatModel)
+                .build();
+    }
+
 }
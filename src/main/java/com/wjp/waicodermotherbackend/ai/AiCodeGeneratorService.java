@@ -8,7 +8,6 @@ import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Flux;
 
 /**
  * AI Service
@@ -39,7 +38,7 @@ public interface AiCodeGeneratorService {
      * @return AI 生成的代码
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    Flux<String> generateHtmlCodeStream(@UserMessage String userMessage);
+    TokenStream generateHtmlCodeStream(@UserMessage String userMessage);
 
     /**
      * 生成多文件代码
@@ -47,7 +46,7 @@ public interface AiCodeGeneratorService {
      * @return AI 生成的代码
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    Flux<String> generateMultiFileCodeStream(@UserMessage String userMessage);
+    TokenStream generateMultiFileCodeStream(@UserMessage String userMessage);
 
     // endregion
 
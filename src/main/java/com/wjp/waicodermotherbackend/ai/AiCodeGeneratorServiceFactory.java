@@ -4,7 +4,10 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.wjp.waicodermotherbackend.ai.guardrail.PromptSafetyInputGuardrail;
 import com.wjp.waicodermotherbackend.ai.guardrail.RetryOutputGuardrail;
+import com.wjp.waicodermotherbackend.ai.memory.ChatMemoryHydrator;
+import com.wjp.waicodermotherbackend.ai.memory.TokenBudgetChatMemory;
 import com.wjp.waicodermotherbackend.ai.tools.*;
+import com.wjp.waicodermotherbackend.config.ChatMemoryWindowConfig;
 import com.wjp.waicodermotherbackend.config.ReasoningStreamingChatModelConfig;
 import com.wjp.waicodermotherbackend.config.RedisChatMemoryStoreConfig;
 import com.wjp.waicodermotherbackend.exception.BusinessException;
@@ -17,11 +20,19 @@ import com.wjp.waicodermotherbackend.utils.SpringContextUtil;
 import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -62,6 +73,15 @@ public class AiCodeGeneratorServiceFactory {
     @Resource
     private ChatHistoryOriginalService chatHistoryOriginalService;
 
+    @Resource
+    private ChatMemoryHydrator chatMemoryHydrator;
+
+    @Resource
+    private ChatMemoryWindowConfig chatMemoryWindowConfig;
+
+    @Resource(name = "chatMemoryTokenCountEstimator")
+    private TokenCountEstimator chatMemoryTokenCountEstimator;
+
     /**
      * 工具实例
      */
@@ -69,21 +89,76 @@ public class AiCodeGeneratorServiceFactory {
     private ToolManager toolManager;
 
 
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 缓存失效广播频道：消息内容为缓存键（appId_codeGenType），所有节点（包括自己）收到后移除本地实例
+     */
+    private static final String INVALIDATION_TOPIC = "ai_service_cache:invalidate";
+
     /**
      * AI 服务实例缓存
      * 缓存策略:
      * - 最大缓存 1000 哥实例
      * - 写入后 30min 过期
      * - 访问后 10min 过期
+     * - 开启统计（命中率、加载耗时、淘汰数），导出到 Micrometer
      */
     private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
             .maximumSize(1000)
             .expireAfterWrite(Duration.ofMinutes(30))
             .expireAfterAccess(Duration.ofMinutes(10))
+            .recordStats()
             .removalListener((key, value, cause) -> {
                 log.debug("AI 服务实例被移除, 缓存键: {}, 原因: {}", key, cause);
             }).build();
 
+    private RTopic invalidationTopic;
+
+    @PostConstruct
+    public void init() {
+        // 缓存统计：cache_gets_total{result=hit|miss}、cache_evictions_total、cache_load_duration_seconds 等
+        CaffeineCacheMetrics.monitor(meterRegistry, serviceCache, "ai_service_cache");
+        // 订阅其他节点的失效广播
+        invalidationTopic = redissonClient.getTopic(INVALIDATION_TOPIC, StringCodec.INSTANCE);
+        invalidationTopic.addListener(String.class, (channel, cacheKey) -> {
+            serviceCache.invalidate(cacheKey);
+            log.info("收到 AI 服务实例失效广播, 缓存键: {}", cacheKey);
+        });
+    }
+
+    /**
+     * 使应用的 AI 服务实例失效（所有节点、所有代码生成类型）
+     * 应用被删除或代码生成类型变更时调用
+     * @param appId 应用ID
+     */
+    public void invalidateAiCodeGeneratorService(long appId) {
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            String cacheKey = buildCacheKey(appId, codeGenType);
+            // 先移除本地实例，广播失败也不影响当前节点
+            serviceCache.invalidate(cacheKey);
+            try {
+                invalidationTopic.publish(cacheKey);
+            } catch (Exception e) {
+                log.error("广播 AI 服务实例失效失败, 缓存键: {}", cacheKey, e);
+            }
+        }
+    }
+
+
+    /**
+     * 本节点是否已有该应用的 AI 服务实例（不触发创建）
+     * @param appId 应用ID
+     * @param codeGenType 代码生成类型
+     * @return 是否已缓存
+     */
+    public boolean hasAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
+        return serviceCache.getIfPresent(buildCacheKey(appId, codeGenType)) != null;
+    }
 
     /**
      * 根据 appId 获取服务 (为了兼容老的逻辑)
@@ -118,13 +193,20 @@ public class AiCodeGeneratorServiceFactory {
    public AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
        log.info("为 appId {} 创建新的 AI Service 服务实例", appId);
        AiCodeGeneratorService aiCodeGeneratorService;
-       // 根据 appId 构建独立的对话记忆
-       MessageWindowChatMemory chatMemory = MessageWindowChatMemory
+       // 根据 appId 构建独立的对话记忆，按 Token 预算淘汰（工具调用请求与结果不会被拆开）
+       // 预算设置的太小，会导致模型陷入死循环，重复写入相同的文件
+       TokenBudgetChatMemory chatMemory = TokenBudgetChatMemory
                .builder()
                .id(appId)
                .chatMemoryStore(redisChatMemoryStore)
-               // 设置的太小，会导致模型陷入死循环，重复写入相同的文件
-               .maxMessages(50)
+               .maxTokens(chatMemoryWindowConfig.getMaxTokens(codeGenType), chatMemoryTokenCountEstimator)
+               .evictionTargetRatio(chatMemoryWindowConfig.getEvictionTargetRatio())
+               .promptTokensSummary(DistributionSummary.builder("chat_memory_prompt_tokens")
+                       .description("每次调用模型时对话记忆的估算 Token 数")
+                       .baseUnit("tokens")
+                       .tag("code_gen_type", codeGenType.getValue())
+                       .publishPercentileHistogram()
+                       .register(meterRegistry))
                .build();
 
 
@@ -137,7 +219,8 @@ public class AiCodeGeneratorServiceFactory {
                // 而在这里每次调用都会重新获取实例，所以就不会导致冲突问题了
                StreamingChatModel reasoningStreamingChatModel = SpringContextUtil.getBean("reasoningStreamingChatModelPrototype", StreamingChatModel.class);
                // 从数据库加载历史对话到缓存中，由于多了工具调用相关信息，加载的最大数量稍微大些
-               chatHistoryOriginalService.loadOriginalChatHistoryToMemory(appId, chatMemory, 50);
+               // Redis 记忆仍然有效时跳过；冷加载异步执行，调用模型前再等待
+               chatMemoryHydrator.hydrate(appId, codeGenType, chatMemory, 50);
                aiCodeGeneratorService = AiServices.builder(AiCodeGeneratorService.class)
                        .chatModel(chatModel) // 普通模型
                        .streamingChatModel(reasoningStreamingChatModel) // 流式模型
@@ -163,8 +246,8 @@ public class AiCodeGeneratorServiceFactory {
                // 之所以不用之前 @Resource定义的模型，是因为他只会初始化一次，后面就会一直用这个实例，那么后面的所有请求都会用同一个实例，并发下会产生冲突
                // 而在这里每次调用都会重新获取实例，所以就不会导致冲突问题了
                StreamingChatModel openAiStreamingChatModel = SpringContextUtil.getBean("streamingChatModelPrototype", StreamingChatModel.class);
-               // 加载历史会话记录
-               chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+               // 加载历史会话记录（Redis 记忆仍然有效时跳过；冷加载异步执行）
+               chatMemoryHydrator.hydrate(appId, codeGenType, chatMemory, 20);
                aiCodeGeneratorService = AiServices.builder(AiCodeGeneratorService.class)
                        .chatModel(chatModel) // 普通模型
                        .streamingChatModel(openAiStreamingChatModel) // 流式模型
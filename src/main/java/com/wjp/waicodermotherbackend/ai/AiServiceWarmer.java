@@ -0,0 +1,102 @@
+package com.wjp.waicodermotherbackend.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wjp.waicodermotherbackend.ai.memory.ChatMemoryHydrator;
+import com.wjp.waicodermotherbackend.config.AiServiceWarmUpConfig;
+import com.wjp.waicodermotherbackend.model.entity.App;
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+
+/**
+ * AI 服务预热
+ * 应用所有者打开应用时，在虚拟线程中提前创建 AI 服务实例（多例模型、AiServices 代理）并等待对话记忆加载完成：
+ *  1、本节点已有实例或最近预热过的应用直接跳过
+ *  2、同时进行的预热数受 maxConcurrent 限制，拿不到名额直接跳过，不排队
+ *
+ * 指标：ai_service_warmup_total{result=warmed|cached|skipped|failed}
+ */
+@Component
+@Slf4j
+public class AiServiceWarmer {
+
+    @Resource
+    private AiServiceWarmUpConfig aiServiceWarmUpConfig;
+
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
+    @Resource
+    private ChatMemoryHydrator chatMemoryHydrator;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 最近预热过的应用
+     */
+    private Cache<Long, Boolean> recentWarmUps;
+
+    private Semaphore budget;
+
+    @PostConstruct
+    public void init() {
+        recentWarmUps = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofSeconds(aiServiceWarmUpConfig.getDedupeSeconds()))
+                .build();
+        budget = new Semaphore(aiServiceWarmUpConfig.getMaxConcurrent());
+    }
+
+    /**
+     * 异步预热应用的 AI 服务和对话记忆
+     * @param app 应用
+     */
+    public void warmUpAsync(App app) {
+        CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
+        if (!aiServiceWarmUpConfig.isEnabled() || codeGenType == null) {
+            return;
+        }
+        long appId = app.getId();
+        if (aiCodeGeneratorServiceFactory.hasAiCodeGeneratorService(appId, codeGenType)) {
+            record("cached");
+            return;
+        }
+        // 原子地占用去重标记，并发的页面访问只有一个会继续
+        if (recentWarmUps.asMap().putIfAbsent(appId, Boolean.TRUE) != null) {
+            record("skipped");
+            return;
+        }
+        if (!budget.tryAcquire()) {
+            recentWarmUps.invalidate(appId);
+            record("skipped");
+            return;
+        }
+        Thread.startVirtualThread(() -> {
+            long startTime = System.currentTimeMillis();
+            try {
+                aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenType);
+                chatMemoryHydrator.await(appId)
+                        .block(Duration.ofSeconds(aiServiceWarmUpConfig.getAwaitTimeoutSeconds()));
+                record("warmed");
+                log.info("appId: {} 预热 AI 服务完成，耗时 {} ms", appId, System.currentTimeMillis() - startTime);
+            } catch (Exception e) {
+                record("failed");
+                log.warn("appId: {} 预热 AI 服务失败: {}", appId, e.getMessage());
+            } finally {
+                budget.release();
+            }
+        });
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("ai_service_warmup_total", "result", result).increment();
+    }
+}
@@ -0,0 +1,18 @@
+package com.wjp.waicodermotherbackend.ai;
+
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+
+/**
+ * 对话摘要服务
+ */
+public interface ConversationSummaryService {
+
+    /**
+     * 把已有摘要和新增对话合并为新的滚动摘要
+     * @param conversation 已有摘要 + 新增对话
+     * @return 新的摘要
+     */
+    @SystemMessage(fromResource = "prompt/conversation-summary-system-prompt.txt")
+    String summarize(@UserMessage String conversation);
+}
@@ -0,0 +1,30 @@
+package com.wjp.waicodermotherbackend.ai;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.service.AiServices;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话摘要服务工厂
+ */
+@Slf4j
+@Configuration
+public class ConversationSummaryServiceFactory {
+
+    // 摘要在后台执行，不需要流式输出，使用普通模型
+    @Resource(name = "openAiChatModel")
+    private ChatModel chatModel;
+
+    /**
+     * 创建对话摘要服务（无对话记忆，每次调用互不影响，可以共享）
+     */
+    @Bean
+    public ConversationSummaryService conversationSummaryService() {
+        return AiServices.builder(ConversationSummaryService.class)
+                .chatModel(chatModel)
+                .build();
+    }
+}
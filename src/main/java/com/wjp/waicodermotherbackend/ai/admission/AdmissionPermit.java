@@ -0,0 +1,42 @@
+package com.wjp.waicodermotherbackend.ai.admission;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 同步调用的准入许可，调用结束后必须 close 释放并发
+ */
+public class AdmissionPermit implements AutoCloseable {
+
+    private final ModelAdmission modelAdmission;
+
+    private final long grantedNanos = System.nanoTime();
+
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    AdmissionPermit(ModelAdmission modelAdmission) {
+        this.modelAdmission = modelAdmission;
+    }
+
+    /**
+     * 调用成功：以放行到返回的耗时作为延迟反馈
+     */
+    public void reportSuccess() {
+        modelAdmission.onLatency((System.nanoTime() - grantedNanos) / 1_000_000);
+    }
+
+    /**
+     * 调用失败：如果是供应商限流则收缩并发上限
+     */
+    public void reportError(Throwable error) {
+        if (LlmAdmissionController.isRateLimited(error)) {
+            modelAdmission.onOverload();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            modelAdmission.release();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.wjp.waicodermotherbackend.ai.admission;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 准入请求：用于排队时的公平调度
+ */
+@Data
+@AllArgsConstructor
+public class AdmissionRequest {
+
+    /**
+     * 应用 ID
+     */
+    private Long appId;
+
+    /**
+     * 用户 ID（按用户公平排队）
+     */
+    private Long userId;
+
+    /**
+     * 应用优先级（App.priority，越大排队权重越高）
+     */
+    private Integer priority;
+}
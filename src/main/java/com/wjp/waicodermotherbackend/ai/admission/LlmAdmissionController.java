@@ -0,0 +1,216 @@
+package com.wjp.waicodermotherbackend.ai.admission;
+
+import com.wjp.waicodermotherbackend.config.LlmAdmissionConfig;
+import com.wjp.waicodermotherbackend.exception.BusinessException;
+import com.wjp.waicodermotherbackend.exception.ErrorCode;
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RateLimitException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+
+/**
+ * 大模型准入控制器
+ * 统一决定每个模型同时执行多少次调用，超出的请求进入公平队列排队，排队位置实时推送给前端，
+ * 而不是让每个请求都直接打到模型供应商后再失败。
+ *
+ * 指标：llm_admission_limit / llm_admission_in_flight / llm_admission_queue_size（按 model 标签）
+ */
+@Component
+@Slf4j
+public class LlmAdmissionController {
+
+    public static final String STREAMING_MODEL = "streamingChatModelPrototype";
+
+    public static final String REASONING_STREAMING_MODEL = "reasoningStreamingChatModelPrototype";
+
+    public static final String ROUTING_MODEL = "routingChatModelPrototype";
+
+    @Resource
+    private LlmAdmissionConfig llmAdmissionConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, ModelAdmission> admissions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        register(STREAMING_MODEL, llmAdmissionConfig.getStreaming());
+        register(REASONING_STREAMING_MODEL, llmAdmissionConfig.getReasoning());
+        register(ROUTING_MODEL, llmAdmissionConfig.getRouting());
+    }
+
+    private void register(String modelKey, LlmAdmissionConfig.ModelLimit modelLimit) {
+        ModelAdmission admission = new ModelAdmission(modelKey, modelLimit,
+                llmAdmissionConfig.getDecreaseFactor(), llmAdmissionConfig.getMaxQueueSize(),
+                llmAdmissionConfig.getPriorityWeightFactor());
+        admissions.put(modelKey, admission);
+        Gauge.builder("llm_admission_limit", admission, ModelAdmission::currentLimit)
+                .description("模型当前并发上限")
+                .tag("model", modelKey)
+                .register(meterRegistry);
+        Gauge.builder("llm_admission_in_flight", admission, ModelAdmission::getInFlight)
+                .description("模型正在执行的调用数")
+                .tag("model", modelKey)
+                .register(meterRegistry);
+        Gauge.builder("llm_admission_queue_size", admission, ModelAdmission::getQueueSize)
+                .description("模型排队中的请求数")
+                .tag("model", modelKey)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 代码生成类型对应的模型
+     */
+    public static String getModelKey(CodeGenTypeEnum codeGenTypeEnum) {
+        return codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT ? REASONING_STREAMING_MODEL : STREAMING_MODEL;
+    }
+
+    /**
+     * 流式调用准入：排队期间推送排队位置，放行后才订阅模型流，流结束（完成 / 出错 / 取消）后释放并发
+     * @param modelKey 模型
+     * @param request 准入请求
+     * @param work 模型流（冷流）
+     * @param positionMessage 排队位置消息
+     * @return 准入后的流
+     */
+    public <T> Flux<T> admit(String modelKey, AdmissionRequest request, Flux<T> work, IntFunction<T> positionMessage) {
+        ModelAdmission admission = getAdmission(modelKey);
+        return Flux.create(sink -> {
+            AtomicBoolean granted = new AtomicBoolean(false);
+            // 客户端已断开：放行回调可能在检查之后才订阅模型流，订阅后需要再检查一次
+            AtomicBoolean cancelled = new AtomicBoolean(false);
+            AtomicBoolean released = new AtomicBoolean(false);
+            AtomicReference<Disposable> workRef = new AtomicReference<>();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    admission.release();
+                }
+            };
+            ModelAdmission.Waiter waiter = new ModelAdmission.Waiter(request, () -> {
+                granted.set(true);
+                if (cancelled.get() || sink.isCancelled()) {
+                    release.run();
+                    return;
+                }
+                long grantedNanos = System.nanoTime();
+                AtomicBoolean firstToken = new AtomicBoolean(true);
+                workRef.set(work
+                        .doOnNext(item -> {
+                            if (firstToken.compareAndSet(true, false)) {
+                                admission.onLatency((System.nanoTime() - grantedNanos) / 1_000_000);
+                            }
+                        })
+                        .subscribe(sink::next, error -> {
+                            if (isRateLimited(error)) {
+                                admission.onOverload();
+                            }
+                            release.run();
+                            sink.error(error);
+                        }, () -> {
+                            release.run();
+                            sink.complete();
+                        }));
+                if (cancelled.get()) {
+                    // 订阅期间客户端断开，onDispose 没有拿到模型流
+                    workRef.get().dispose();
+                    release.run();
+                }
+            }, position -> {
+                log.info("模型 {} 排队中，appId: {}，当前位置: {}", modelKey, request.getAppId(), position);
+                sink.next(positionMessage.apply(position));
+            });
+            sink.onDispose(() -> {
+                cancelled.set(true);
+                if (!granted.get() && admission.cancel(waiter)) {
+                    return;
+                }
+                Disposable disposable = workRef.get();
+                if (disposable != null) {
+                    disposable.dispose();
+                }
+                release.run();
+            });
+            if (!admission.enqueue(waiter)) {
+                // 没有占用并发，无需释放
+                released.set(true);
+                sink.error(new BusinessException(ErrorCode.TOO_MANY_REQUEST, "当前生成排队人数过多，请稍后再试"));
+            }
+        });
+    }
+
+    /**
+     * 同步调用准入：阻塞等待放行
+     * @param modelKey 模型
+     * @param request 准入请求
+     * @return 许可，调用结束后必须 close
+     */
+    public AdmissionPermit acquire(String modelKey, AdmissionRequest request) {
+        ModelAdmission admission = getAdmission(modelKey);
+        CompletableFuture<AdmissionPermit> future = new CompletableFuture<>();
+        ModelAdmission.Waiter waiter = new ModelAdmission.Waiter(request,
+                () -> future.complete(new AdmissionPermit(admission)),
+                position -> log.info("模型 {} 排队中，当前位置: {}", modelKey, position));
+        if (!admission.enqueue(waiter)) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "当前请求排队人数过多，请稍后再试");
+        }
+        try {
+            return future.get(llmAdmissionConfig.getAcquireTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            if (!admission.cancel(waiter)) {
+                // 超时的同时被放行，直接释放
+                future.join().close();
+            }
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "模型繁忙，请稍后再试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!admission.cancel(waiter)) {
+                future.join().close();
+            }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待模型调用被中断");
+        } catch (ExecutionException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待模型调用失败");
+        }
+    }
+
+    private ModelAdmission getAdmission(String modelKey) {
+        ModelAdmission admission = admissions.get(modelKey);
+        if (admission == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "未配置准入控制的模型: " + modelKey);
+        }
+        return admission;
+    }
+
+    /**
+     * 是否是供应商限流错误（HTTP 429），按异常类型和状态码判断，不匹配错误信息
+     */
+    static boolean isRateLimited(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof RateLimitException
+                    || (current instanceof HttpException httpException && httpException.statusCode() == 429)) {
+                return true;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return false;
+    }
+}
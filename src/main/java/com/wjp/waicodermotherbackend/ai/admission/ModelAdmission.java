@@ -0,0 +1,234 @@
+package com.wjp.waicodermotherbackend.ai.admission;
+
+import com.wjp.waicodermotherbackend.config.LlmAdmissionConfig;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * 单个模型的准入状态：AIMD 并发上限 + 公平排队
+ *
+ * 排队顺序：按用户加权公平排队（WFQ）。每个用户有自己的虚拟完成时间，每个请求在该用户上一个请求之后排
+ * 1 / 权重的虚拟时长，权重 = 1 + 应用优先级 * priorityWeightFactor；按虚拟完成时间从小到大放行。
+ * 高优先级应用按权重多分到并发，但低优先级应用不会被饿死；同一用户的大量请求只占用该用户自己的份额
+ * 所有回调（放行、排队位置变化）都在锁外执行，避免在锁内订阅模型流
+ */
+@Slf4j
+class ModelAdmission {
+
+    @Getter
+    private final String modelKey;
+
+    private final LlmAdmissionConfig.ModelLimit modelLimit;
+
+    private final double decreaseFactor;
+
+    private final int maxQueueSize;
+
+    private final double priorityWeightFactor;
+
+    /**
+     * 当前并发上限（AIMD 调整）
+     */
+    private double limit;
+
+    private int inFlight = 0;
+
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    private long sequence = 0;
+
+    /**
+     * 系统虚拟时间：最近一次放行的请求的虚拟开始时间
+     */
+    private double virtualTime = 0;
+
+    /**
+     * 每个用户最后一个请求的虚拟完成时间（不超过系统虚拟时间的会被清理）
+     */
+    private final Map<Long, Double> userFinishTime = new HashMap<>();
+
+    /**
+     * 上一次收缩的时间，一个目标延迟周期内最多收缩一次，避免突发错误把上限打到底
+     */
+    private long lastDecreaseNanos = 0;
+
+    private final Comparator<Waiter> waiterComparator = Comparator
+            .comparingDouble((Waiter waiter) -> waiter.finishTime)
+            .thenComparingLong(waiter -> waiter.sequence);
+
+    ModelAdmission(String modelKey, LlmAdmissionConfig.ModelLimit modelLimit, double decreaseFactor, int maxQueueSize,
+                   double priorityWeightFactor) {
+        this.modelKey = modelKey;
+        this.modelLimit = modelLimit;
+        this.decreaseFactor = decreaseFactor;
+        this.maxQueueSize = maxQueueSize;
+        this.priorityWeightFactor = priorityWeightFactor;
+        this.limit = modelLimit.getInitialLimit();
+    }
+
+    /**
+     * 排队等待者
+     */
+    static class Waiter {
+
+        private final Long userId;
+
+        private final int priority;
+
+        private final Runnable onGranted;
+
+        private final IntConsumer onPosition;
+
+        private long sequence;
+
+        private double startTime;
+
+        private double finishTime;
+
+        private int lastPosition = 0;
+
+        Waiter(AdmissionRequest request, Runnable onGranted, IntConsumer onPosition) {
+            this.userId = request.getUserId();
+            this.priority = request.getPriority() == null ? 0 : request.getPriority();
+            this.onGranted = onGranted;
+            this.onPosition = onPosition;
+        }
+
+        Long getUserId() {
+            return userId;
+        }
+    }
+
+    /**
+     * 加入队列（有空闲并发时立即放行）
+     * @return 队列已满返回 false
+     */
+    boolean enqueue(Waiter waiter) {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (waiters.size() >= maxQueueSize && inFlight >= currentLimit()) {
+                return false;
+            }
+            waiter.sequence = ++sequence;
+            waiter.startTime = Math.max(virtualTime, userFinishTime.getOrDefault(waiter.userId, 0.0));
+            waiter.finishTime = waiter.startTime + 1.0 / weight(waiter);
+            userFinishTime.put(waiter.userId, waiter.finishTime);
+            waiters.add(waiter);
+            actions = dispatch();
+        }
+        actions.forEach(Runnable::run);
+        return true;
+    }
+
+    /**
+     * 放弃排队（客户端断开）
+     * @return 是否仍在队列中（false 说明已经被放行，需要调用方释放并发）
+     */
+    boolean cancel(Waiter waiter) {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (!waiters.remove(waiter)) {
+                return false;
+            }
+            actions = dispatch();
+        }
+        actions.forEach(Runnable::run);
+        return true;
+    }
+
+    /**
+     * 释放一个并发
+     */
+    void release() {
+        List<Runnable> actions;
+        synchronized (this) {
+            inFlight--;
+            actions = dispatch();
+        }
+        actions.forEach(Runnable::run);
+    }
+
+    /**
+     * 反馈首 Token 延迟：正常时加性增大，超标时乘性减小
+     */
+    void onLatency(long latencyMs) {
+        if (latencyMs > modelLimit.getTargetLatencyMs()) {
+            log.warn("模型 {} 首 Token 延迟 {} ms 超过目标 {} ms", modelKey, latencyMs, modelLimit.getTargetLatencyMs());
+            onOverload();
+            return;
+        }
+        List<Runnable> actions;
+        synchronized (this) {
+            limit = Math.min(modelLimit.getMaxLimit(), limit + 1.0 / Math.max(1.0, limit));
+            actions = dispatch();
+        }
+        actions.forEach(Runnable::run);
+    }
+
+    /**
+     * 供应商过载（限流 429 / 延迟超标）：乘性减小
+     */
+    synchronized void onOverload() {
+        long now = System.nanoTime();
+        if (lastDecreaseNanos != 0 && now - lastDecreaseNanos < modelLimit.getTargetLatencyMs() * 1_000_000L) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        double previous = limit;
+        limit = Math.max(modelLimit.getMinLimit(), limit * decreaseFactor);
+        log.warn("模型 {} 并发上限收缩：{} -> {}", modelKey, (int) previous, (int) limit);
+    }
+
+    synchronized int currentLimit() {
+        return Math.max(modelLimit.getMinLimit(), (int) limit);
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getQueueSize() {
+        return waiters.size();
+    }
+
+    /**
+     * 请求权重：应用优先级越高，每个请求占用的虚拟时长越短
+     */
+    private double weight(Waiter waiter) {
+        return 1.0 + Math.max(0, waiter.priority) * priorityWeightFactor;
+    }
+
+    /**
+     * 在锁内选出可以放行的请求，并计算排队位置变化，返回需要在锁外执行的回调
+     */
+    private List<Runnable> dispatch() {
+        List<Runnable> actions = new ArrayList<>();
+        while (inFlight < currentLimit() && !waiters.isEmpty()) {
+            Waiter next = waiters.stream().min(waiterComparator).orElseThrow();
+            waiters.remove(next);
+            inFlight++;
+            virtualTime = Math.max(virtualTime, next.startTime);
+            actions.add(next.onGranted);
+        }
+        // 完成时间不超过系统虚拟时间的用户，下次排队从系统虚拟时间开始，不需要再记录
+        userFinishTime.values().removeIf(finishTime -> finishTime <= virtualTime);
+        List<Waiter> ordered = new ArrayList<>(waiters);
+        ordered.sort(waiterComparator);
+        for (int i = 0; i < ordered.size(); i++) {
+            Waiter waiter = ordered.get(i);
+            int position = i + 1;
+            if (waiter.lastPosition != position) {
+                waiter.lastPosition = position;
+                actions.add(() -> waiter.onPosition.accept(position));
+            }
+        }
+        return actions;
+    }
+}
@@ -0,0 +1,84 @@
+package com.wjp.waicodermotherbackend.ai.http;
+
+import cn.hutool.core.util.StrUtil;
+import com.wjp.waicodermotherbackend.config.AiHttpClientConfig;
+import com.wjp.waicodermotherbackend.config.ReasoningStreamingChatModelConfig;
+import com.wjp.waicodermotherbackend.config.RoutingAiModelConfig;
+import com.wjp.waicodermotherbackend.config.StreamingChatModelConfig;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 大模型连接预热
+ * 启动完成后向每个模型供应商发送一次轻量请求，提前完成 DNS 解析、TCP 连接和 TLS 握手，
+ * 连接放回共享连接池后，第一位用户的请求不再承担建连耗时（响应状态码无关紧要，401 也算预热成功）
+ */
+@Component
+@Slf4j
+public class AiHttpClientWarmer {
+
+    @Resource
+    private AiHttpClientConfig aiHttpClientConfig;
+
+    @Resource
+    private HttpClient sharedAiHttpClient;
+
+    @Resource
+    private StreamingChatModelConfig streamingChatModelConfig;
+
+    @Resource
+    private ReasoningStreamingChatModelConfig reasoningStreamingChatModelConfig;
+
+    @Resource
+    private RoutingAiModelConfig routingAiModelConfig;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!aiHttpClientConfig.isWarmUp()) {
+            return;
+        }
+        Set<String> baseUrls = new LinkedHashSet<>();
+        addBaseUrl(baseUrls, streamingChatModelConfig.getBaseUrl());
+        addBaseUrl(baseUrls, reasoningStreamingChatModelConfig.getBaseUrl());
+        addBaseUrl(baseUrls, routingAiModelConfig.getBaseUrl());
+        for (String baseUrl : baseUrls) {
+            long startTime = System.currentTimeMillis();
+            HttpRequest request;
+            try {
+                request = HttpRequest.newBuilder(URI.create(baseUrl))
+                        .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                        .timeout(Duration.ofSeconds(aiHttpClientConfig.getConnectTimeoutSeconds()))
+                        .build();
+            } catch (IllegalArgumentException e) {
+                log.warn("模型地址格式错误，跳过预热: {}", baseUrl);
+                continue;
+            }
+            // 异步发送，不阻塞启动
+            sharedAiHttpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            log.warn("模型连接预热失败: {}, error: {}", baseUrl, error.getMessage());
+                        } else {
+                            log.info("模型连接预热完成: {}, 协议: {}, 耗时 {} ms", baseUrl, response.version(), System.currentTimeMillis() - startTime);
+                        }
+                    });
+        }
+    }
+
+    private static void addBaseUrl(Set<String> baseUrls, String baseUrl) {
+        if (StrUtil.isNotBlank(baseUrl)) {
+            baseUrls.add(StrUtil.removeSuffix(baseUrl.trim(), "/"));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.wjp.waicodermotherbackend.ai.http;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import dev.langchain4j.model.chat.response.StreamingCancellationContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingRawEventContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 可取消的 HTTP 客户端（装饰器）
+ * 流式请求提交时捕获当前请求的处理器，在其取消信号上注册关闭钩子：一旦取消立即关闭响应输入流，
+ * 从而真正断开与模型供应商的 SSE 连接，避免客户端离开后模型继续输出、继续计费
+ */
+@Slf4j
+public class CancellableHttpClient implements HttpClient {
+
+    private final HttpClient delegate;
+
+    public CancellableHttpClient(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        return delegate.execute(request);
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        // 取消信号只在提交请求的线程上绑定，这里必须同步取出，解析响应体时已经在其他线程了
+        StreamingChatResponseHandler handler = StreamingCancellationContext.current();
+        Consumer<String> rawEventObserver = StreamingRawEventContext.current();
+        ServerSentEventListener observedListener = rawEventObserver == null
+                ? listener
+                : new RawEventObservingListener(listener, rawEventObserver);
+        if (handler == null) {
+            delegate.execute(request, parser, observedListener);
+            return;
+        }
+        ServerSentEventParser cancellableParser = (inputStream, eventListener) -> {
+            CancellableInputStream cancellableInputStream = new CancellableInputStream(inputStream, handler::isCancelled);
+            // 取消时立即关闭输入流，阻塞在读取上的解析线程随即结束，不用等到下一个片段到达
+            Runnable unregister = handler.onCancel(cancellableInputStream::closeOnCancel);
+            try {
+                parser.parse(cancellableInputStream, eventListener);
+            } finally {
+                unregister.run();
+            }
+        };
+        delegate.execute(request, cancellableParser, observedListener);
+    }
+
+    /**
+     * 把每个事件的原始数据交给响应构建器，用于读取类型化响应里没有的供应商字段（如 DeepSeek 的缓存命中 Token 数）
+     */
+    private static class RawEventObservingListener implements ServerSentEventListener {
+
+        private final ServerSentEventListener delegate;
+
+        private final Consumer<String> rawEventObserver;
+
+        RawEventObservingListener(ServerSentEventListener delegate, Consumer<String> rawEventObserver) {
+            this.delegate = delegate;
+            this.rawEventObserver = rawEventObserver;
+        }
+
+        @Override
+        public void onOpen(SuccessfulHttpResponse response) {
+            delegate.onOpen(response);
+        }
+
+        @Override
+        public void onEvent(ServerSentEvent event) {
+            try {
+                rawEventObserver.accept(event.data());
+            } catch (Exception e) {
+                log.debug("读取流式事件原始数据失败: {}", e.getMessage());
+            }
+            delegate.onEvent(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onClose() {
+            delegate.onClose();
+        }
+    }
+
+    /**
+     * 取消时由关闭钩子关闭底层连接；每次读取前仍检查取消信号，关闭后的读取以取消异常结束解析
+     */
+    private static class CancellableInputStream extends FilterInputStream {
+
+        private final BooleanSupplier cancelled;
+
+        CancellableInputStream(InputStream in, BooleanSupplier cancelled) {
+            super(in);
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            return super.read(b, off, len);
+        }
+
+        /**
+         * 关闭钩子：在调用取消的线程上执行
+         */
+        void closeOnCancel() {
+            log.info("流式请求已取消，关闭模型响应流");
+            try {
+                close();
+            } catch (IOException e) {
+                log.debug("关闭模型响应流失败: {}", e.getMessage());
+            }
+        }
+
+        private void checkCancelled() throws IOException {
+            if (cancelled.getAsBoolean()) {
+                closeOnCancel();
+                throw new IOException("Streaming request cancelled");
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.wjp.waicodermotherbackend.ai.http;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * 共享 JDK HttpClient 的构建器
+ * LangChain4j 的 JdkHttpClient 每次创建都会调用 {@link HttpClient.Builder#build()}，
+ * 这里直接返回全局共享的实例，使所有多例模型复用同一个连接池（TLS 握手、HTTP/2 连接只建立一次）。
+ *
+ * 共享实例的连接参数在启动时统一配置（见 AiHttpClientConfig），这里的设置方法全部忽略；
+ * 读超时是按请求设置的，不受影响
+ */
+public class SharedJdkHttpClientBuilder implements HttpClient.Builder {
+
+    private final HttpClient sharedHttpClient;
+
+    public SharedJdkHttpClientBuilder(HttpClient sharedHttpClient) {
+        this.sharedHttpClient = sharedHttpClient;
+    }
+
+    @Override
+    public HttpClient.Builder cookieHandler(CookieHandler cookieHandler) {
+        return this;
+    }
+
+    @Override
+    public HttpClient.Builder connectTimeout(Duration duration) {
+        return this;
+    }
+
+    @Override
+    public HttpClient.Builder sslContext(SSLContext sslContext) {
+        return this;
+    }
+
+    @Override
+    public HttpClient.Builder sslParameters(SSLParameters sslParameters) {
+        return this;
+    }
+
+    @Override
+    public HttpClient.Builder executor(Executor executor) {
+        return this;
+    }
+
+    @Override
+    public HttpClient.Builder followRedirects(HttpClient.Redirect policy) {
+        return this;
+    }
+
+    @Override
+    public HttpClient.Builder version(HttpClient.Version version) {
+        return this;
+    }
+
+    @Override
+    public HttpClient.Builder priority(int priority) {
+        return this;
+    }
+
+    @Override
+    public HttpClient.Builder proxy(ProxySelector proxySelector) {
+        return this;
+    }
+
+    @Override
+    public HttpClient.Builder authenticator(Authenticator authenticator) {
+        return this;
+    }
+
+    @Override
+    public HttpClient build() {
+        return sharedHttpClient;
+    }
+}
@@ -0,0 +1,117 @@
+package com.wjp.waicodermotherbackend.ai.memory;
+
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import com.wjp.waicodermotherbackend.service.ChatHistoryOriginalService;
+import com.wjp.waicodermotherbackend.service.ChatHistoryService;
+import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.memory.ChatMemory;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 对话记忆预热
+ *
+ * 1、Redis 中的对话记忆仍然有效（有消息且记忆版本等于数据库版本，见 ChatMemoryVersion）时，跳过 MySQL 重新加载
+ * 2、需要冷加载时在虚拟线程中异步执行，不阻塞 AI 服务实例的创建；调用模型前再等待加载完成
+ *
+ * 对话历史被删除或者改写摘要时需要调用 invalidate
+ */
+@Component
+@Slf4j
+public class ChatMemoryHydrator {
+
+    @Resource
+    private RedisChatMemoryStore redisChatMemoryStore;
+
+    @Resource
+    private ChatMemoryVersion chatMemoryVersion;
+
+    @Resource
+    private ChatHistoryService chatHistoryService;
+
+    @Resource
+    private ChatHistoryOriginalService chatHistoryOriginalService;
+
+    /**
+     * 进行中的加载任务
+     */
+    private final Map<Long, CompletableFuture<Void>> pendingHydrations = new ConcurrentHashMap<>();
+
+    private final ExecutorService hydrateExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 预热对话记忆：Redis 有效时直接复用，否则异步从数据库加载
+     * @param appId 应用 ID
+     * @param codeGenType 代码生成类型（决定从哪张表加载）
+     * @param chatMemory 对话记忆
+     * @param maxCount 最大加载条数
+     */
+    public void hydrate(long appId, CodeGenTypeEnum codeGenType, ChatMemory chatMemory, int maxCount) {
+        if (isFresh(appId)) {
+            chatMemoryVersion.touch(appId);
+            log.info("appId: {} 的 Redis 对话记忆仍然有效，跳过数据库加载", appId);
+            return;
+        }
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            long startTime = System.currentTimeMillis();
+            // 先读版本再加载：加载期间落库的消息会推进数据库版本，下次重新加载
+            long version = chatMemoryVersion.current(appId);
+            int loadedCount = codeGenType == CodeGenTypeEnum.VUE_PROJECT
+                    ? chatHistoryOriginalService.loadOriginalChatHistoryToMemory(appId, chatMemory, maxCount)
+                    : chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, maxCount);
+            chatMemoryVersion.markLoaded(appId, version);
+            log.info("appId: {} 对话记忆冷加载完成，{} 条，耗时 {} ms", appId, loadedCount, System.currentTimeMillis() - startTime);
+        }, hydrateExecutor);
+        pendingHydrations.put(appId, future);
+        future.whenComplete((ignored, error) -> {
+            pendingHydrations.remove(appId, future);
+            if (error != null) {
+                log.error("appId: {} 对话记忆冷加载失败", appId, error);
+            }
+        });
+    }
+
+    /**
+     * 等待对话记忆加载完成（没有进行中的加载时立即完成；加载失败不影响生成，只是没有历史上下文）
+     */
+    public Mono<Void> await(long appId) {
+        CompletableFuture<Void> future = pendingHydrations.get(appId);
+        if (future == null) {
+            return Mono.empty();
+        }
+        return Mono.fromFuture(future).onErrorResume(error -> Mono.empty());
+    }
+
+    /**
+     * 使 Redis 对话记忆失效，下次创建 AI 服务时从数据库重新加载
+     */
+    public void invalidate(long appId) {
+        chatMemoryVersion.invalidate(appId);
+    }
+
+    /**
+     * Redis 对话记忆是否仍然有效
+     */
+    private boolean isFresh(long appId) {
+        try {
+            return chatMemoryVersion.isFresh(appId) && !redisChatMemoryStore.getMessages(appId).isEmpty();
+        } catch (Exception e) {
+            log.warn("检查 appId: {} 的对话记忆失败，按冷加载处理: {}", appId, e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        hydrateExecutor.shutdown();
+    }
+}
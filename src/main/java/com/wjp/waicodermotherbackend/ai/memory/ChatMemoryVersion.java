@@ -0,0 +1,123 @@
+package com.wjp.waicodermotherbackend.ai.memory;
+
+import com.wjp.waicodermotherbackend.config.RedisChatMemoryStoreConfig;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 对话历史版本号
+ *
+ * 数据库版本：chat_memory:version:{appId}，对话历史每次落库（写入、重放、压缩改写）都加一
+ * 记忆版本：chat_memory:fresh:{appId}，Redis 对话记忆对应的数据库版本，两者相等时 Redis 对话记忆才能复用
+ *
+ * 流式生成的对话历史在落库前已经由 AI 服务写入了 Redis 对话记忆，这类落库（live）在两者相等时同时推进记忆版本；
+ * 其他路径的落库只推进数据库版本，下次创建 AI 服务时从数据库重新加载
+ */
+@Component
+@Slf4j
+public class ChatMemoryVersion {
+
+    private static final String VERSION_KEY_PREFIX = "chat_memory:version:";
+
+    private static final String FRESH_KEY_PREFIX = "chat_memory:fresh:";
+
+    /**
+     * 数据库版本加一；记忆版本等于加一前的数据库版本时一起推进
+     */
+    private static final String BUMP_SCRIPT =
+            "local version = redis.call('incr', KEYS[1]) " +
+            "redis.call('expire', KEYS[1], ARGV[1]) " +
+            "if ARGV[2] == '1' and redis.call('get', KEYS[2]) == tostring(version - 1) then " +
+            "redis.call('set', KEYS[2], tostring(version), 'EX', ARGV[1]) end " +
+            "return version";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private RedisChatMemoryStoreConfig redisChatMemoryStoreConfig;
+
+    /**
+     * 当前数据库版本（不存在时为 0）
+     */
+    public long current(long appId) {
+        String version = getVersionBucket(appId).get();
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    /**
+     * Redis 对话记忆是否与数据库版本一致
+     */
+    public boolean isFresh(long appId) {
+        String memoryVersion = getFreshBucket(appId).get();
+        return memoryVersion != null && Long.parseLong(memoryVersion) == current(appId);
+    }
+
+    /**
+     * 从数据库加载完成后记录记忆版本
+     * @param version 开始加载前读到的数据库版本，加载期间有新的落库时版本不一致，下次重新加载
+     */
+    public void markLoaded(long appId, long version) {
+        getFreshBucket(appId).set(String.valueOf(version), getTtl());
+    }
+
+    /**
+     * 续期记忆版本，与对话记忆的有效期保持一致
+     */
+    public void touch(long appId) {
+        getFreshBucket(appId).expire(getTtl());
+    }
+
+    /**
+     * 对话历史已落库
+     * @param live 是否为流式生成写入的对话历史（已经在 Redis 对话记忆中）
+     */
+    public void bump(long appId, boolean live) {
+        try {
+            redissonClient.getScript(StringCodec.INSTANCE).eval(
+                    RScript.Mode.READ_WRITE,
+                    BUMP_SCRIPT,
+                    RScript.ReturnType.INTEGER,
+                    List.of(VERSION_KEY_PREFIX + appId, FRESH_KEY_PREFIX + appId),
+                    String.valueOf(getTtl().toSeconds()),
+                    live ? "1" : "0"
+            );
+        } catch (Exception e) {
+            // 版本号没有推进时无法识别变化，直接让记忆失效
+            log.warn("更新 appId: {} 的对话历史版本失败: {}", appId, e.getMessage());
+            try {
+                invalidate(appId);
+            } catch (Exception ignored) {
+                // Redis 不可用时检查新鲜度也会失败，按冷加载处理
+            }
+        }
+    }
+
+    /**
+     * 使 Redis 对话记忆失效
+     */
+    public void invalidate(long appId) {
+        getFreshBucket(appId).delete();
+    }
+
+    private Duration getTtl() {
+        Long ttl = redisChatMemoryStoreConfig.getTtl();
+        return Duration.ofSeconds(ttl == null || ttl <= 0 ? 3600 : ttl);
+    }
+
+    private RBucket<String> getVersionBucket(long appId) {
+        return redissonClient.getBucket(VERSION_KEY_PREFIX + appId, StringCodec.INSTANCE);
+    }
+
+    private RBucket<String> getFreshBucket(long appId) {
+        return redissonClient.getBucket(FRESH_KEY_PREFIX + appId, StringCodec.INSTANCE);
+    }
+}
@@ -0,0 +1,211 @@
+package com.wjp.waicodermotherbackend.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.wjp.waicodermotherbackend.ai.ConversationSummaryService;
+import com.wjp.waicodermotherbackend.ai.model.message.ToolExecutedMessage;
+import com.wjp.waicodermotherbackend.ai.model.message.ToolRequestMessage;
+import com.wjp.waicodermotherbackend.config.ChatSummaryConfig;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistoryOriginal;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistorySummary;
+import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
+import com.wjp.waicodermotherbackend.service.ChatHistoryOriginalService;
+import com.wjp.waicodermotherbackend.service.ChatHistorySummaryService;
+import dev.langchain4j.model.TokenCountEstimator;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后台对话摘要
+ * 每轮对话入库后检查：除最近 keepRecentMessages 条之外，尚未摘要的消息数或估算 Token 数超过阈值时，
+ * 在虚拟线程中调用模型把这些消息与已有摘要合并为新的滚动摘要，不占用请求链路。
+ *
+ * 折叠边界不会落在工具执行结果上（工具调用请求与结果必须成对回放）
+ */
+@Component
+@Slf4j
+public class ConversationSummarizer {
+
+    private static final String LOCK_KEY_PREFIX = "chat_memory:summary_lock:";
+
+    @Resource
+    private ChatSummaryConfig chatSummaryConfig;
+
+    @Resource
+    private ChatHistoryOriginalService chatHistoryOriginalService;
+
+    @Resource
+    private ChatHistorySummaryService chatHistorySummaryService;
+
+    @Resource
+    private ConversationSummaryService conversationSummaryService;
+
+    @Resource
+    private ChatMemoryHydrator chatMemoryHydrator;
+
+    @Resource(name = "chatMemoryTokenCountEstimator")
+    private TokenCountEstimator chatMemoryTokenCountEstimator;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * 本节点正在摘要的应用
+     */
+    private final Set<Long> runningApps = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 异步检查并摘要（同一个应用同时只会有一个摘要任务）
+     * @param appId 应用ID
+     */
+    public void summarizeAsync(long appId) {
+        if (!chatSummaryConfig.isEnabled() || !runningApps.add(appId)) {
+            return;
+        }
+        Thread.startVirtualThread(() -> {
+            // 多节点部署时用分布式锁去重，拿不到锁说明其他节点正在摘要
+            RLock lock = redissonClient.getLock(LOCK_KEY_PREFIX + appId);
+            boolean locked = false;
+            try {
+                locked = lock.tryLock(0, 5, TimeUnit.MINUTES);
+                if (locked) {
+                    summarizeIfNeeded(appId);
+                }
+            } catch (Exception e) {
+                log.error("appId: {} 对话摘要失败", appId, e);
+            } finally {
+                if (locked && lock.isHeldByCurrentThread()) {
+                    lock.unlock();
+                }
+                runningApps.remove(appId);
+            }
+        });
+    }
+
+    /**
+     * 检查阈值并摘要
+     * @param appId 应用ID
+     * @return 本次折叠的消息数
+     */
+    public int summarizeIfNeeded(long appId) {
+        ChatHistorySummary oldSummary = chatHistorySummaryService.getByAppId(appId);
+        long afterId = oldSummary == null ? 0L : oldSummary.getLastMessageId();
+        // 1、查询尚未摘要的消息
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(ChatHistoryOriginal::getAppId, appId)
+                .gt(ChatHistoryOriginal::getId, afterId)
+                .orderBy(ChatHistoryOriginal::getId, true);
+        List<ChatHistoryOriginal> pendingList = chatHistoryOriginalService.list(queryWrapper);
+        int keepRecent = chatSummaryConfig.getKeepRecentMessages();
+        if (pendingList.size() <= keepRecent) {
+            return 0;
+        }
+        // 2、检查触发条件：消息数或估算 Token 数
+        boolean triggered = pendingList.size() >= keepRecent + chatSummaryConfig.getTriggerMessageCount();
+        if (!triggered) {
+            long tokens = 0;
+            for (ChatHistoryOriginal history : pendingList) {
+                tokens += chatMemoryTokenCountEstimator.estimateTokenCountInText(history.getMessage());
+            }
+            triggered = tokens >= chatSummaryConfig.getTriggerTokens();
+        }
+        if (!triggered) {
+            return 0;
+        }
+        // 3、确定折叠范围：最近的消息保留原文，单次输入不超过 maxTranscriptChars，边界不能落在工具执行结果上
+        int foldLimit = pendingList.size() - keepRecent;
+        StringBuilder transcript = new StringBuilder();
+        int foldCount = 0;
+        for (int i = 0; i < foldLimit; i++) {
+            if (transcript.length() >= chatSummaryConfig.getMaxTranscriptChars() && !isToolResult(pendingList.get(i))) {
+                break;
+            }
+            appendTranscript(transcript, pendingList.get(i));
+            foldCount = i + 1;
+        }
+        while (foldCount > 0 && foldCount < pendingList.size() && isToolResult(pendingList.get(foldCount))) {
+            appendTranscript(transcript, pendingList.get(foldCount));
+            foldCount++;
+        }
+        if (foldCount == 0) {
+            return 0;
+        }
+        // 4、调用模型合并摘要
+        long startTime = System.currentTimeMillis();
+        String input = oldSummary == null
+                ? "## 新增对话\n" + transcript
+                : "## 已有摘要\n" + oldSummary.getSummary() + "\n\n## 新增对话\n" + transcript;
+        String summary = conversationSummaryService.summarize(input);
+        if (StrUtil.isBlank(summary)) {
+            log.warn("appId: {} 对话摘要结果为空，跳过", appId);
+            return 0;
+        }
+        int messageCount = (oldSummary == null || oldSummary.getMessageCount() == null ? 0 : oldSummary.getMessageCount()) + foldCount;
+        Long lastMessageId = pendingList.get(foldCount - 1).getId();
+        chatHistorySummaryService.saveSummary(appId, summary.trim(), lastMessageId, messageCount);
+        // 5、下次创建 AI 服务时按"摘要 + 最近消息"重新加载对话记忆
+        chatMemoryHydrator.invalidate(appId);
+        log.info("appId: {} 折叠 {} 条消息到对话摘要，累计 {} 条，耗时 {} ms", appId, foldCount, messageCount, System.currentTimeMillis() - startTime);
+        return foldCount;
+    }
+
+    /**
+     * 追加一条对话记录（工具调用只保留名称和路径，不复述文件内容）
+     */
+    private void appendTranscript(StringBuilder transcript, ChatHistoryOriginal history) {
+        int maxChars = chatSummaryConfig.getMaxMessageChars();
+        ChatHistoryMessageTypeEnum messageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(history.getMessageType());
+        if (messageTypeEnum == null || StrUtil.isBlank(history.getMessage())) {
+            return;
+        }
+        try {
+            switch (messageTypeEnum) {
+                case USER -> transcript.append("用户：").append(StrUtil.maxLength(history.getMessage(), maxChars)).append('\n');
+                case AI -> transcript.append("AI：").append(StrUtil.maxLength(history.getMessage(), maxChars)).append('\n');
+                case TOOL_EXECUTION_REQUEST -> {
+                    ToolRequestMessage toolRequestMessage = JSONUtil.toBean(history.getMessage(), ToolRequestMessage.class);
+                    if (StrUtil.isNotBlank(toolRequestMessage.getText())) {
+                        transcript.append("AI：").append(StrUtil.maxLength(toolRequestMessage.getText(), maxChars)).append('\n');
+                    }
+                    transcript.append("[调用工具 ").append(toolRequestMessage.getName()).append("] ")
+                            .append(describeArguments(toolRequestMessage.getArguments(), maxChars)).append('\n');
+                }
+                case TOOL_EXECUTION_RESULT -> {
+                    ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(history.getMessage(), ToolExecutedMessage.class);
+                    transcript.append("[工具结果] ").append(StrUtil.maxLength(StrUtil.nullToEmpty(toolExecutedMessage.getResult()), maxChars)).append('\n');
+                }
+            }
+        } catch (Exception e) {
+            log.warn("对话记录格式异常，跳过, id: {}", history.getId());
+        }
+    }
+
+    /**
+     * 工具参数描述：有文件路径时只保留路径
+     */
+    private static String describeArguments(String arguments, int maxChars) {
+        if (StrUtil.isBlank(arguments)) {
+            return "";
+        }
+        JSONObject argumentsJson = JSONUtil.parseObj(arguments);
+        String relativeFilePath = argumentsJson.getStr("relativeFilePath");
+        if (relativeFilePath != null) {
+            return relativeFilePath;
+        }
+        return StrUtil.maxLength(arguments, maxChars);
+    }
+
+    private static boolean isToolResult(ChatHistoryOriginal history) {
+        return ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT.getValue().equals(history.getMessageType());
+    }
+}
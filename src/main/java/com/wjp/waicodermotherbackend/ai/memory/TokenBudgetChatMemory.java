@@ -0,0 +1,248 @@
+package com.wjp.waicodermotherbackend.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按 Token 预算淘汰的对话记忆（替代固定条数的 MessageWindowChatMemory）
+ *
+ * 淘汰规则：
+ *  1、系统消息始终保留
+ *  2、其余消息按"单元"从最早的开始淘汰：带工具调用请求的 AiMessage 与紧随其后的 ToolExecutionResultMessage 属于同一个单元，
+ *     永远不会被拆开（拆开后模型会报 tool_call_id 不匹配）
+ *  3、最新的一个单元即使超出预算也保留，避免丢掉本轮的用户消息或工具结果
+ *  4、超出预算时一次淘汰到 maxTokens * evictionTargetRatio 以下，而不是每轮只淘汰一条：
+ *     开头的消息不会每轮都变，供应商的提示词前缀缓存才能持续命中
+ *
+ * 系统消息固定放在第一条，保证请求前缀字节稳定
+ * 每次 messages()（即每次调用模型）记录一次估算的提示词 Token 数
+ */
+@Slf4j
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    /**
+     * Token 估算缓存的最大条数，超过后整体清空
+     */
+    private static final int MAX_TOKEN_CACHE_SIZE = 512;
+
+    private final Object id;
+
+    private final int maxTokens;
+
+    /**
+     * 触发淘汰后的目标 Token 数
+     */
+    private final int evictionTargetTokens;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    private final ChatMemoryStore chatMemoryStore;
+
+    private final DistributionSummary promptTokensSummary;
+
+    /**
+     * 消息 Token 数缓存：从 Redis 读出的消息每次都是新对象，以消息本身为 key（按内容 equals），避免每次调用模型都重新分词；
+     * 不能只用 hashCode 做 key，哈希冲突的两条消息会拿到同一个 Token 数
+     */
+    private final Map<ChatMessage, Integer> tokenCountCache = new ConcurrentHashMap<>();
+
+    private TokenBudgetChatMemory(Builder builder) {
+        this.id = Objects.requireNonNull(builder.id, "id");
+        this.maxTokens = builder.maxTokens;
+        this.evictionTargetTokens = (int) (builder.maxTokens * builder.evictionTargetRatio);
+        this.tokenCountEstimator = Objects.requireNonNull(builder.tokenCountEstimator, "tokenCountEstimator");
+        this.chatMemoryStore = Objects.requireNonNull(builder.chatMemoryStore, "chatMemoryStore");
+        this.promptTokensSummary = builder.promptTokensSummary;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(chatMemoryStore.getMessages(id));
+        if (message instanceof SystemMessage) {
+            // 系统消息只保留一条，相同则跳过
+            SystemMessage existing = findSystemMessage(messages);
+            if (message.equals(existing)) {
+                return;
+            }
+            if (existing != null) {
+                messages.remove(existing);
+            }
+            messages.add(0, message);
+        } else {
+            messages.add(message);
+        }
+        evict(messages);
+        chatMemoryStore.updateMessages(id, messages);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        List<ChatMessage> messages = new ArrayList<>(chatMemoryStore.getMessages(id));
+        int totalTokens = evict(messages);
+        if (promptTokensSummary != null) {
+            promptTokensSummary.record(totalTokens);
+        }
+        return messages;
+    }
+
+    @Override
+    public void clear() {
+        chatMemoryStore.deleteMessages(id);
+    }
+
+    /**
+     * 超出预算时按单元淘汰最早的消息，直到总 Token 数不超过淘汰目标
+     * @param messages 消息列表（原地修改）
+     * @return 淘汰后的估算 Token 数
+     */
+    private int evict(List<ChatMessage> messages) {
+        int totalTokens = 0;
+        for (ChatMessage message : messages) {
+            totalTokens += estimateTokenCount(message);
+        }
+        if (totalTokens <= maxTokens) {
+            return totalTokens;
+        }
+        int evictedCount = 0;
+        while (totalTokens > evictionTargetTokens) {
+            int start = firstEvictableIndex(messages);
+            if (start < 0) {
+                break;
+            }
+            int end = unitEnd(messages, start);
+            // 只剩最新的一个单元时停止淘汰
+            if (end >= messages.size()) {
+                break;
+            }
+            for (int i = start; i < end; i++) {
+                totalTokens -= estimateTokenCount(messages.remove(start));
+                evictedCount++;
+            }
+        }
+        if (evictedCount > 0) {
+            log.debug("对话记忆 {} 超出 Token 预算 {}，淘汰 {} 条消息，剩余约 {} Token", id, maxTokens, evictedCount, totalTokens);
+        }
+        return totalTokens;
+    }
+
+    /**
+     * 第一条可以淘汰的消息（跳过系统消息）
+     */
+    private static int firstEvictableIndex(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (!(messages.get(i) instanceof SystemMessage)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 单元的结束位置（不包含）：工具调用请求连同其后的所有工具执行结果；
+     * 开头就是孤立的工具执行结果时，一并淘汰到下一条非工具结果消息为止
+     */
+    private static int unitEnd(List<ChatMessage> messages, int start) {
+        int end = start + 1;
+        ChatMessage first = messages.get(start);
+        boolean toolUnit = first instanceof ToolExecutionResultMessage
+                || (first instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests());
+        if (toolUnit) {
+            while (end < messages.size() && messages.get(end) instanceof ToolExecutionResultMessage) {
+                end++;
+            }
+        }
+        return end;
+    }
+
+    private int estimateTokenCount(ChatMessage message) {
+        if (tokenCountCache.size() > MAX_TOKEN_CACHE_SIZE) {
+            tokenCountCache.clear();
+        }
+        return tokenCountCache.computeIfAbsent(message, tokenCountEstimator::estimateTokenCountInMessage);
+    }
+
+    private static SystemMessage findSystemMessage(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                return systemMessage;
+            }
+        }
+        return null;
+    }
+
+    public static class Builder {
+
+        private Object id;
+
+        private int maxTokens;
+
+        private double evictionTargetRatio = 1.0;
+
+        private TokenCountEstimator tokenCountEstimator;
+
+        private ChatMemoryStore chatMemoryStore;
+
+        private DistributionSummary promptTokensSummary;
+
+        public Builder id(Object id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder maxTokens(int maxTokens, TokenCountEstimator tokenCountEstimator) {
+            this.maxTokens = maxTokens;
+            this.tokenCountEstimator = tokenCountEstimator;
+            return this;
+        }
+
+        /**
+         * 触发淘汰后淘汰到 maxTokens 的多少比例（0, 1]，默认 1 即刚好不超预算
+         */
+        public Builder evictionTargetRatio(double evictionTargetRatio) {
+            if (evictionTargetRatio <= 0 || evictionTargetRatio > 1) {
+                throw new IllegalArgumentException("evictionTargetRatio 必须在 (0, 1] 之间");
+            }
+            this.evictionTargetRatio = evictionTargetRatio;
+            return this;
+        }
+
+        public Builder chatMemoryStore(ChatMemoryStore chatMemoryStore) {
+            this.chatMemoryStore = chatMemoryStore;
+            return this;
+        }
+
+        /**
+         * 提示词 Token 数直方图（可选）
+         */
+        public Builder promptTokensSummary(DistributionSummary promptTokensSummary) {
+            this.promptTokensSummary = promptTokensSummary;
+            return this;
+        }
+
+        public TokenBudgetChatMemory build() {
+            return new TokenBudgetChatMemory(this);
+        }
+    }
+}
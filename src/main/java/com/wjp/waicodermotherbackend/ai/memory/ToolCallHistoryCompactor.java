@@ -0,0 +1,147 @@
+package com.wjp.waicodermotherbackend.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.wjp.waicodermotherbackend.ai.model.message.ToolExecutedMessage;
+import com.wjp.waicodermotherbackend.ai.model.message.ToolRequestMessage;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistoryOriginal;
+import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 工具调用历史压缩
+ * writeFile 的 content 参数会完整保存在 chat_history_original 中，并在加载对话记忆时全部回放给模型。
+ * 压缩后，旧版本的文件内容替换为"内容哈希 + 路径"的引用，模型需要时可以调用 readFile 读取：
+ *  1、同一个文件只保留最新一次 writeFile 的完整内容
+ *  2、工具执行结果记录中的参数只是冗余副本（结果取 result 字段），直接压缩
+ */
+@Slf4j
+public final class ToolCallHistoryCompactor {
+
+    public static final String WRITE_FILE_TOOL = "writeFile";
+
+    /**
+     * 压缩标记，出现在参数中说明已经压缩过
+     */
+    public static final String CONTENT_HASH_KEY = "contentHash";
+
+    private static final int HASH_LENGTH = 12;
+
+    private ToolCallHistoryCompactor() {
+    }
+
+    /**
+     * 压缩一段按时间正序排列的对话历史（原地修改）
+     * @param historyList 对话历史（老的在前，新的在后）
+     * @return 被修改的记录
+     */
+    public static List<ChatHistoryOriginal> compact(List<ChatHistoryOriginal> historyList) {
+        List<ChatHistoryOriginal> changedList = new ArrayList<>();
+        // 从新到旧遍历，第一次见到的路径是最新版本
+        Set<String> latestPaths = new HashSet<>();
+        for (int i = historyList.size() - 1; i >= 0; i--) {
+            ChatHistoryOriginal history = historyList.get(i);
+            String compacted = compactMessage(history, latestPaths);
+            if (compacted != null) {
+                history.setMessage(compacted);
+                changedList.add(history);
+            }
+        }
+        return changedList;
+    }
+
+    /**
+     * 压缩工具执行结果记录（参数是请求记录的副本）
+     * @param toolExecutedMessage 工具执行结果
+     * @return 要入库的 JSON
+     */
+    public static String compactExecutedMessage(ToolExecutedMessage toolExecutedMessage) {
+        if (WRITE_FILE_TOOL.equals(toolExecutedMessage.getName()) && toolExecutedMessage.getResult() != null) {
+            String compactedArguments = compactWriteFileArguments(toolExecutedMessage.getArguments());
+            if (compactedArguments != null) {
+                ToolExecutedMessage compactedMessage = new ToolExecutedMessage();
+                compactedMessage.setType(toolExecutedMessage.getType());
+                compactedMessage.setId(toolExecutedMessage.getId());
+                compactedMessage.setName(toolExecutedMessage.getName());
+                compactedMessage.setArguments(compactedArguments);
+                compactedMessage.setResult(toolExecutedMessage.getResult());
+                return JSONUtil.toJsonStr(compactedMessage);
+            }
+        }
+        return JSONUtil.toJsonStr(toolExecutedMessage);
+    }
+
+    /**
+     * 压缩单条记录
+     * @return 压缩后的消息，不需要压缩时返回 null
+     */
+    private static String compactMessage(ChatHistoryOriginal history, Set<String> latestPaths) {
+        ChatHistoryMessageTypeEnum messageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(history.getMessageType());
+        String message = history.getMessage();
+        if (messageTypeEnum == null || StrUtil.isBlank(message) || !message.contains(WRITE_FILE_TOOL)) {
+            return null;
+        }
+        try {
+            switch (messageTypeEnum) {
+                case TOOL_EXECUTION_REQUEST -> {
+                    ToolRequestMessage toolRequestMessage = JSONUtil.toBean(message, ToolRequestMessage.class);
+                    if (!WRITE_FILE_TOOL.equals(toolRequestMessage.getName())) {
+                        return null;
+                    }
+                    String path = JSONUtil.parseObj(toolRequestMessage.getArguments()).getStr("relativeFilePath");
+                    // 最新版本保留原文
+                    if (path == null || latestPaths.add(path)) {
+                        return null;
+                    }
+                    String compactedArguments = compactWriteFileArguments(toolRequestMessage.getArguments());
+                    if (compactedArguments == null) {
+                        return null;
+                    }
+                    toolRequestMessage.setArguments(compactedArguments);
+                    return JSONUtil.toJsonStr(toolRequestMessage);
+                }
+                case TOOL_EXECUTION_RESULT -> {
+                    ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(message, ToolExecutedMessage.class);
+                    String compacted = compactExecutedMessage(toolExecutedMessage);
+                    return compacted.length() < message.length() ? compacted : null;
+                }
+                default -> {
+                    return null;
+                }
+            }
+        } catch (Exception e) {
+            // 格式异常的历史记录保持原样
+            log.warn("压缩工具调用历史失败, id: {}, error: {}", history.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 把 writeFile 参数中的文件内容替换为引用
+     * @param arguments 工具调用参数 JSON
+     * @return 压缩后的参数，已经压缩过或没有内容时返回 null
+     */
+    private static String compactWriteFileArguments(String arguments) {
+        if (StrUtil.isBlank(arguments)) {
+            return null;
+        }
+        JSONObject argumentsJson = JSONUtil.parseObj(arguments);
+        String content = argumentsJson.getStr("content");
+        if (content == null || argumentsJson.containsKey(CONTENT_HASH_KEY)) {
+            return null;
+        }
+        String relativeFilePath = argumentsJson.getStr("relativeFilePath");
+        String contentHash = SecureUtil.sha256(content).substring(0, HASH_LENGTH);
+        argumentsJson.set("content", String.format("[历史版本内容已省略 sha256:%s，共 %d 字符，如需查看当前内容请调用 readFile 读取 %s]",
+                contentHash, content.length(), relativeFilePath));
+        argumentsJson.set(CONTENT_HASH_KEY, contentHash);
+        return argumentsJson.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package com.wjp.waicodermotherbackend.ai.model;
+
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.model.output.structured.Description;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量路由结果
+ */
+@Data
+@Description("批量代码生成类型路由结果")
+public class CodeGenTypeBatchResult {
+
+    @Description("每条需求的路由结果，与输入一一对应")
+    private List<Item> items;
+
+    @Data
+    @Description("单条需求的路由结果")
+    public static class Item {
+
+        @Description("输入中的需求序号")
+        private Integer index;
+
+        @Description("代码生成类型")
+        private CodeGenTypeEnum codeGenType;
+    }
+}
@@ -0,0 +1,42 @@
+package com.wjp.waicodermotherbackend.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Vue 项目构建进度消息
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+@NoArgsConstructor
+public class BuildProgressMessage extends StreamMessage {
+
+    /**
+     * 构建任务 id
+     */
+    private String jobId;
+
+    /**
+     * 构建阶段
+     */
+    private String phase;
+
+    /**
+     * 阶段状态：queued / success / failed
+     */
+    private String status;
+
+    /**
+     * 阶段耗时（毫秒）
+     */
+    private Long durationMs;
+
+    public BuildProgressMessage(String jobId, String phase, String status, Long durationMs) {
+        super(StreamMessageTypeEnum.BUILD_PROGRESS.getValue());
+        this.jobId = jobId;
+        this.phase = phase;
+        this.status = status;
+        this.durationMs = durationMs;
+    }
+}
@@ -0,0 +1,31 @@
+package com.wjp.waicodermotherbackend.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 排队位置消息：模型并发已满时推送给前端
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+@NoArgsConstructor
+public class QueuePositionMessage extends StreamMessage {
+
+    /**
+     * 当前排队位置（从 1 开始）
+     */
+    private Integer position;
+
+    public QueuePositionMessage(int position) {
+        super(StreamMessageTypeEnum.QUEUE_POSITION.getValue());
+        this.position = position;
+    }
+
+    /**
+     * 展示给前端的排队提示（不计入对话历史）
+     */
+    public String toDisplayText() {
+        return String.format("\n\n[排队] 当前生成人数较多，您排在第 %d 位，请稍候\n\n", position);
+    }
+}
@@ -10,7 +10,9 @@ public enum StreamMessageTypeEnum {
 
     AI_RESPONSE("ai_response", "AI响应"),
     TOOL_REQUEST("tool_request", "工具请求"),
-    TOOL_EXECUTED("tool_executed", "工具执行结果");
+    TOOL_EXECUTED("tool_executed", "工具执行结果"),
+    BUILD_PROGRESS("build_progress", "构建进度"),
+    QUEUE_POSITION("queue_position", "排队位置");
 
     private final String value;
     private final String text;
@@ -0,0 +1,132 @@
+package com.wjp.waicodermotherbackend.ai.routing;
+
+import cn.hutool.crypto.SecureUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wjp.waicodermotherbackend.config.CodeGenRoutingConfig;
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 代码生成类型路由
+ * 1、按规范化提示词的哈希查缓存，相同需求不重复判定
+ * 2、本地关键词分类器能确定的直接返回，并抽样调用路由模型核对
+ * 3、模糊的需求才调用路由模型（经微批合并，受准入控制），同时与本地分类器的倾向比对
+ *
+ * 指标：
+ *  ai_routing_decisions_total{source=cache|keyword|llm}：各来源的判定次数，keyword / 总数即本地命中率
+ *  ai_routing_keyword_agreement_total{result=agree|disagree}：本地分类器与路由模型的一致情况
+ */
+@Component
+@Slf4j
+public class CodeGenTypeRouter {
+
+    @Resource
+    private CodeGenRoutingConfig codeGenRoutingConfig;
+
+    @Resource
+    private RoutingMicroBatcher routingMicroBatcher;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, CodeGenTypeEnum> decisionCache;
+
+    private Counter cacheDecisionCounter;
+    private Counter keywordDecisionCounter;
+    private Counter llmDecisionCounter;
+    private Counter agreeCounter;
+    private Counter disagreeCounter;
+
+    @PostConstruct
+    public void init() {
+        decisionCache = Caffeine.newBuilder()
+                .maximumSize(codeGenRoutingConfig.getCacheMaxSize())
+                .expireAfterWrite(Duration.ofHours(codeGenRoutingConfig.getCacheExpireHours()))
+                .build();
+        cacheDecisionCounter = decisionCounter("cache");
+        keywordDecisionCounter = decisionCounter("keyword");
+        llmDecisionCounter = decisionCounter("llm");
+        agreeCounter = agreementCounter("agree");
+        disagreeCounter = agreementCounter("disagree");
+    }
+
+    /**
+     * 选择代码生成类型
+     * @param userPrompt 用户需求
+     * @param userId 用户 ID（用于准入排队）
+     * @return 代码生成类型
+     */
+    public CodeGenTypeEnum route(String userPrompt, Long userId) {
+        String normalizedPrompt = KeywordCodeGenTypeClassifier.normalize(userPrompt);
+        String cacheKey = SecureUtil.sha256(normalizedPrompt);
+        CodeGenTypeEnum cached = decisionCache.getIfPresent(cacheKey);
+        if (cached != null) {
+            cacheDecisionCounter.increment();
+            return cached;
+        }
+        KeywordCodeGenTypeClassifier.Classification classification = codeGenRoutingConfig.isKeywordEnabled()
+                ? KeywordCodeGenTypeClassifier.classify(normalizedPrompt,
+                        codeGenRoutingConfig.getMinScore(), codeGenRoutingConfig.getMinMargin())
+                : new KeywordCodeGenTypeClassifier.Classification(null, false);
+        CodeGenTypeEnum codeGenType;
+        if (classification.confident()) {
+            codeGenType = classification.codeGenType();
+            keywordDecisionCounter.increment();
+            if (ThreadLocalRandom.current().nextDouble() < codeGenRoutingConfig.getShadowSampleRate()) {
+                Thread.startVirtualThread(() -> shadowCheck(userPrompt, userId, codeGenType));
+            }
+        } else {
+            codeGenType = routingMicroBatcher.route(userPrompt, userId);
+            llmDecisionCounter.increment();
+            if (classification.codeGenType() != null) {
+                recordAgreement(classification.codeGenType(), codeGenType);
+            }
+        }
+        decisionCache.put(cacheKey, codeGenType);
+        return codeGenType;
+    }
+
+    /**
+     * 抽样核对本地判定结果，只记录指标，不影响已返回的结果
+     */
+    private void shadowCheck(String userPrompt, Long userId, CodeGenTypeEnum keywordType) {
+        try {
+            CodeGenTypeEnum llmType = routingMicroBatcher.route(userPrompt, userId);
+            recordAgreement(keywordType, llmType);
+        } catch (Exception e) {
+            log.warn("路由抽样核对失败: {}", e.getMessage());
+        }
+    }
+
+    private void recordAgreement(CodeGenTypeEnum keywordType, CodeGenTypeEnum llmType) {
+        if (keywordType == llmType) {
+            agreeCounter.increment();
+        } else {
+            disagreeCounter.increment();
+            log.info("本地路由与模型不一致，本地: {}，模型: {}", keywordType, llmType);
+        }
+    }
+
+    private Counter decisionCounter(String source) {
+        return Counter.builder("ai_routing_decisions_total")
+                .description("代码生成类型路由判定次数")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    private Counter agreementCounter(String result) {
+        return Counter.builder("ai_routing_keyword_agreement_total")
+                .description("本地关键词分类器与路由模型的一致情况")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,168 @@
+package com.wjp.waicodermotherbackend.ai.routing;
+
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地关键词分类器
+ * 对提示词按关键词加权打分，第一名得分足够高且明显领先时才给出确定结果，否则交给路由模型
+ * 关键词按最长匹配计分：长关键词先匹配，与已匹配区间重叠的短关键词不再计分（"后台管理" 不会再额外命中 "后台"）
+ */
+public final class KeywordCodeGenTypeClassifier {
+
+    private static final Map<CodeGenTypeEnum, Map<String, Integer>> KEYWORD_WEIGHTS = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 所有类型的关键词，按长度倒序（同长度保持声明顺序）
+     */
+    private static final List<Keyword> KEYWORDS_LONGEST_FIRST = new ArrayList<>();
+
+    static {
+        Map<String, Integer> vueKeywords = new LinkedHashMap<>();
+        vueKeywords.put("vue", 5);
+        vueKeywords.put("管理系统", 4);
+        vueKeywords.put("后台管理", 4);
+        vueKeywords.put("后台", 2);
+        vueKeywords.put("admin", 3);
+        vueKeywords.put("dashboard", 3);
+        vueKeywords.put("仪表盘", 3);
+        vueKeywords.put("商城", 3);
+        vueKeywords.put("电商", 3);
+        vueKeywords.put("购物车", 3);
+        vueKeywords.put("权限", 3);
+        vueKeywords.put("增删改查", 3);
+        vueKeywords.put("crud", 3);
+        vueKeywords.put("状态管理", 3);
+        vueKeywords.put("数据管理", 3);
+        vueKeywords.put("路由", 2);
+        vueKeywords.put("组件", 2);
+        vueKeywords.put("多页面", 2);
+        KEYWORD_WEIGHTS.put(CodeGenTypeEnum.VUE_PROJECT, vueKeywords);
+
+        Map<String, Integer> htmlKeywords = new LinkedHashMap<>();
+        htmlKeywords.put("单页面", 4);
+        htmlKeywords.put("单页", 3);
+        htmlKeywords.put("一个页面", 3);
+        htmlKeywords.put("落地页", 4);
+        htmlKeywords.put("landing page", 4);
+        htmlKeywords.put("html", 3);
+        htmlKeywords.put("个人主页", 3);
+        htmlKeywords.put("简历", 3);
+        htmlKeywords.put("名片", 3);
+        htmlKeywords.put("邀请函", 3);
+        htmlKeywords.put("倒计时", 2);
+        htmlKeywords.put("小游戏", 2);
+        htmlKeywords.put("静态页面", 2);
+        htmlKeywords.put("简单", 1);
+        KEYWORD_WEIGHTS.put(CodeGenTypeEnum.HTML, htmlKeywords);
+
+        Map<String, Integer> multiFileKeywords = new LinkedHashMap<>();
+        multiFileKeywords.put("多文件", 5);
+        multiFileKeywords.put("分离", 2);
+        multiFileKeywords.put("企业官网", 4);
+        multiFileKeywords.put("官网", 3);
+        multiFileKeywords.put("多个页面", 2);
+        multiFileKeywords.put("博客", 2);
+        multiFileKeywords.put("作品集", 2);
+        KEYWORD_WEIGHTS.put(CodeGenTypeEnum.MULTI_FILE, multiFileKeywords);
+
+        KEYWORD_WEIGHTS.forEach((codeGenType, keywordWeights) -> keywordWeights.forEach(
+                (keyword, weight) -> KEYWORDS_LONGEST_FIRST.add(new Keyword(keyword, codeGenType, weight))));
+        KEYWORDS_LONGEST_FIRST.sort(Comparator.comparingInt((Keyword keyword) -> keyword.text().length()).reversed());
+    }
+
+    private KeywordCodeGenTypeClassifier() {
+    }
+
+    private record Keyword(String text, CodeGenTypeEnum codeGenType, int weight) {
+    }
+
+    /**
+     * 分类结果
+     * @param codeGenType 得分最高的类型（没有命中任何关键词时为 null）
+     * @param confident 是否足够确定，可以跳过路由模型
+     */
+    public record Classification(CodeGenTypeEnum codeGenType, boolean confident) {
+    }
+
+    /**
+     * 对提示词分类
+     * @param normalizedPrompt 规范化后的提示词（小写、压缩空白）
+     * @param minScore 最低得分
+     * @param minMargin 第一名与第二名的最小分差
+     * @return 分类结果
+     */
+    public static Classification classify(String normalizedPrompt, int minScore, int minMargin) {
+        Map<CodeGenTypeEnum, Integer> scores = score(normalizedPrompt);
+        CodeGenTypeEnum best = null;
+        int bestScore = 0;
+        int secondScore = 0;
+        for (Map.Entry<CodeGenTypeEnum, Integer> entry : scores.entrySet()) {
+            int score = entry.getValue();
+            if (score > bestScore) {
+                secondScore = bestScore;
+                bestScore = score;
+                best = entry.getKey();
+            } else if (score > secondScore) {
+                secondScore = score;
+            }
+        }
+        boolean confident = best != null && bestScore >= minScore && bestScore - secondScore >= minMargin;
+        return new Classification(best, confident);
+    }
+
+    /**
+     * 规范化提示词：去掉首尾空白、转小写、连续空白压缩为一个空格
+     */
+    public static String normalize(String prompt) {
+        return prompt.trim().toLowerCase().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 按最长匹配计算各类型得分，每个关键词最多计分一次（跨类型的重叠同样只算较长的关键词）
+     */
+    static Map<CodeGenTypeEnum, Integer> score(String normalizedPrompt) {
+        Map<CodeGenTypeEnum, Integer> scores = new EnumMap<>(CodeGenTypeEnum.class);
+        KEYWORD_WEIGHTS.keySet().forEach(codeGenType -> scores.put(codeGenType, 0));
+        boolean[] matched = new boolean[normalizedPrompt.length()];
+        for (Keyword keyword : KEYWORDS_LONGEST_FIRST) {
+            int start = findUnmatched(normalizedPrompt, keyword.text(), matched);
+            if (start < 0) {
+                continue;
+            }
+            for (int i = start; i < start + keyword.text().length(); i++) {
+                matched[i] = true;
+            }
+            scores.merge(keyword.codeGenType(), keyword.weight(), Integer::sum);
+        }
+        return scores;
+    }
+
+    /**
+     * 查找关键词第一个不与已匹配区间重叠的位置
+     * @return 起始下标，不存在时为 -1
+     */
+    private static int findUnmatched(String normalizedPrompt, String keyword, boolean[] matched) {
+        int start = normalizedPrompt.indexOf(keyword);
+        while (start >= 0) {
+            boolean overlaps = false;
+            for (int i = start; i < start + keyword.length(); i++) {
+                if (matched[i]) {
+                    overlaps = true;
+                    break;
+                }
+            }
+            if (!overlaps) {
+                return start;
+            }
+            start = normalizedPrompt.indexOf(keyword, start + 1);
+        }
+        return -1;
+    }
+}
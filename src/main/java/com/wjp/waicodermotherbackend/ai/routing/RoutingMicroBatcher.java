@@ -0,0 +1,281 @@
+package com.wjp.waicodermotherbackend.ai.routing;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+import com.wjp.waicodermotherbackend.ai.AiCodeGenTypeBatchRoutingService;
+import com.wjp.waicodermotherbackend.ai.AiCodeGenTypeRoutingService;
+import com.wjp.waicodermotherbackend.ai.admission.AdmissionPermit;
+import com.wjp.waicodermotherbackend.ai.admission.AdmissionRequest;
+import com.wjp.waicodermotherbackend.ai.admission.LlmAdmissionController;
+import com.wjp.waicodermotherbackend.ai.model.CodeGenTypeBatchResult;
+import com.wjp.waicodermotherbackend.config.CodeGenRoutingConfig;
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 路由请求微批处理
+ * 在 batchWindowMs 内到达的路由请求合并为一次多条目分类调用，结果按序号分发给各个等待者：
+ *  1、窗口内只有一个请求时由调用方直接走单条路由，不额外增加输出 Token
+ *  2、攒满 maxBatchSize 立即发送，不等窗口结束
+ *  3、批量调用拿到准入许可后等待超过 batchTimeoutMs、批量调用失败或结果缺少某个序号时，该请求单独调用路由模型兜底；
+ *     同时兜底的请求数不超过 maxConcurrentFallbacks，超时但拿不到兜底名额的请求继续等待批量结果
+ *  4、同一批的请求全部兜底后中断批量调用，不再占用准入许可
+ *
+ * 指标：ai_routing_batch_size（每批请求数）、ai_routing_batch_fallback_total（兜底次数）
+ */
+@Component
+@Slf4j
+public class RoutingMicroBatcher {
+
+    @Resource
+    private CodeGenRoutingConfig codeGenRoutingConfig;
+
+    @Resource
+    private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
+
+    @Resource
+    private AiCodeGenTypeBatchRoutingService aiCodeGenTypeBatchRoutingService;
+
+    @Resource
+    private LlmAdmissionController llmAdmissionController;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentLinkedQueue<PendingRoute> pendingQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 是否已经安排了本窗口的发送
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private ScheduledExecutorService scheduler;
+
+    private DistributionSummary batchSizeSummary;
+
+    private Counter fallbackCounter;
+
+    /**
+     * 兜底名额
+     */
+    private Semaphore fallbackPermits;
+
+    /**
+     * @param future 路由结果，窗口内只有一个请求时为 null；调用方兜底后取消
+     * @param admitted 所在批次已经拿到准入许可
+     */
+    private record PendingRoute(String userPrompt, Long userId, CompletableFuture<CodeGenTypeEnum> future,
+                                CompletableFuture<Void> admitted) {
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("routing-batcher").daemon().factory());
+        batchSizeSummary = DistributionSummary.builder("ai_routing_batch_size")
+                .description("每次路由模型调用合并的请求数")
+                .register(meterRegistry);
+        fallbackCounter = Counter.builder("ai_routing_batch_fallback_total")
+                .description("批量路由超时或失败后单独调用的次数")
+                .register(meterRegistry);
+        fallbackPermits = new Semaphore(Math.max(1, codeGenRoutingConfig.getMaxConcurrentFallbacks()));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 调用路由模型选择代码生成类型（阻塞等待）
+     * @param userPrompt 用户需求
+     * @param userId 用户 ID（用于准入排队）
+     * @return 代码生成类型
+     */
+    public CodeGenTypeEnum route(String userPrompt, Long userId) {
+        if (!codeGenRoutingConfig.isBatchEnabled()) {
+            return routeSingle(userPrompt, userId);
+        }
+        PendingRoute pendingRoute = new PendingRoute(userPrompt, userId, new CompletableFuture<>(), new CompletableFuture<>());
+        pendingQueue.add(pendingRoute);
+        if (pendingQueue.size() >= codeGenRoutingConfig.getMaxBatchSize()) {
+            Thread.startVirtualThread(this::flush);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                flushScheduled.set(false);
+                Thread.startVirtualThread(this::flush);
+            }, codeGenRoutingConfig.getBatchWindowMs(), TimeUnit.MILLISECONDS);
+        }
+        CompletableFuture<CodeGenTypeEnum> future = pendingRoute.future();
+        try {
+            // 先等批量调用拿到准入许可（准入排队有自己的超时），超时只计算模型调用的时间
+            CompletableFuture.anyOf(pendingRoute.admitted(), future).exceptionally(error -> null).get();
+            CodeGenTypeEnum codeGenType = future.get(codeGenRoutingConfig.getBatchTimeoutMs(), TimeUnit.MILLISECONDS);
+            return codeGenType != null ? codeGenType : routeSingle(userPrompt, userId);
+        } catch (TimeoutException e) {
+            log.warn("批量路由 {} ms 内未返回结果", codeGenRoutingConfig.getBatchTimeoutMs());
+            return fallback(pendingRoute, true);
+        } catch (ExecutionException e) {
+            log.warn("批量路由未返回结果: {}", e.getCause().getMessage());
+            return fallback(pendingRoute, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            return routeSingle(userPrompt, userId);
+        }
+    }
+
+    /**
+     * 兜底：放弃批量结果，单独调用路由模型
+     * @param batchInFlight 批量调用是否仍在进行（超时）；拿不到兜底名额时继续等待批量结果
+     */
+    private CodeGenTypeEnum fallback(PendingRoute pendingRoute, boolean batchInFlight) {
+        CompletableFuture<CodeGenTypeEnum> future = pendingRoute.future();
+        try {
+            boolean acquired = fallbackPermits.tryAcquire();
+            if (!acquired && batchInFlight) {
+                try {
+                    CodeGenTypeEnum codeGenType = future.get();
+                    if (codeGenType != null) {
+                        return codeGenType;
+                    }
+                } catch (ExecutionException e) {
+                    log.warn("批量路由未返回结果: {}", e.getCause().getMessage());
+                }
+            }
+            if (!acquired) {
+                fallbackPermits.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            return routeSingle(pendingRoute.userPrompt(), pendingRoute.userId());
+        }
+        try {
+            // 等待名额期间批量结果刚好返回时直接使用
+            if (!future.cancel(false) && !future.isCompletedExceptionally()) {
+                CodeGenTypeEnum codeGenType = future.join();
+                if (codeGenType != null) {
+                    return codeGenType;
+                }
+            }
+            fallbackCounter.increment();
+            return routeSingle(pendingRoute.userPrompt(), pendingRoute.userId());
+        } finally {
+            fallbackPermits.release();
+        }
+    }
+
+    /**
+     * 取出当前排队的请求，每 maxBatchSize 条一批发送
+     */
+    private void flush() {
+        while (!pendingQueue.isEmpty()) {
+            List<PendingRoute> batch = new ArrayList<>();
+            PendingRoute pendingRoute;
+            while (batch.size() < codeGenRoutingConfig.getMaxBatchSize() && (pendingRoute = pendingQueue.poll()) != null) {
+                batch.add(pendingRoute);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            batchSizeSummary.record(batch.size());
+            if (batch.size() == 1) {
+                // 只有一个请求：通知调用方直接单条路由
+                batch.get(0).future().complete(null);
+                continue;
+            }
+            Thread worker = Thread.startVirtualThread(() -> {
+                try {
+                    dispatch(batch, routeBatch(batch));
+                } catch (Exception e) {
+                    log.warn("批量路由失败，共 {} 条: {}", batch.size(), e.getMessage());
+                    batch.forEach(route -> route.future().completeExceptionally(e));
+                }
+            });
+            // 整批请求都已经兜底时中断批量调用（排队中直接退出准入队列）
+            CompletableFuture.allOf(batch.stream().map(PendingRoute::future).toArray(CompletableFuture[]::new))
+                    .whenComplete((ignored, error) -> {
+                        if (batch.stream().allMatch(route -> route.future().isCancelled())) {
+                            worker.interrupt();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * 多条目分类调用（一次准入许可）
+     */
+    private CodeGenTypeBatchResult routeBatch(List<PendingRoute> batch) {
+        JSONArray items = JSONUtil.createArray();
+        for (int i = 0; i < batch.size(); i++) {
+            items.add(JSONUtil.createObj().set("index", i).set("prompt", batch.get(i).userPrompt()));
+        }
+        try (AdmissionPermit permit = llmAdmissionController.acquire(LlmAdmissionController.ROUTING_MODEL,
+                new AdmissionRequest(null, batch.get(0).userId(), null))) {
+            batch.forEach(route -> route.admitted().complete(null));
+            try {
+                CodeGenTypeBatchResult result = aiCodeGenTypeBatchRoutingService.routeCodeGenTypes(items.toString());
+                permit.reportSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                permit.reportError(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 按序号分发结果，缺少结果的请求以异常结束（调用方单独兜底）
+     */
+    private static void dispatch(List<PendingRoute> batch, CodeGenTypeBatchResult result) {
+        if (result != null && result.getItems() != null) {
+            for (CodeGenTypeBatchResult.Item item : result.getItems()) {
+                Integer index = item.getIndex();
+                if (index != null && index >= 0 && index < batch.size() && item.getCodeGenType() != null) {
+                    batch.get(index).future().complete(item.getCodeGenType());
+                }
+            }
+        }
+        for (PendingRoute route : batch) {
+            if (!route.future().isDone()) {
+                route.future().completeExceptionally(new IllegalStateException("批量路由结果缺少该条需求"));
+            }
+        }
+    }
+
+    /**
+     * 单条路由（路由模型同样受准入控制，并发已满时排队等待）
+     */
+    private CodeGenTypeEnum routeSingle(String userPrompt, Long userId) {
+        try (AdmissionPermit permit = llmAdmissionController.acquire(LlmAdmissionController.ROUTING_MODEL,
+                new AdmissionRequest(null, userId, null))) {
+            try {
+                CodeGenTypeEnum codeGenType = aiCodeGenTypeRoutingService.routeCodeGenType(userPrompt);
+                permit.reportSuccess();
+                return codeGenType;
+            } catch (RuntimeException e) {
+                permit.reportError(e);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.wjp.waicodermotherbackend.config;
+
+import com.wjp.waicodermotherbackend.ai.http.CancellableHttpClientBuilder;
+import com.wjp.waicodermotherbackend.ai.http.SharedJdkHttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * 大模型 HTTP 客户端配置
+ * 所有多例模型共享同一个 JDK HttpClient（连接池、HTTP/2、Keep-Alive），
+ * 每个模型实例仍然有自己的 LangChain4j HttpClient 包装（读超时、取消信号互不影响）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.http-client")
+@Data
+public class AiHttpClientConfig {
+
+    /**
+     * 连接超时（秒）
+     */
+    private int connectTimeoutSeconds = 10;
+
+    /**
+     * 读超时（秒），流式响应两次数据之间的最长间隔
+     */
+    private int readTimeoutSeconds = 120;
+
+    /**
+     * 是否优先使用 HTTP/2（服务端不支持时自动降级为 HTTP/1.1）
+     */
+    private boolean http2 = true;
+
+    /**
+     * 空闲连接保活时间（秒）
+     */
+    private int keepAliveSeconds = 300;
+
+    /**
+     * HTTP/1.1 空闲连接池大小，0 表示不限制
+     */
+    private int connectionPoolSize = 64;
+
+    /**
+     * 启动后是否预热连接（提前完成 DNS、TCP、TLS 握手）
+     */
+    private boolean warmUp = true;
+
+    /**
+     * 共享的 JDK HttpClient
+     * 注意：连接池参数是 JDK 的系统属性，只在第一次创建 HttpClient 时读取，也可以通过 JVM 参数直接指定
+     */
+    @Bean
+    public HttpClient sharedAiHttpClient() {
+        setPropertyIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+        setPropertyIfAbsent("jdk.httpclient.keepalive.timeout.h2", String.valueOf(keepAliveSeconds));
+        setPropertyIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(connectionPoolSize));
+        return HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .build();
+    }
+
+    /**
+     * 为模型实例创建 HTTP 客户端构建器：底层复用共享连接池，外层是可取消的包装
+     * 每次调用都返回新的构建器，多例模型之间不共享任何请求状态
+     * （配置类由 Spring 代理，这里调用 sharedAiHttpClient() 拿到的是同一个单例）
+     */
+    public HttpClientBuilder newHttpClientBuilder() {
+        return new CancellableHttpClientBuilder(JdkHttpClient.builder()
+                .httpClientBuilder(new SharedJdkHttpClientBuilder(sharedAiHttpClient()))
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .readTimeout(Duration.ofSeconds(readTimeoutSeconds)));
+    }
+
+    private static void setPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * AI 服务预热配置
+ * 应用所有者打开应用详情页时，提前创建 AI 服务实例并加载对话记忆，发送第一条消息时不再等待
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.warm-up")
+@Data
+public class AiServiceWarmUpConfig {
+
+    /**
+     * 是否开启预热
+     */
+    private boolean enabled = true;
+
+    /**
+     * 同时进行的预热数，超出的直接跳过（避免页面访问高峰打满数据库）
+     */
+    private int maxConcurrent = 4;
+
+    /**
+     * 同一个应用预热后多久内不再重复预热（秒）
+     */
+    private int dedupeSeconds = 60;
+
+    /**
+     * 等待对话记忆加载完成的最长时间（秒）
+     */
+    private int awaitTimeoutSeconds = 30;
+}
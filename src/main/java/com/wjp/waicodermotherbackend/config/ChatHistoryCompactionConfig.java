@@ -0,0 +1,20 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 工具调用历史压缩配置
+ * 开启后，同一个文件只保留最新一次 writeFile 的完整内容，旧版本替换为内容哈希 + 路径的引用
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-history.compaction")
+@Data
+public class ChatHistoryCompactionConfig {
+
+    /**
+     * 是否开启压缩（入库和加载对话记忆时都会生效）
+     */
+    private boolean enabled = true;
+}
@@ -0,0 +1,55 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话历史异步批量写入配置
+ * 流式链路上的对话历史先写入本地追加日志并进入内存队列，由后台线程按条数或时间批量入库
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-history.write-behind")
+@Data
+public class ChatHistoryWriteBehindConfig {
+
+    /**
+     * 是否开启异步批量写入（关闭后在调用线程同步入库）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 内存队列容量
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * 队列满时提交方最多等待的时间（毫秒），仍然没有空间则提交失败
+     */
+    private long offerTimeoutMs = 1000;
+
+    /**
+     * 单批最多入库条数
+     */
+    private int maxBatchSize = 200;
+
+    /**
+     * 最长攒批时间（毫秒）
+     */
+    private long flushIntervalMs = 200;
+
+    /**
+     * 单批入库失败后的重试次数，仍失败时逐条入库
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 本地追加日志目录
+     */
+    private String spillDir = System.getProperty("user.dir") + "/tmp/chat_history_spill";
+
+    /**
+     * 每次追加后是否强制刷盘（开启后可以抵御机器宕机，但写入变慢）
+     */
+    private boolean fsync = false;
+}
@@ -0,0 +1,54 @@
+package com.wjp.waicodermotherbackend.config;
+
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话记忆窗口配置
+ * 按估算的 Token 数淘汰历史消息，而不是按消息条数（一次 writeFile 工具结果可能就有几十 KB）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-memory.window")
+@Data
+public class ChatMemoryWindowConfig {
+
+    /**
+     * 本地分词器对应的模型（DeepSeek 没有公开的 jtokkit 编码，使用 o200k_base 近似估算）
+     */
+    private String tokenizerModel = "gpt-4o";
+
+    /**
+     * HTML / 多文件生成的对话记忆 Token 上限
+     */
+    private int defaultMaxTokens = 12000;
+
+    /**
+     * Vue 项目生成的对话记忆 Token 上限（包含工具调用，需要更大）
+     */
+    private int vueProjectMaxTokens = 32000;
+
+    /**
+     * 超出上限后一次淘汰到上限的多少比例，减少对话开头的变化，提高供应商提示词前缀缓存命中率
+     */
+    private double evictionTargetRatio = 0.75;
+
+    /**
+     * 根据代码生成类型获取 Token 上限
+     */
+    public int getMaxTokens(CodeGenTypeEnum codeGenType) {
+        return codeGenType == CodeGenTypeEnum.VUE_PROJECT ? vueProjectMaxTokens : defaultMaxTokens;
+    }
+
+    /**
+     * 对话记忆使用的 Token 估算器（线程安全，全局共享）
+     */
+    @Bean
+    public TokenCountEstimator chatMemoryTokenCountEstimator() {
+        return new OpenAiTokenCountEstimator(tokenizerModel);
+    }
+}
@@ -0,0 +1,45 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话摘要配置
+ * 长对话中较早的消息在后台折叠为一段滚动摘要，加载对话记忆时作为前缀，只回放最近的原始消息
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-memory.summary")
+@Data
+public class ChatSummaryConfig {
+
+    /**
+     * 是否开启后台摘要
+     */
+    private boolean enabled = true;
+
+    /**
+     * 始终保留原文的最近消息数（不参与摘要）
+     */
+    private int keepRecentMessages = 20;
+
+    /**
+     * 触发条件一：最近消息之外，尚未摘要的消息数达到该值
+     */
+    private int triggerMessageCount = 30;
+
+    /**
+     * 触发条件二：尚未摘要的消息估算 Token 数达到该值
+     */
+    private int triggerTokens = 24000;
+
+    /**
+     * 单次摘要最多输入的对话字符数，超出的部分留到下一次
+     */
+    private int maxTranscriptChars = 60000;
+
+    /**
+     * 对话记录中单条消息最多保留的字符数（工具结果、长回复截断）
+     */
+    private int maxMessageChars = 2000;
+}
@@ -0,0 +1,71 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 代码生成类型路由配置
+ * 路由结果按规范化后的提示词哈希缓存；需求明确的提示词由本地关键词分类器直接判定，模糊的才调用路由模型，
+ * 同一时刻的多个模型路由请求合并为一次批量调用
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.routing")
+@Data
+public class CodeGenRoutingConfig {
+
+    /**
+     * 是否开启本地关键词分类器
+     */
+    private boolean keywordEnabled = true;
+
+    /**
+     * 本地判定的最低得分
+     */
+    private int minScore = 4;
+
+    /**
+     * 本地判定时第一名与第二名的最小分差
+     */
+    private int minMargin = 3;
+
+    /**
+     * 本地判定后抽样调用路由模型核对的比例（用于统计与模型的一致率）
+     */
+    private double shadowSampleRate = 0.05;
+
+    /**
+     * 路由结果缓存条数
+     */
+    private int cacheMaxSize = 10_000;
+
+    /**
+     * 路由结果缓存时间（小时）
+     */
+    private int cacheExpireHours = 24;
+
+    /**
+     * 是否开启批量路由
+     */
+    private boolean batchEnabled = true;
+
+    /**
+     * 批量收集窗口（毫秒），窗口内到达的请求合并为一次模型调用
+     */
+    private long batchWindowMs = 20;
+
+    /**
+     * 单批最多请求数，攒满立即发送
+     */
+    private int maxBatchSize = 16;
+
+    /**
+     * 等待批量结果的超时时间（毫秒），从批量调用拿到准入许可开始计算，超时后单独调用路由模型
+     */
+    private long batchTimeoutMs = 3000;
+
+    /**
+     * 同时单独兜底的最大请求数，超出时继续等待批量结果（批量调用失败时排队兜底）
+     */
+    private int maxConcurrentFallbacks = 4;
+}
@@ -0,0 +1,62 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 代码保存线程池配置
+ * 代码文件的解析和写入不能占用 AI 流式响应的回调线程，统一交给有界的保存线程池处理
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-save.executor")
+@Data
+public class CodeSaveExecutorConfig {
+
+    /**
+     * 核心线程数
+     */
+    private int corePoolSize = 2;
+
+    /**
+     * 最大线程数
+     */
+    private int maxPoolSize = 4;
+
+    /**
+     * 队列容量，队列满时拒绝新的保存任务（对应的生成流以错误结束，不会在模型回调线程上写文件）
+     */
+    private int queueCapacity = 200;
+
+    /**
+     * 空闲线程存活时间（秒）
+     */
+    private int keepAliveSeconds = 60;
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor codeSaveExecutor() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "code-save-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(
+                corePoolSize,
+                maxPoolSize,
+                keepAliveSeconds,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                // 队列满了直接拒绝：提交线程是模型流的回调线程，不能在上面同步写文件
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+}
@@ -0,0 +1,21 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话事件日志配置
+ * 开启后对话历史只写入 conversation_event，chat_history / chat_history_original 变为其上的视图；
+ * 必须先执行 sql/migration_conversation_event.sql 再开启
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-history.event-log")
+@Data
+public class ConversationEventConfig {
+
+    /**
+     * 是否写入对话事件表
+     */
+    private boolean enabled = false;
+}
@@ -0,0 +1,35 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 生成检查点配置
+ * 生成过程中定期把已输出的内容写入 Redis，节点宕机或模型调用失败后可以从检查点继续生成，不必从头再来
+ */
+@Configuration
+@ConfigurationProperties(prefix = "generation.checkpoint")
+@Data
+public class GenerationCheckpointConfig {
+
+    /**
+     * 是否开启检查点
+     */
+    private boolean enabled = true;
+
+    /**
+     * 距离上次检查点新增多少字符后写一次检查点
+     */
+    private int intervalChars = 4096;
+
+    /**
+     * 距离上次检查点超过多少秒后写一次检查点（有新输出时才会写）
+     */
+    private int intervalSeconds = 5;
+
+    /**
+     * 检查点保留时间（分钟）
+     */
+    private int ttlMinutes = 60;
+}
@@ -0,0 +1,50 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 代码生成流配置
+ * 生成中的 SSE 帧会保留在一个有界回放缓冲区中，刷新页面后可以通过 Last-Event-ID 续接
+ */
+@Configuration
+@ConfigurationProperties(prefix = "generation.stream")
+@Data
+public class GenerationStreamConfig {
+
+    /**
+     * 每个应用保留的 SSE 帧数量（环形缓冲区大小）
+     */
+    private int replayBufferSize = 4096;
+
+    /**
+     * 所有观看者断开后，等待重连的时间（秒），超时后才取消 AI 生成
+     */
+    private int detachGraceSeconds = 30;
+
+    /**
+     * 生成结束后，回放缓冲区继续保留的时间（秒），用于断线重连补齐最后的帧
+     */
+    private int finishedRetentionSeconds = 60;
+
+    /**
+     * 应用生成租约有效期（秒），生成期间按三分之一周期续期
+     */
+    private int leaseTtlSeconds = 60;
+
+    /**
+     * 客户端请求 ID 的幂等记录保留时间（秒）
+     */
+    private int requestIdTtlSeconds = 600;
+
+    /**
+     * 进行中的生成最多占用的堆内存比例（相对于 -Xmx）
+     */
+    private double memoryBudgetHeapRatio = 0.25;
+
+    /**
+     * 新生成预留的内存（MB），剩余预算不足时直接拒绝
+     */
+    private int memoryReservePerStreamMb = 2;
+}
@@ -0,0 +1,84 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 大模型准入控制配置
+ * 每个模型的并发上限按 AIMD 自适应：首 Token 延迟正常时缓慢加一，延迟超标或被限流（429）时按比例收缩
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.admission")
+@Data
+public class LlmAdmissionConfig {
+
+    /**
+     * 每个模型最多排队的请求数，超过后直接拒绝
+     */
+    private int maxQueueSize = 100;
+
+    /**
+     * 同步调用（路由模型）最长排队时间（秒）
+     */
+    private int acquireTimeoutSeconds = 30;
+
+    /**
+     * 乘性减小系数
+     */
+    private double decreaseFactor = 0.7;
+
+    /**
+     * 排队权重 = 1 + 应用优先级 * priorityWeightFactor（精选应用优先级 99 时约为普通应用的 6 倍）
+     */
+    private double priorityWeightFactor = 0.05;
+
+    /**
+     * 非推理流式模型（streamingChatModelPrototype）
+     */
+    private ModelLimit streaming = new ModelLimit(8, 1, 32, 5000);
+
+    /**
+     * 推理流式模型（reasoningStreamingChatModelPrototype）
+     */
+    private ModelLimit reasoning = new ModelLimit(4, 1, 16, 15000);
+
+    /**
+     * 路由模型（routingChatModelPrototype）
+     */
+    private ModelLimit routing = new ModelLimit(8, 1, 32, 3000);
+
+    @Data
+    public static class ModelLimit {
+
+        /**
+         * 初始并发上限
+         */
+        private int initialLimit;
+
+        /**
+         * 并发上限的下限
+         */
+        private int minLimit;
+
+        /**
+         * 并发上限的上限
+         */
+        private int maxLimit;
+
+        /**
+         * 目标首 Token 延迟（毫秒），超过视为供应商过载
+         */
+        private long targetLatencyMs;
+
+        public ModelLimit() {
+        }
+
+        public ModelLimit(int initialLimit, int minLimit, int maxLimit, long targetLatencyMs) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.targetLatencyMs = targetLatencyMs;
+        }
+    }
+}
@@ -42,6 +42,9 @@ public class ReasoningStreamingChatModelConfig {
     @Resource
     private AiModelMonitorListener aiModelMonitorListener;
 
+    @Resource
+    private AiHttpClientConfig aiHttpClientConfig;
+
     /**
      * 推理流式模型 (用于 Vue 项目生成，带工具调用)
      */
@@ -59,6 +62,8 @@ public class ReasoningStreamingChatModelConfig {
                 .temperature(temperature)
                 .logRequests(logRequests)
                 .logResponses(logResponses)
+                // 共享连接池 + 可取消的 HTTP 客户端：客户端断开后关闭模型响应流
+                .httpClientBuilder(aiHttpClientConfig.newHttpClientBuilder())
                 // 监控
                 .listeners(List.of(aiModelMonitorListener))
                 .build();
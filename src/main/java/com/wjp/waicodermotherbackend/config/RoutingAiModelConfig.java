@@ -2,6 +2,7 @@ package com.wjp.waicodermotherbackend.config;
 
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import jakarta.annotation.Resource;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -24,12 +25,20 @@ public class RoutingAiModelConfig {
 
     private Integer maxTokens;
 
+    /**
+     * 批量路由时的最大输出 Token 数（一次返回多条结果）
+     */
+    private Integer batchMaxTokens = 1024;
+
     private Double temperature;
 
     private Boolean logRequests = false;
 
     private Boolean logResponses = false;
 
+    @Resource
+    private AiHttpClientConfig aiHttpClientConfig;
+
     /**
      * 创建用于路由判断的ChatModel
      */
@@ -47,6 +56,25 @@ public class RoutingAiModelConfig {
                 .temperature(temperature)
                 .logRequests(logRequests)
                 .logResponses(logResponses)
+                // 复用共享连接池
+                .httpClientBuilder(aiHttpClientConfig.newHttpClientBuilder())
+                .build();
+    }
+
+    /**
+     * 创建用于批量路由的 ChatModel（模型调用无状态，单例即可）
+     */
+    @Bean
+    public ChatModel routingBatchChatModel() {
+        return OpenAiChatModel.builder()
+                .apiKey(apiKey)
+                .modelName(modelName)
+                .baseUrl(baseUrl)
+                .maxTokens(batchMaxTokens)
+                .temperature(temperature)
+                .logRequests(logRequests)
+                .logResponses(logResponses)
+                .httpClientBuilder(aiHttpClientConfig.newHttpClientBuilder())
                 .build();
     }
 }
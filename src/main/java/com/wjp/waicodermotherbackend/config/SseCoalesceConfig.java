@@ -0,0 +1,69 @@
+package com.wjp.waicodermotherbackend.config;
+
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * SSE 帧合并配置
+ * 模型每个 token 都发一帧会导致大量细碎的写入和 flush，按「攒够 N 字节或等待 M 毫秒」合并后再发送
+ * 任一阈值配置为 0 表示不合并
+ */
+@Configuration
+@ConfigurationProperties(prefix = "sse.coalesce")
+@Data
+public class SseCoalesceConfig {
+
+    /**
+     * 原生 HTML 模式
+     */
+    private Policy html = new Policy(512, 50);
+
+    /**
+     * 原生多文件模式
+     */
+    private Policy multiFile = new Policy(512, 50);
+
+    /**
+     * Vue 工程模式（包含工具调用提示，适当放宽时间阈值）
+     */
+    private Policy vueProject = new Policy(1024, 80);
+
+    /**
+     * 获取代码生成类型对应的合并策略
+     */
+    public Policy getPolicy(CodeGenTypeEnum codeGenTypeEnum) {
+        return switch (codeGenTypeEnum) {
+            case HTML -> html;
+            case MULTI_FILE -> multiFile;
+            case VUE_PROJECT -> vueProject;
+        };
+    }
+
+    @Data
+    public static class Policy {
+
+        /**
+         * 攒够多少字节（UTF-8）立即发送
+         */
+        private int maxBytes;
+
+        /**
+         * 第一个片段进入缓冲后最多等待多少毫秒
+         */
+        private long maxDelayMs;
+
+        public Policy() {
+        }
+
+        public Policy(int maxBytes, long maxDelayMs) {
+            this.maxBytes = maxBytes;
+            this.maxDelayMs = maxDelayMs;
+        }
+
+        public boolean isEnabled() {
+            return maxBytes > 0 && maxDelayMs > 0;
+        }
+    }
+}
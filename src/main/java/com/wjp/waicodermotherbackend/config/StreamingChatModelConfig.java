@@ -33,6 +33,9 @@ public class StreamingChatModelConfig {
     @Resource
     private AiModelMonitorListener aiModelMonitorListener;
 
+    @Resource
+    private AiHttpClientConfig aiHttpClientConfig;
+
     /**
      * 非推理流式模型
      */
@@ -50,6 +53,8 @@ public class StreamingChatModelConfig {
                 .temperature(temperature)
                 .logRequests(logRequests)
                 .logResponses(logResponses)
+                // 共享连接池 + 可取消的 HTTP 客户端：客户端断开后关闭模型响应流
+                .httpClientBuilder(aiHttpClientConfig.newHttpClientBuilder())
                 // 添加监听器
                 .listeners(List.of(aiModelMonitorListener))
                 .build();
@@ -0,0 +1,56 @@
+package com.wjp.waicodermotherbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Vue 项目构建任务线程池配置
+ * npm install / npm run build 耗时较长，统一交给构建线程池排队执行，不占用模型回调线程
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vue-build.executor")
+@Data
+public class VueBuildExecutorConfig {
+
+    /**
+     * 同时执行的构建任务数
+     */
+    private int poolSize = 2;
+
+    /**
+     * 排队的构建任务数，超过后拒绝提交
+     */
+    private int queueCapacity = 50;
+
+    /**
+     * 构建任务结果保留时间（小时）
+     */
+    private int jobRetentionHours = 24;
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor vueBuildExecutor() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "vue-build-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+}
@@ -2,16 +2,22 @@ package com.wjp.waicodermotherbackend.controller;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.wjp.waicodermotherbackend.ai.AiCodeGenTypeRoutingService;
+import com.wjp.waicodermotherbackend.ai.AiServiceWarmer;
 import com.wjp.waicodermotherbackend.annotation.AuthCheck;
 import com.wjp.waicodermotherbackend.common.BaseResponse;
 import com.wjp.waicodermotherbackend.common.DeleteRequest;
 import com.wjp.waicodermotherbackend.common.ResultUtils;
 import com.wjp.waicodermotherbackend.constant.AppConstant;
 import com.wjp.waicodermotherbackend.constant.UserConstant;
+import com.wjp.waicodermotherbackend.core.builder.VueBuildJob;
+import com.wjp.waicodermotherbackend.core.builder.VueBuildJobManager;
+import com.wjp.waicodermotherbackend.core.stream.ActiveGeneration;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpoint;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpointStore;
+import com.wjp.waicodermotherbackend.core.stream.GenerationStreamRegistry;
 import com.wjp.waicodermotherbackend.exception.BusinessException;
 import com.wjp.waicodermotherbackend.exception.ErrorCode;
 import com.wjp.waicodermotherbackend.exception.ThrowUtils;
@@ -25,6 +31,7 @@ import com.wjp.waicodermotherbackend.service.UserService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
@@ -44,7 +51,6 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 应用 控制层。
@@ -65,6 +71,18 @@ public class AppController {
     @Resource
     private ProjectDownloadService projectDownloadService;
 
+    @Resource
+    private VueBuildJobManager vueBuildJobManager;
+
+    @Resource
+    private GenerationStreamRegistry generationStreamRegistry;
+
+    @Resource
+    private AiServiceWarmer aiServiceWarmer;
+
+    @Resource
+    private GenerationCheckpointStore generationCheckpointStore;
+
 //    /**
 //     * AI 路由服务
 //     */
@@ -76,6 +94,8 @@ public class AppController {
      *
      * @param appId   应用 ID
      * @param message 用户消息
+     * @param requestId 客户端请求 ID（幂等键，重复提交返回同一个生成流）
+     * @param lastEventId 断线重连时浏览器携带的最后一帧序号
      * @param request 请求对象
      * @return 生成结果流
      */
@@ -95,18 +115,105 @@ public class AppController {
     )
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
                                                        @RequestParam String message,
+                                                       @RequestParam(required = false) String requestId,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
                                                        HttpServletRequest request) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
+        ThrowUtils.throwIf(requestId != null && (StrUtil.isBlank(requestId) || requestId.length() > 64),
+                ErrorCode.PARAMS_ERROR, "请求ID无效");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
-        // 调用服务生成代码（流式）
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
-        
-        log.info("【SSE请求开始】appId: {}, message: {}", appId, message);
-        
-        // 转换为 ServerSenEvent格式(防止空格丢失问题)
+        // 附着、重连和重复提交都会下发已生成的内容，先校验应用归属
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIf(!app.getUserId().equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR, "无权限访问该应用");
+        // 已有生成：刷新页面重连（携带 Last-Event-ID）或重复提交同一个请求，直接附着到同一个流
+        ActiveGeneration generation = generationStreamRegistry.getGeneration(appId);
+        if (generation != null && (generation.isRunning() || lastEventId != null)) {
+            // 生成进行中又发来一条新消息：不能附着到旧的流，否则新消息会被静默丢弃
+            ThrowUtils.throwIf(lastEventId == null && !generation.isSameRequest(requestId),
+                    ErrorCode.CONFLICT_ERROR, "生成进行中，请等待当前生成结束后再发送");
+            log.info("【SSE续接】appId: {}, lastEventId: {}", appId, lastEventId);
+            return generationStreamRegistry.attach(generation, lastEventId);
+        }
+        // 重连时本节点没有这次生成（在其他节点进行，或早已结束且回放已过期），不再重新生成
+        if (lastEventId != null) {
+            log.info("【SSE续接】appId: {}, 本节点没有进行中的生成", appId);
+            return generationStreamRegistry.resumeFinished(appId, requestId);
+        }
+        // 交给注册表热订阅：拿到应用生成租约后才会调用服务生成代码（流式）
+        return generationStreamRegistry.start(appId, requestId, () -> {
+            Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
+            log.info("【SSE请求开始】appId: {}, requestId: {}, message: {}", appId, requestId, message);
+            return toServerSentEvents(appId, contentFlux);
+        });
+    }
+
+    /**
+     * 从检查点继续上一次中断的生成（流式 SSE）
+     * 节点宕机或模型调用失败后，已输出的内容不用重新生成
+     *
+     * @param appId     应用 ID
+     * @param requestId 客户端请求 ID（幂等键）
+     * @param request   请求对象
+     * @return 生成结果流
+     */
+    @GetMapping(value = "/chat/gen/code/continue", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @RateLimit(
+            limitType = RateLimitType.USER,
+            rate = 2,
+            rateInterval = 60,
+            message = "AI 对话请求过于频繁"
+    )
+    public Flux<ServerSentEvent<String>> continueGenCode(@RequestParam Long appId,
+                                                         @RequestParam(required = false) String requestId,
+                                                         HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        ThrowUtils.throwIf(requestId != null && (StrUtil.isBlank(requestId) || requestId.length() > 64),
+                ErrorCode.PARAMS_ERROR, "请求ID无效");
+        User loginUser = userService.getLoginUser(request);
+        // 附着、重连和重复提交都会下发已生成的内容，先校验应用归属
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIf(!app.getUserId().equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR, "无权限访问该应用");
+        // 同一个继续请求重复提交时附着到同一个流，其他生成进行中时拒绝
+        ActiveGeneration generation = generationStreamRegistry.getGeneration(appId);
+        if (generation != null && generation.isRunning()) {
+            ThrowUtils.throwIf(!generation.isSameRequest(requestId), ErrorCode.CONFLICT_ERROR, "生成进行中，请等待当前生成结束后再继续");
+            return generationStreamRegistry.attach(generation, null);
+        }
+        return generationStreamRegistry.start(appId, requestId, () -> {
+            Flux<String> contentFlux = appService.continueGenCode(appId, loginUser);
+            log.info("【SSE继续生成】appId: {}, requestId: {}", appId, requestId);
+            return toServerSentEvents(appId, contentFlux);
+        });
+    }
+
+    /**
+     * 查询是否有可以继续的生成（前端据此展示"继续生成"按钮）
+     *
+     * @param appId   应用 ID
+     * @param request 请求对象
+     * @return 是否存在生成检查点
+     */
+    @GetMapping("/chat/gen/checkpoint")
+    public BaseResponse<Boolean> hasGenerationCheckpoint(@RequestParam Long appId, HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        GenerationCheckpoint checkpoint = generationCheckpointStore.get(appId);
+        return ResultUtils.success(checkpoint != null && loginUser.getId().equals(checkpoint.getUserId()));
+    }
+
+    /**
+     * 转换为 ServerSenEvent格式(防止空格丢失问题)
+     *
+     * @param appId       应用 ID
+     * @param contentFlux 生成内容流
+     * @return SSE 帧流
+     */
+    private Flux<ServerSentEvent<String>> toServerSentEvents(Long appId, Flux<String> contentFlux) {
         return contentFlux
                 .doOnSubscribe(subscription -> {
                     log.info("【Flux订阅开始】appId: {}, 连接已建立", appId);
@@ -115,7 +222,7 @@ public class AppController {
                     log.debug("【发送数据块】appId: {}, 数据长度: {}", appId, chunk.length());
                 })
                 .doOnCancel(() -> {
-                    // 当客户端断开连接时，Spring WebFlux 会取消订阅，触发此回调
+                    // 所有观看者断开且超过宽限时间后，注册表会取消订阅，触发此回调
                     log.warn("【Flux被取消】appId: {}, 客户端断开连接，旧请求将被中断", appId);
                 })
                 .doOnTerminate(() -> {
@@ -124,14 +231,15 @@ public class AppController {
                 .doOnError(error -> {
                     log.error("【Flux错误】appId: {}, 发生错误", appId, error);
                 })
-                .map(chunk -> {
-                    // 将内容包装成JSON对象
-                    Map<String, String> wrapper = Map.of("d", chunk);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
-                    return ServerSentEvent.<String>builder()
-                            .data(jsonData)
-                            .build();
-                })
+                // 将内容包装成JSON对象
+                .map(ActiveGeneration::contentFrame)
+                // 内容流结束时代码文件已经全部写入磁盘，发送保存完成事件
+                .concatWith(Mono.just(
+                ServerSentEvent.<String>builder()
+                        .event("saved")
+                        .data("")
+                        .build()
+                ))
                 .concatWith(Mono.just(
                 // 发送结束事件
                 ServerSentEvent.<String>builder()
@@ -188,6 +296,49 @@ public class AppController {
         projectDownloadService.downloadProjectAsZip(sourceDirPath, downloadFileName, response);
     }
 
+    /**
+     * 查询 Vue 项目构建任务
+     *
+     * @param jobId   构建任务 id
+     * @param request 请求
+     * @return 构建任务
+     */
+    @GetMapping("/build/job/get")
+    public BaseResponse<VueBuildJob> getVueBuildJob(@RequestParam String jobId, HttpServletRequest request) {
+        ThrowUtils.throwIf(StrUtil.isBlank(jobId), ErrorCode.PARAMS_ERROR, "构建任务 ID 不能为空");
+        VueBuildJob buildJob = vueBuildJobManager.getJob(jobId);
+        ThrowUtils.throwIf(buildJob == null, ErrorCode.NOT_FOUND_ERROR, "构建任务不存在或已过期");
+        checkBuildJobAuth(buildJob.getAppId(), userService.getLoginUser(request));
+        return ResultUtils.success(buildJob);
+    }
+
+    /**
+     * 查询应用最近一次的 Vue 项目构建任务
+     *
+     * @param appId   应用 id
+     * @param request 请求
+     * @return 构建任务
+     */
+    @GetMapping("/build/job/latest")
+    public BaseResponse<VueBuildJob> getLatestVueBuildJob(@RequestParam Long appId, HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        checkBuildJobAuth(appId, userService.getLoginUser(request));
+        VueBuildJob buildJob = vueBuildJobManager.getLatestJob(appId);
+        ThrowUtils.throwIf(buildJob == null, ErrorCode.NOT_FOUND_ERROR, "构建任务不存在或已过期");
+        return ResultUtils.success(buildJob);
+    }
+
+    /**
+     * 构建任务仅应用创建人和管理员可查看
+     */
+    private void checkBuildJobAuth(Long appId, User loginUser) {
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
+        boolean isCreator = app.getUserId().equals(loginUser.getId());
+        ThrowUtils.throwIf(!isAdmin && !isCreator, ErrorCode.NO_AUTH_ERROR, "无权查看该应用的构建任务");
+    }
+
     /**
      * 创建应用
      *
@@ -263,14 +414,21 @@ public class AppController {
      * 根据 id 获取应用详情
      *
      * @param id      应用 id
+     * @param request 请求
      * @return 应用详情
      */
     @GetMapping("/get/vo")
-    public BaseResponse<AppVO> getAppVOById(long id) {
+    public BaseResponse<AppVO> getAppVOById(long id, HttpServletRequest request) {
         ThrowUtils.throwIf(id <= 0, ErrorCode.PARAMS_ERROR);
         // 查询数据库
         App app = appService.getById(id);
         ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR);
+        // 应用所有者打开应用时异步预热 AI 服务和对话记忆（只读会话中的登录态，不额外查库）
+        HttpSession session = request.getSession(false);
+        User sessionUser = session == null ? null : (User) session.getAttribute(UserConstant.USER_LOGIN_STATE);
+        if (sessionUser != null && app.getUserId().equals(sessionUser.getId())) {
+            aiServiceWarmer.warmUpAsync(app);
+        }
         // 获取封装类（包含用户信息）
         return ResultUtils.success(appService.getAppVO(app));
     }
@@ -10,6 +10,7 @@ import com.wjp.waicodermotherbackend.exception.ErrorCode;
 import com.wjp.waicodermotherbackend.exception.ThrowUtils;
 import com.wjp.waicodermotherbackend.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.wjp.waicodermotherbackend.model.entity.User;
+import com.wjp.waicodermotherbackend.model.vo.CursorPageVO;
 import com.wjp.waicodermotherbackend.service.UserService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
@@ -56,6 +57,27 @@ public class ChatHistoryController {
         return ResultUtils.success(result);
     }
 
+    /**
+     * 游标分页查询某个应用的对话历史（不统计总数）
+     *
+     * @param appId          应用ID
+     * @param pageSize       页面大小
+     * @param lastCreateTime 上一页最后一条记录的创建时间
+     * @param lastId         上一页最后一条记录的 id
+     * @param request        请求
+     * @return 对话历史游标分页
+     */
+    @GetMapping("/app/{appId}/cursor")
+    public BaseResponse<CursorPageVO<ChatHistory>> listAppChatHistoryByCursor(@PathVariable Long appId,
+                                                                              @RequestParam(defaultValue = "10") int pageSize,
+                                                                              @RequestParam(required = false) LocalDateTime lastCreateTime,
+                                                                              @RequestParam(required = false) Long lastId,
+                                                                              HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        CursorPageVO<ChatHistory> result = chatHistoryService.listAppChatHistoryByCursor(appId, pageSize, lastCreateTime, lastId, loginUser);
+        return ResultUtils.success(result);
+    }
+
     /**
      * 管理员分页查询所有对话历史
      *
@@ -74,5 +96,18 @@ public class ChatHistoryController {
         return ResultUtils.success(result);
     }
 
+    /**
+     * 管理员游标分页查询所有对话历史（不统计总数）
+     *
+     * @param chatHistoryQueryRequest 查询请求（游标为 lastCreateTime、lastId）
+     * @return 对话历史游标分页
+     */
+    @PostMapping("/admin/list/cursor")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<CursorPageVO<ChatHistory>> listAllChatHistoryByCursorForAdmin(@RequestBody ChatHistoryQueryRequest chatHistoryQueryRequest) {
+        CursorPageVO<ChatHistory> result = chatHistoryService.listChatHistoryByCursor(chatHistoryQueryRequest);
+        return ResultUtils.success(result);
+    }
+
 
 }
@@ -34,7 +34,8 @@ public class ChatHistoryOriginalController {
      */
     @PostMapping("save")
     public boolean save(@RequestBody ChatHistoryOriginal chatHistoryOriginal) {
-        return chatHistoryOriginalService.save(chatHistoryOriginal);
+        // 经过服务层写入：开启对话事件日志后 chat_history_original 是不可插入的视图
+        return chatHistoryOriginalService.addOriginalChatMessageBatch(List.of(chatHistoryOriginal));
     }
 
     /**
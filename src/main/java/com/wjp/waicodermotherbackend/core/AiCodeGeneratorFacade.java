@@ -1,21 +1,36 @@
 package com.wjp.waicodermotherbackend.core;
 
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.wjp.waicodermotherbackend.ai.AiCodeGeneratorService;
 import com.wjp.waicodermotherbackend.ai.AiCodeGeneratorServiceFactory;
+import com.wjp.waicodermotherbackend.ai.memory.ChatMemoryHydrator;
 import com.wjp.waicodermotherbackend.ai.model.HtmlCodeResult;
 import com.wjp.waicodermotherbackend.ai.model.MultiFileCodeResult;
 import com.wjp.waicodermotherbackend.ai.model.message.AIResponseMessage;
+import com.wjp.waicodermotherbackend.ai.model.message.StreamMessage;
 import com.wjp.waicodermotherbackend.ai.model.message.ToolExecutedMessage;
 import com.wjp.waicodermotherbackend.ai.model.message.ToolRequestMessage;
+import com.wjp.waicodermotherbackend.config.ReasoningStreamingChatModelConfig;
+import com.wjp.waicodermotherbackend.config.StreamingChatModelConfig;
 import com.wjp.waicodermotherbackend.constant.AppConstant;
-import com.wjp.waicodermotherbackend.core.builder.VueProjectBuilder;
-import com.wjp.waicodermotherbackend.core.parser.CodeParserExecutor;
+import com.wjp.waicodermotherbackend.core.builder.VueBuildJob;
+import com.wjp.waicodermotherbackend.core.builder.VueBuildJobManager;
+import com.wjp.waicodermotherbackend.core.parser.StreamingCodeParser;
+import com.wjp.waicodermotherbackend.core.saver.AsyncCodeFileSaver;
 import com.wjp.waicodermotherbackend.core.saver.CodeFileSaverExecutor;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpoint;
+import com.wjp.waicodermotherbackend.core.stream.StreamMemoryAccount;
 import com.wjp.waicodermotherbackend.exception.BusinessException;
 import com.wjp.waicodermotherbackend.exception.ErrorCode;
 import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import com.wjp.waicodermotherbackend.monitor.AiModelMetricsCollector;
+import com.wjp.waicodermotherbackend.monitor.MonitorContext;
+import com.wjp.waicodermotherbackend.monitor.MonitorContextHolder;
+import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
@@ -23,8 +38,17 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * AI 代码生成门面模式：组合生成和保存代码功能
@@ -43,7 +67,25 @@ public class AiCodeGeneratorFacade {
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
     @Resource
-    private VueProjectBuilder vueProjectBuilder;
+    private VueBuildJobManager vueBuildJobManager;
+
+    @Resource
+    private ChatMemoryHydrator chatMemoryHydrator;
+
+    @Resource
+    private RedisChatMemoryStore redisChatMemoryStore;
+
+    @Resource
+    private AsyncCodeFileSaver asyncCodeFileSaver;
+
+    @Resource
+    private AiModelMetricsCollector aiModelMetricsCollector;
+
+    @Resource
+    private StreamingChatModelConfig streamingChatModelConfig;
+
+    @Resource
+    private ReasoningStreamingChatModelConfig reasoningStreamingChatModelConfig;
 
     // region 单/多文件保存
     /**
@@ -89,11 +131,44 @@ public class AiCodeGeneratorFacade {
     // region 单/多文件SSE保存
     /**
      * 统一入口：根据类型生成并保存代码
+     * 兼容字符串流的调用方（工作流节点等）：HTML / MULTI_FILE 返回文本片段，VUE_PROJECT 返回 JSON 消息
      * @param userMessage 用户提示词
      * @param codeGenTypeEnum 代码生成类型
      * @return 保存的目录
      */
     public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId, int version) {
+        return generateAndSaveCodeMessageStream(userMessage, codeGenTypeEnum, appId, version)
+                .map(streamMessage -> {
+                    if (codeGenTypeEnum != CodeGenTypeEnum.VUE_PROJECT && streamMessage instanceof AIResponseMessage aiResponseMessage) {
+                        return aiResponseMessage.getData();
+                    }
+                    return JSONUtil.toJsonStr(streamMessage);
+                });
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码，返回类型化的流式消息
+     * 进程内直接传递 StreamMessage 对象，只在 SSE 出口序列化一次
+     * @param userMessage 用户提示词
+     * @param codeGenTypeEnum 代码生成类型
+     * @return 流式消息
+     */
+    public Flux<StreamMessage> generateAndSaveCodeMessageStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId, int version) {
+        return generateAndSaveCodeMessageStream(userMessage, codeGenTypeEnum, appId, version, null, null);
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码，支持从检查点继续生成
+     * 继续生成时，检查点中已输出的内容作为最后一条 AI 消息补回对话记忆，再让模型接着输出；
+     * HTML / MULTI_FILE 会先把已输出的内容放在流的最前面，解析保存的是拼接后的完整代码
+     * @param userMessage 用户提示词（继续生成时为继续输出的指令）
+     * @param codeGenTypeEnum 代码生成类型
+     * @param checkpoint 生成检查点，为空表示正常生成
+     * @param memoryAccount 生成流的内存账户（流式代码解析器的缓冲按实际占用记账），可为空
+     * @return 流式消息
+     */
+    public Flux<StreamMessage> generateAndSaveCodeMessageStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId, int version,
+                                                                GenerationCheckpoint checkpoint, StreamMemoryAccount memoryAccount) {
         if(StrUtil.isEmpty(userMessage)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户提示词不能为空");
         }
@@ -104,18 +179,26 @@ public class AiCodeGeneratorFacade {
         // 根据 appId 获取对应的 AI 代码生成服务
         AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
 
-        return switch(codeGenTypeEnum) {
+        // 继续生成时已经输出过的内容
+        Flux<String> checkpointFlux = checkpoint == null || StrUtil.isEmpty(checkpoint.getDisplayText())
+                ? Flux.empty()
+                : Flux.just(checkpoint.getDisplayText());
+
+        // 调用 AI 服务时会把用户消息写入对话记忆，必须延迟到对话记忆加载完成之后
+        Flux<StreamMessage> messageFlux = Flux.defer(() -> switch(codeGenTypeEnum) {
             case HTML -> {
                 // 1、调用Ai获取流式返回的数据
-                Flux<String> result = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
+                TokenStream tokenStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
+                Flux<String> result = Flux.concat(checkpointFlux, processTextTokenStream(tokenStream, CodeGenTypeEnum.HTML, appId));
                 // 2、处理代码流
-                yield processCodeStream(result, CodeGenTypeEnum.HTML, appId, version);
+                yield processCodeStream(result, CodeGenTypeEnum.HTML, appId, version, memoryAccount).map(AIResponseMessage::new);
             }
             case MULTI_FILE -> {
                 // 1、调用Ai获取流式返回的数据
-                Flux<String> result = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
+                TokenStream tokenStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
+                Flux<String> result = Flux.concat(checkpointFlux, processTextTokenStream(tokenStream, CodeGenTypeEnum.MULTI_FILE, appId));
                 // 2、处理代码流
-                yield processCodeStream(result, CodeGenTypeEnum.MULTI_FILE, appId, version);
+                yield processCodeStream(result, CodeGenTypeEnum.MULTI_FILE, appId, version, memoryAccount).map(AIResponseMessage::new);
             }
             case VUE_PROJECT -> {
                 // 1、调用Ai获取流式返回的数据
@@ -128,53 +211,86 @@ public class AiCodeGeneratorFacade {
                 String errStr = "不支持的代码生成类型:" + codeGenTypeEnum.getValue();
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR, errStr);
             }
-        };
+        });
+        // 3、对话记忆冷加载完成后再调用模型（加载完成时可能在其他线程订阅，需要带上监控上下文）
+        // 继续生成时，先把检查点内容补回对话记忆
+        Mono<Void> restoreMemory = checkpoint == null
+                ? Mono.empty()
+                : Mono.fromRunnable(() -> appendCheckpointToMemory(appId, checkpoint));
+        MonitorContext monitorContext = MonitorContextHolder.getContext();
+        return chatMemoryHydrator.await(appId)
+                .then(restoreMemory)
+                .thenMany(MonitorContextHolder.withContext(messageFlux, monitorContext));
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
+     * 把检查点中已输出的内容作为最后一条 AI 消息写入对话记忆
+     * 中断的那一轮只写入了用户消息，没有 AI 回复
+     * @param appId 应用 ID
+     * @param checkpoint 生成检查点
+     */
+    private void appendCheckpointToMemory(Long appId, GenerationCheckpoint checkpoint) {
+        String text = checkpoint.getMemoryText() != null ? checkpoint.getMemoryText() : checkpoint.getDisplayText();
+        if (StrUtil.isBlank(text)) {
+            return;
+        }
+        List<ChatMessage> messages = new ArrayList<>(redisChatMemoryStore.getMessages(appId));
+        messages.add(AiMessage.from(text));
+        redisChatMemoryStore.updateMessages(appId, messages);
+        log.info("appId: {} 从检查点继续生成，补回 {} 字符的 AI 输出", appId, text.length());
+    }
+
+    /**
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息
      * @param tokenStream TokenStream 对象
-     * @return Flux<String>
+     * @return Flux<StreamMessage>
      *
      * description:
      *  1、AI 文本响应片段 -> 回调：onPartialResponse，参数: AIResponseMessage
      *  2、工具调用请求 -> 回调: onPartialToolExecutionRequest，参数：ToolRequestMessage
      *  3、工具执行完毕结果 -> 回调：onToolExecuted，参数：ToolExecutedMessage
+     *  4、模型输出完成后提交构建任务 -> 构建阶段结束，参数：BuildProgressMessage
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream, Long appId) {
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, Long appId) {
+        MonitorContext monitorContext = MonitorContextHolder.getContext();
+        // 当前这一轮模型调用已输出的片段数（近似 Token 数），工具调用后开始新的一轮
+        AtomicLong roundTokens = new AtomicLong();
         // create: 手动创建响应式流
         // sink: 向订阅者发送数据
-        return Flux.create(sink -> {
+        // 模型输出完成后提交的构建任务 id
+        AtomicReference<String> buildJobIdRef = new AtomicReference<>();
+        Flux<StreamMessage> aiResponseFlux = Flux.create(sink -> {
+            // onCancel: 客户端断开时取消模型流和工具调用循环
+            sink.onCancel(() -> cancelTokenStream(tokenStream, CodeGenTypeEnum.VUE_PROJECT, appId, monitorContext, roundTokens.get()));
             // onPartialResponse: 当AI返回部分文本时触发
             // partialResponse: Ai返回的部分文本
             tokenStream.onPartialResponse((String partialResponse) -> {
-                // 创建 AI响应消息对象
-                AIResponseMessage aiResponseMessage = new AIResponseMessage(partialResponse);
-                // 发送JSON到流
-                sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+                roundTokens.incrementAndGet();
+                // 创建 AI响应消息对象并发送到流
+                sink.next(new AIResponseMessage(partialResponse));
             })
             // onPartialToolExecutionRequest: 注册工具执行请求回调
             // index: 请求索引
             // toolExecutionRequest: 工具执行请求对象
             .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
-                // 创建 工具请求消息对象
-                ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                // 发送JSON到流
-                sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                roundTokens.incrementAndGet();
+                // 创建 工具请求消息对象并发送到流
+                sink.next(new ToolRequestMessage(toolExecutionRequest));
             })
             // onToolExecuted: 注册工具执行完成回调
             // toolExecution: 包含工具执行请求和结果
             .onToolExecuted((ToolExecution toolExecution) -> {
-                // 创建 工具执行结果消息对象
-                ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                roundTokens.set(0);
+                // 创建 工具执行结果消息对象并发送到流
+                sink.next(new ToolExecutedMessage(toolExecution));
             })
             // onCompleteResponse: 注册完整响应回调
             // chatResponse: 完整的聊天响应对象
             .onCompleteResponse((ChatResponse chatResponse) -> {
-                // 同步构建 Vue项目
+                // 提交 Vue项目 构建任务，构建在构建线程池中执行，不阻塞模型回调线程
                 String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
-                vueProjectBuilder.buildProject(projectPath);
+                VueBuildJob buildJob = vueBuildJobManager.submit(appId, projectPath);
+                buildJobIdRef.set(buildJob.getJobId());
                 // 完成流
                 sink.complete();
             })
@@ -185,63 +301,156 @@ public class AiCodeGeneratorFacade {
             })
             .start();
         });
+        // 模型输出结束后继续推送构建进度，直到构建任务结束
+        return aiResponseFlux.concatWith(Flux.defer(() -> {
+            String buildJobId = buildJobIdRef.get();
+            if (buildJobId == null) {
+                return Flux.empty();
+            }
+            return vueBuildJobManager.watchJob(buildJobId).cast(StreamMessage.class);
+        }));
+    }
+
+    /**
+     * 将单/多文件的 TokenStream 转换为 Flux<String>，客户端断开时取消模型流
+     * @param tokenStream TokenStream 对象
+     * @param codeGenTypeEnum 代码生成类型
+     * @return Flux<String>
+     */
+    private Flux<String> processTextTokenStream(TokenStream tokenStream, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+        MonitorContext monitorContext = MonitorContextHolder.getContext();
+        AtomicLong streamedTokens = new AtomicLong();
+        return Flux.create(sink -> {
+            sink.onCancel(() -> cancelTokenStream(tokenStream, codeGenTypeEnum, appId, monitorContext, streamedTokens.get()));
+            tokenStream.onPartialResponse((String partialResponse) -> {
+                        streamedTokens.incrementAndGet();
+                        sink.next(partialResponse);
+                    })
+                    .onCompleteResponse((ChatResponse chatResponse) -> sink.complete())
+                    .onError((Throwable error) -> sink.error(error))
+                    .start();
+        });
+    }
+
+    /**
+     * 取消模型流：关闭与模型供应商的连接并停止工具调用循环，同时记录预计节省的 Token 数
+     * 预计节省 = 本轮最大输出 Token 数 - 本轮已输出的片段数（上限估计，不包含后续被跳过的工具调用轮次）
+     */
+    private void cancelTokenStream(TokenStream tokenStream, CodeGenTypeEnum codeGenTypeEnum, Long appId,
+                                   MonitorContext monitorContext, long streamedTokens) {
+        tokenStream.cancel();
+        Integer maxTokens = codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT
+                ? reasoningStreamingChatModelConfig.getMaxTokens()
+                : streamingChatModelConfig.getMaxTokens();
+        long tokensSaved = maxTokens == null ? 0 : Math.max(0, maxTokens - streamedTokens);
+        String userId = monitorContext != null ? monitorContext.getUserId() : "unknown";
+        aiModelMetricsCollector.recordGenerationAbort(userId, String.valueOf(appId), codeGenTypeEnum.getValue(), tokensSaved);
+        log.warn("【模型流已取消】appId: {}, 类型: {}, 本轮已输出约 {} tokens, 预计节省 {} tokens",
+                appId, codeGenTypeEnum.getValue(), streamedTokens, tokensSaved);
     }
 
     /**
      * 通用流式代码处理方法
+     * 使用流式解析器增量解析代码围栏，每闭合一个代码块就提交到保存线程池异步写入暂存目录，
+     * 所有文件写入完成后移动到应用目录，流随后结束；生成被取消或失败时丢弃暂存目录
      * @param codeStream 代码流
      * @param codeGenTypeEnum 代码生成类型
+     * @param memoryAccount 内存账户，可为空
      * @return 保存的目录
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenTypeEnum, Long appId, int version) {
-        // 2、字符串拼接(因为流式输出他是一块一块的，所以需要拼接)
-        StringBuilder codeBuilder = new StringBuilder();
+    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenTypeEnum, Long appId, int version,
+                                           StreamMemoryAccount memoryAccount) {
+        // 1、保存任务链：同一次生成的代码块按闭合顺序依次写入
+        AtomicReference<CompletableFuture<Void>> saveChain = new AtomicReference<>(CompletableFuture.completedFuture(null));
+        String stagingId = IdUtil.fastSimpleUUID();
+        // 解析器当前缓冲的字符数（已记账）
+        AtomicLong bufferedChars = new AtomicLong();
+        // 保存队列已满或保存失败时记录原因，下一个片段到达时以错误结束流（不在模型回调线程上同步写文件）
+        AtomicReference<Throwable> saveRejected = new AtomicReference<>();
+        // 2、每次生成使用独立的流式解析器，代码块闭合时提交保存任务
+        StreamingCodeParser streamingCodeParser = new StreamingCodeParser(codeGenTypeEnum, (language, code) ->
+                saveChain.updateAndGet(previous -> previous.thenCompose(ignored -> asyncCodeFileSaver.submit(() -> {
+                    long startTime = System.currentTimeMillis();
+                    // 保存失败时保存任务链以异常结束，后续代码块不再写入，流也以错误结束（不会发送 saved 事件）
+                    CodeFileSaverExecutor.saveCodeBlock(language, code, codeGenTypeEnum, appId, stagingId);
+                    log.info("【代码块保存成功】appId: {}, version: {}, 语言: {}, 耗时: {}ms",
+                            appId, version, language, (System.currentTimeMillis() - startTime));
+                }).whenComplete((result, error) -> {
+                    if (error != null) {
+                        saveRejected.compareAndSet(null, error);
+                    }
+                })))
+        );
         // 3、返回Flux数据
         return codeStream
                 .doOnNext(chunk -> {
-                    // 实时收集代码块
-                    codeBuilder.append(chunk);
+                    Throwable saveError = saveRejected.get();
+                    if (saveError != null) {
+                        throw toSaveException(saveError);
+                    }
+                    streamingCodeParser.append(chunk);
+                    trackBuffered(streamingCodeParser, bufferedChars, memoryAccount);
                 })
                 .doOnCancel(() -> {
                     // 当客户端断开连接时，Flux 会被取消
-                    log.warn("【代码流被取消】appId: {}, version: {}, 代码生成已中断，已收集代码长度: {}", 
-                            appId, version, codeBuilder.length());
-                })
-                .doOnComplete(() -> {
-                    // VUE_PROJECT 类型在流式生成过程中已经通过 FileWriteTool 实时写入文件，不需要再次保存
-                    if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
-                        log.info("【代码流完成】appId: {}, version: {}, VUE_PROJECT 类型，文件已通过工具调用实时写入，无需再次保存", 
-                                appId, version);
-                        return;
-                    }
-                    
-                    long startTime = System.currentTimeMillis();
-                    log.info("【代码流完成】appId: {}, version: {}, 开始保存代码，已收集代码长度: {}", 
-                            appId, version, codeBuilder.length());
-                    
-                    try {
-                        // 流式输出完成后，保存代码
-                        // 转为String
-                        String completeCode = codeBuilder.toString();
-                        // 使用解析器代码为对象
-                        Object multiFileCodeResult = CodeParserExecutor.executeParser(completeCode, codeGenTypeEnum);
-                        // 使用保存器保存代码
-                        File file = CodeFileSaverExecutor.saveCode(multiFileCodeResult, codeGenTypeEnum, appId, version);
-                        long endTime = System.currentTimeMillis();
-                        log.info("【代码保存成功】appId: {}, version: {}, 目录: {}, 耗时: {}ms", 
-                                appId, version, file.getAbsolutePath(), (endTime - startTime));
-                    } catch(Exception e) {
-                        long endTime = System.currentTimeMillis();
-                        log.error("【代码保存失败】appId: {}, version: {}, 耗时: {}ms", 
-                                appId, version, (endTime - startTime), e);
-                    }
+                    log.warn("【代码流被取消】appId: {}, version: {}, 代码生成已中断，已解析代码长度: {}",
+                            appId, version, streamingCodeParser.getConsumedLength());
                 })
                 .doOnError(error -> {
                     log.error("【代码流错误】appId: {}, version: {}, 发生错误", appId, version, error);
+                })
+                // 4、流式输出完成后处理 HTML 兜底，等待所有异步保存完成并移动到应用目录后再结束流
+                .concatWith(Mono.defer(() -> {
+                    streamingCodeParser.finish();
+                    trackBuffered(streamingCodeParser, bufferedChars, memoryAccount);
+                    if (!streamingCodeParser.hasEmitted("html")) {
+                        log.error("【代码保存失败】appId: {}, version: {}, HTML代码不能为空", appId, version);
+                        return Mono.<Void>error(new BusinessException(ErrorCode.OPERATION_ERROR, "代码保存失败，未生成 HTML 代码"));
+                    }
+                    return Mono.fromFuture(saveChain.get())
+                            .onErrorMap(this::toSaveException)
+                            .then(Mono.<Void>fromRunnable(() -> CodeFileSaverExecutor.commitStaging(codeGenTypeEnum, appId, version, stagingId)));
+                }).doOnSuccess(ignored -> log.info("【代码流完成】appId: {}, version: {}, 代码已保存，已解析代码长度: {}",
+                        appId, version, streamingCodeParser.getConsumedLength())
+                ).then(Mono.<String>empty()))
+                // 5、取消或失败：等已提交的保存任务结束后丢弃暂存目录，应用目录保持上一次生成的结果
+                .doFinally(signalType -> {
+                    if (signalType != SignalType.ON_COMPLETE) {
+                        saveChain.get().whenComplete((result, error) ->
+                                CodeFileSaverExecutor.discardStaging(codeGenTypeEnum, appId, stagingId));
+                    }
                 });
     }
 
 
+    /**
+     * 按解析器的实际缓冲量记账：代码块闭合、HTML 兜底内容丢弃后归还
+     */
+    private static void trackBuffered(StreamingCodeParser streamingCodeParser, AtomicLong bufferedChars,
+                                      StreamMemoryAccount memoryAccount) {
+        long buffered = streamingCodeParser.getBufferedLength();
+        long previous = bufferedChars.getAndSet(buffered);
+        if (memoryAccount != null) {
+            memoryAccount.adjustChars(buffered - previous);
+        }
+    }
+
+    /**
+     * 保存失败的原因转换为业务异常：保存队列已满提示稍后再试，写文件失败提示保存失败
+     */
+    private BusinessException toSaveException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof BusinessException businessException) {
+            return businessException;
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return new BusinessException(ErrorCode.SERVICE_UNAVAILABLE, "代码保存繁忙，请稍后再试");
+        }
+        log.error("【代码块保存失败】", cause);
+        return new BusinessException(ErrorCode.OPERATION_ERROR, "代码保存失败");
+    }
+
+
     // endregion
 
 
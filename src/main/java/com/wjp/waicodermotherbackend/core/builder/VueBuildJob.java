@@ -0,0 +1,89 @@
+package com.wjp.waicodermotherbackend.core.builder;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Vue 项目构建任务
+ */
+@Data
+public class VueBuildJob implements Serializable {
+
+    /**
+     * 任务 id
+     */
+    private String jobId;
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    /**
+     * 项目路径
+     */
+    private String projectPath;
+
+    /**
+     * 任务状态：queued / running / success / failed
+     */
+    private String status;
+
+    /**
+     * 已结束的构建阶段
+     */
+    private List<VueBuildPhaseResult> phases = new CopyOnWriteArrayList<>();
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+
+    /**
+     * 提交时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 开始构建时间
+     */
+    private LocalDateTime startTime;
+
+    /**
+     * 结束时间
+     */
+    private LocalDateTime finishTime;
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 构建阶段结果
+     */
+    @Data
+    public static class VueBuildPhaseResult implements Serializable {
+
+        /**
+         * 阶段
+         */
+        private String phase;
+
+        /**
+         * 是否成功
+         */
+        private Boolean success;
+
+        /**
+         * 耗时（毫秒）
+         */
+        private Long durationMs;
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+    }
+}
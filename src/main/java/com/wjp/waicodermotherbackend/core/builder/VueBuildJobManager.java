@@ -0,0 +1,171 @@
+package com.wjp.waicodermotherbackend.core.builder;
+
+import cn.hutool.core.util.IdUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wjp.waicodermotherbackend.ai.model.message.BuildProgressMessage;
+import com.wjp.waicodermotherbackend.config.VueBuildExecutorConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Vue 项目构建任务管理器
+ * 提交构建任务后立即返回任务 id，构建在构建线程池中排队执行，
+ * 每个阶段结束时推送进度事件，结束后的任务在保留期内可查询
+ */
+@Slf4j
+@Component
+public class VueBuildJobManager {
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_SUCCESS = "success";
+    public static final String STATUS_FAILED = "failed";
+
+    @Resource
+    private VueProjectBuilder vueProjectBuilder;
+
+    @Resource
+    private ThreadPoolExecutor vueBuildExecutor;
+
+    @Resource
+    private VueBuildExecutorConfig vueBuildExecutorConfig;
+
+    /**
+     * 构建任务：jobId -> 任务
+     */
+    private Cache<String, VueBuildJob> jobCache;
+
+    /**
+     * 每个应用最近一次的构建任务：appId -> jobId
+     */
+    private Cache<Long, String> latestJobIdCache;
+
+    /**
+     * 进行中任务的进度事件（回放全部事件，后订阅的客户端也能看到完整进度）
+     */
+    private final Map<String, Sinks.Many<BuildProgressMessage>> runningJobSinks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Duration retention = Duration.ofHours(vueBuildExecutorConfig.getJobRetentionHours());
+        jobCache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(retention)
+                .build();
+        latestJobIdCache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(retention)
+                .build();
+    }
+
+    /**
+     * 提交构建任务
+     * @param appId 应用 id
+     * @param projectPath 项目路径
+     * @return 构建任务
+     */
+    public VueBuildJob submit(Long appId, String projectPath) {
+        VueBuildJob job = new VueBuildJob();
+        job.setJobId(IdUtil.fastSimpleUUID());
+        job.setAppId(appId);
+        job.setProjectPath(projectPath);
+        job.setStatus(STATUS_QUEUED);
+        job.setCreateTime(LocalDateTime.now());
+        Sinks.Many<BuildProgressMessage> sink = Sinks.many().replay().all();
+        runningJobSinks.put(job.getJobId(), sink);
+        jobCache.put(job.getJobId(), job);
+        latestJobIdCache.put(appId, job.getJobId());
+        sink.tryEmitNext(new BuildProgressMessage(job.getJobId(), VueBuildPhaseEnum.QUEUED.getValue(), STATUS_QUEUED, null));
+        try {
+            vueBuildExecutor.execute(() -> runJob(job, sink));
+            log.info("构建任务已提交，jobId: {}, appId: {}, 排队任务数: {}", job.getJobId(), appId, vueBuildExecutor.getQueue().size());
+        } catch (RejectedExecutionException e) {
+            log.error("构建队列已满，拒绝构建任务，jobId: {}, appId: {}", job.getJobId(), appId);
+            sink.tryEmitNext(new BuildProgressMessage(job.getJobId(), VueBuildPhaseEnum.QUEUED.getValue(), STATUS_FAILED, null));
+            finishJob(job, sink, false, "构建队列已满，请稍后重新部署");
+        }
+        return job;
+    }
+
+    /**
+     * 订阅构建进度：进行中的任务推送实时进度，已结束的任务回放已记录的阶段
+     * @param jobId 任务 id
+     * @return 进度事件流
+     */
+    public Flux<BuildProgressMessage> watchJob(String jobId) {
+        Sinks.Many<BuildProgressMessage> sink = runningJobSinks.get(jobId);
+        if (sink != null) {
+            return sink.asFlux();
+        }
+        VueBuildJob job = getJob(jobId);
+        if (job == null) {
+            return Flux.empty();
+        }
+        return Flux.fromIterable(job.getPhases())
+                .map(phase -> new BuildProgressMessage(jobId, phase.getPhase(),
+                        Boolean.TRUE.equals(phase.getSuccess()) ? STATUS_SUCCESS : STATUS_FAILED, phase.getDurationMs()));
+    }
+
+    /**
+     * 查询构建任务
+     */
+    public VueBuildJob getJob(String jobId) {
+        return jobCache.getIfPresent(jobId);
+    }
+
+    /**
+     * 查询应用最近一次的构建任务
+     */
+    public VueBuildJob getLatestJob(Long appId) {
+        String jobId = latestJobIdCache.getIfPresent(appId);
+        return jobId == null ? null : getJob(jobId);
+    }
+
+    /**
+     * 执行构建任务
+     */
+    private void runJob(VueBuildJob job, Sinks.Many<BuildProgressMessage> sink) {
+        job.setStatus(STATUS_RUNNING);
+        job.setStartTime(LocalDateTime.now());
+        boolean success;
+        try {
+            success = vueProjectBuilder.buildProject(job.getProjectPath(), (phase, phaseSuccess, durationMs) -> {
+                VueBuildJob.VueBuildPhaseResult phaseResult = new VueBuildJob.VueBuildPhaseResult();
+                phaseResult.setPhase(phase.getValue());
+                phaseResult.setSuccess(phaseSuccess);
+                phaseResult.setDurationMs(durationMs);
+                job.getPhases().add(phaseResult);
+                sink.tryEmitNext(new BuildProgressMessage(job.getJobId(), phase.getValue(),
+                        phaseSuccess ? STATUS_SUCCESS : STATUS_FAILED, durationMs));
+            });
+        } catch (Exception e) {
+            log.error("构建任务执行异常，jobId: {}, appId: {}", job.getJobId(), job.getAppId(), e);
+            success = false;
+        }
+        finishJob(job, sink, success, success ? null : "Vue 项目构建失败");
+    }
+
+    /**
+     * 结束构建任务
+     */
+    private void finishJob(VueBuildJob job, Sinks.Many<BuildProgressMessage> sink, boolean success, String errorMessage) {
+        job.setStatus(success ? STATUS_SUCCESS : STATUS_FAILED);
+        job.setErrorMessage(errorMessage);
+        job.setFinishTime(LocalDateTime.now());
+        sink.tryEmitComplete();
+        runningJobSinks.remove(job.getJobId());
+        log.info("构建任务结束，jobId: {}, appId: {}, 状态: {}", job.getJobId(), job.getAppId(), job.getStatus());
+    }
+}
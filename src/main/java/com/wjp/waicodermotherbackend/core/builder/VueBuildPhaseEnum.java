@@ -0,0 +1,23 @@
+package com.wjp.waicodermotherbackend.core.builder;
+
+import lombok.Getter;
+
+/**
+ * Vue 项目构建阶段枚举
+ */
+@Getter
+public enum VueBuildPhaseEnum {
+
+    QUEUED("queued", "等待构建"),
+    INSTALL("install", "安装依赖"),
+    BUILD("build", "打包构建"),
+    DIST_VERIFIED("dist_verified", "校验产物");
+
+    private final String value;
+    private final String text;
+
+    VueBuildPhaseEnum(String value, String text) {
+        this.value = value;
+        this.text = text;
+    }
+}
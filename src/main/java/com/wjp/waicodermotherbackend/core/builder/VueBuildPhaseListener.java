@@ -0,0 +1,22 @@
+package com.wjp.waicodermotherbackend.core.builder;
+
+/**
+ * Vue 项目构建阶段监听器
+ */
+@FunctionalInterface
+public interface VueBuildPhaseListener {
+
+    /**
+     * 不关心构建阶段时使用
+     */
+    VueBuildPhaseListener NONE = (phase, success, durationMs) -> {
+    };
+
+    /**
+     * 某个构建阶段结束
+     * @param phase 构建阶段
+     * @param success 是否成功
+     * @param durationMs 阶段耗时（毫秒）
+     */
+    void onPhaseFinished(VueBuildPhaseEnum phase, boolean success, long durationMs);
+}
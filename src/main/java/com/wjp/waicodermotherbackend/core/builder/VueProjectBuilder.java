@@ -31,6 +31,16 @@ public class VueProjectBuilder {
      * @return 是否构建成功
      */
     public boolean buildProject(String projectPath) {
+        return buildProject(projectPath, VueBuildPhaseListener.NONE);
+    }
+
+    /**
+     * 构建 Vue 项目，并在每个阶段结束时通知监听器
+     * @param projectPath 项目根目录路径
+     * @param phaseListener 构建阶段监听器
+     * @return 是否构建成功
+     */
+    public boolean buildProject(String projectPath, VueBuildPhaseListener phaseListener) {
         File projectDir = new File(projectPath);
         if(!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目根目录不存在或无效：{}", projectPath);
@@ -44,18 +54,27 @@ public class VueProjectBuilder {
         }
         log.info("开始构建 Vue 项目：{}", projectPath);
         // 执行 npm install
-        if(!executeNpmInstall(projectDir)) {
+        long phaseStartTime = System.currentTimeMillis();
+        boolean installed = executeNpmInstall(projectDir);
+        phaseListener.onPhaseFinished(VueBuildPhaseEnum.INSTALL, installed, System.currentTimeMillis() - phaseStartTime);
+        if(!installed) {
             log.error("npm install 执行失败，请检查项目根目录下 package.json 文件是否正确");
             return false;
         }
         // 执行 npm run build
-        if(!executeNpmBuild(projectDir)) {
+        phaseStartTime = System.currentTimeMillis();
+        boolean built = executeNpmBuild(projectDir);
+        phaseListener.onPhaseFinished(VueBuildPhaseEnum.BUILD, built, System.currentTimeMillis() - phaseStartTime);
+        if(!built) {
             log.error("npm run build 执行失败，请检查项目根目录下 package.json 文件是否正确");
             return false;
         }
         // 验证 dist目录 是否存在
+        phaseStartTime = System.currentTimeMillis();
         File distDir = new File(projectDir, "dist");
-        if(!distDir.exists() || !distDir.isDirectory()) {
+        boolean distExists = distDir.exists() && distDir.isDirectory();
+        phaseListener.onPhaseFinished(VueBuildPhaseEnum.DIST_VERIFIED, distExists, System.currentTimeMillis() - phaseStartTime);
+        if(!distExists) {
             log.error("构建完成但dist 目录未生成：{}", distDir.getAbsolutePath());
             return false;
         }
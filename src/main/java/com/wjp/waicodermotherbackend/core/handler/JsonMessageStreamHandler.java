@@ -3,9 +3,18 @@ package com.wjp.waicodermotherbackend.core.handler;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.wjp.waicodermotherbackend.ai.memory.ConversationSummarizer;
+import com.wjp.waicodermotherbackend.ai.memory.ToolCallHistoryCompactor;
 import com.wjp.waicodermotherbackend.ai.model.message.*;
 import com.wjp.waicodermotherbackend.ai.tools.BaseTool;
 import com.wjp.waicodermotherbackend.ai.tools.ToolManager;
+import com.wjp.waicodermotherbackend.config.ChatHistoryCompactionConfig;
+import com.wjp.waicodermotherbackend.core.builder.VueBuildJobManager;
+import com.wjp.waicodermotherbackend.core.builder.VueBuildPhaseEnum;
+import com.wjp.waicodermotherbackend.core.history.ChatHistoryWriteBehind;
+import com.wjp.waicodermotherbackend.core.history.PendingChatHistory;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpointer;
+import com.wjp.waicodermotherbackend.core.stream.StreamMemoryAccount;
 import com.wjp.waicodermotherbackend.model.entity.ChatHistoryOriginal;
 import com.wjp.waicodermotherbackend.model.entity.User;
 import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
@@ -17,13 +26,16 @@ import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * JSON 消息流处理器
  * 处理 VUE_PROJECT 类型的复杂流式响应，包含工具调用信息
+ * 上游直接传递类型化的 StreamMessage，不再在进程内做 JSON 序列化 / 反序列化
  */
 @Slf4j
 @Component
@@ -32,21 +44,33 @@ public class JsonMessageStreamHandler {
     @Resource
     private ToolManager toolManager;
 
+    @Resource
+    private ChatHistoryCompactionConfig chatHistoryCompactionConfig;
+
+    @Resource
+    private ConversationSummarizer conversationSummarizer;
+
+    @Resource
+    private ChatHistoryWriteBehind chatHistoryWriteBehind;
+
     /**
      * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 按消息类型重组为完整的响应格式
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
      * @param chatHistoryOriginalService 聊天原始服务[包含工具调用信息]
      * @param appId              应用ID
      * @param loginUser          登录用户
+     * @param memoryAccount      当前流的内存账户
+     * @param checkpointer       当前流的检查点写入器
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                ChatHistoryOriginalService chatHistoryOriginalService,
-                               long appId, User loginUser) {
+                               long appId, User loginUser, StreamMemoryAccount memoryAccount,
+                               GenerationCheckpointer checkpointer) {
         // 收集数据用于生成后端记忆格式
         StringBuilder chatHistoryStringBuilder = new StringBuilder();
         // 收集用于恢复对话记忆的数据
@@ -55,81 +79,114 @@ public class JsonMessageStreamHandler {
         List<ChatHistoryOriginal> originalChatHistoryList = new ArrayList<>();
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
+        // 对话历史只入库一次：模型输出结束（开始推送构建进度）或整个流结束时
+        AtomicBoolean historySaved = new AtomicBoolean(false);
+        Runnable saveHistory = () -> {
+            if (!historySaved.compareAndSet(false, true)) {
+                return;
+            }
+            // 本轮的所有对话历史一起提交，异步批量入库
+            List<PendingChatHistory> records = new ArrayList<>();
+            // 工具调用信息
+            originalChatHistoryList.forEach(chatHistory -> records.add(PendingChatHistory.original(
+                    appId, chatHistory.getMessage(), chatHistory.getMessageType(), loginUser.getId())));
+
+            // AI response 入库（两种情况：1、没有进行工具调用；2、工具调用结束后，AI 一般还会有一句返回）
+
+            // 流式响应完成后，添加 AI 消息到对话历史
+            String chatHistoryStr = chatHistoryStringBuilder.toString();
+            // 保存到旧的 chat_history 表（向后兼容）
+            records.add(PendingChatHistory.chatHistory(appId, chatHistoryStr, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId()));
+
+            // 保存到 chat_history_original 表（完整对话历史）
+            // 注意：aiResponseStringBuilder 在工具调用后会被清空，所以这里只保存工具调用后的 AI 响应（如果有）
+            // 工具调用前的 AI 响应已经保存在 tool_request 的 text 字段中了
+            // 只会保留 工具调用后的 AI 响应
+            String aiResponseStr = aiResponseStringBuilder.toString();
+            if(StrUtil.isNotEmpty(aiResponseStr)) {
+                // 工具调用后的 AI 响应，需要单独保存
+                records.add(PendingChatHistory.original(appId, aiResponseStr, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId()));
+            }
+            boolean hasToolCalls = !originalChatHistoryList.isEmpty();
+            // 对话历史已经提交（本地日志兜底），检查点不再需要
+            checkpointer.complete();
+            chatHistoryWriteBehind.submit(records, () -> {
+                // 异步压缩旧版本的文件内容（本轮写入的是最新版本，之前写过的同一文件变为引用）
+                if (hasToolCalls && chatHistoryCompactionConfig.isEnabled()) {
+                    Thread.startVirtualThread(() -> {
+                        try {
+                            chatHistoryOriginalService.compactToolCallHistory(appId);
+                        } catch (Exception e) {
+                            log.error("压缩工具调用历史失败, appId: {}", appId, e);
+                        }
+                    });
+                }
+                // 对话较长时，在后台把较早的消息折叠为滚动摘要
+                conversationSummarizer.summarizeAsync(appId);
+            });
+        };
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    // todo: 什么时候执行，map 在 doOnComplete 后执行？？？
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, aiResponseStringBuilder,originalChatHistoryList, seenToolIds);
-                })
-                .filter(StrUtil::isNotEmpty) // 过滤空字串
-                .doOnComplete(() -> {
-                    // 工具调用信息入库
-                    if(!originalChatHistoryList.isEmpty()) {
-                        // 完善 ChatHistoryOriginal 信息
-                        originalChatHistoryList.forEach(chatHistory -> {
-                            chatHistory.setAppId(appId);
-                            chatHistory.setUserId(loginUser.getId());
-                        });
-                        // 批量入库
-                        chatHistoryOriginalService.addOriginalChatMessageBatch(originalChatHistoryList);
+                .map(streamMessage -> {
+                    // 构建进度不属于对话内容：模型输出已经结束，先把对话历史入库，再展示构建进度
+                    if (streamMessage instanceof BuildProgressMessage buildProgressMessage) {
+                        saveHistory.run();
+                        return formatBuildProgress(buildProgressMessage);
                     }
-
-                    // AI response 入库（两种情况：1、没有进行工具调用；2、工具调用结束后，AI 一般还会有一句返回）
-
-                    // 流式响应完成后，添加 AI 消息到对话历史
-                    String chatHistoryStr = chatHistoryStringBuilder.toString();
-                    // 保存到旧的 chat_history 表（向后兼容）
-                    chatHistoryService.addChatMessage(appId, chatHistoryStr, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
-
-                    // 保存到 chat_history_original 表（完整对话历史）
-                    // 注意：aiResponseStringBuilder 在工具调用后会被清空，所以这里只保存工具调用后的 AI 响应（如果有）
-                    // 工具调用前的 AI 响应已经保存在 tool_request 的 text 字段中了
-                    // 只会保留 工具调用后的 AI 响应
-                    String aiResponseStr = aiResponseStringBuilder.toString();
-                    if(StrUtil.isNotEmpty(aiResponseStr)) {
-                        // 工具调用后的 AI 响应，需要单独保存
-                        chatHistoryOriginalService.addOriginalChatMessage(appId, aiResponseStr, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    // 排队提示只展示，不计入对话历史
+                    if (streamMessage instanceof QueuePositionMessage queuePositionMessage) {
+                        return queuePositionMessage.toDisplayText();
                     }
-
+                    // 处理每个消息块
+                    // todo: 什么时候执行，map 在 doOnComplete 后执行？？？
+                    String output = handleJsonMessageChunk(streamMessage, chatHistoryStringBuilder, aiResponseStringBuilder,originalChatHistoryList, seenToolIds, memoryAccount);
+                    // 定期写入检查点：工具调用已经写入对话记忆，只需要补回最后一次工具调用之后的文本
+                    checkpointer.onProgress(output.length(), chatHistoryStringBuilder::toString, aiResponseStringBuilder::toString);
+                    return output;
                 })
+                .filter(StrUtil::isNotEmpty) // 过滤空字串
+                .doOnComplete(saveHistory)
                 .doOnError(error -> {
-                    // 如果AI回复失败，也要记录错误消息
+                    // 如果AI回复失败，也要记录错误消息（检查点保留，用户可以选择继续生成）
                     String errorMessage = "AI回复失败: " + error.getMessage();
-                    chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
-                    chatHistoryOriginalService.addOriginalChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    chatHistoryWriteBehind.submit(
+                            PendingChatHistory.chatHistory(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId()),
+                            PendingChatHistory.original(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId()));
                 });
     }
 
     /**
      * 解析并收集 TokenStream 数据
-     * @param chunk                     JSON 消息块
+     * @param streamMessage             消息块
      * @param chatHistoryStringBuilder  用于收集对话历史数据
      * @param aiResponseStringBuilder   用于收集 AI 响应数据 [只会保留工具调用后的AI响应]
      * @param originalChatHistoryList   用于收集原始对话数据
      * @param seenToolIds               用于记录已经见过的工具ID
+     * @param memoryAccount             当前流的内存账户
      */
-    private String handleJsonMessageChunk(String chunk,
+    private String handleJsonMessageChunk(StreamMessage streamMessage,
                                           StringBuilder chatHistoryStringBuilder,
                                           StringBuilder aiResponseStringBuilder,
                                           List<ChatHistoryOriginal> originalChatHistoryList,
-                                          Set<String> seenToolIds) {
-        // 解析 JSON
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
+                                          Set<String> seenToolIds,
+                                          StreamMemoryAccount memoryAccount) {
         StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
         switch (typeEnum) {
             // AI 响应
             case AI_RESPONSE -> {
-                AIResponseMessage aiMessage = JSONUtil.toBean(chunk, AIResponseMessage.class);
+                AIResponseMessage aiMessage = (AIResponseMessage) streamMessage;
                 String data = aiMessage.getData();
                 // 直接拼接响应
                 chatHistoryStringBuilder.append(data);
                 // 对于 AI 响应内容，与展示数据处理逻辑相同
                 aiResponseStringBuilder.append(data);
+                // 两个 builder 各保留一份
+                memoryAccount.addChars(data);
+                memoryAccount.addChars(data);
                 return data;
             }
             // 工具请求
             case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+                ToolRequestMessage toolRequestMessage = (ToolRequestMessage) streamMessage;
                 String toolId = toolRequestMessage.getId();
                 String toolName = toolRequestMessage.getName();
                 // 检查是否是第一次看到这个工具 ID
@@ -148,9 +205,9 @@ public class JsonMessageStreamHandler {
             }
             // 工具执行结果
             case TOOL_EXECUTED -> {
+                ToolExecutedMessage toolExecutedMessage = (ToolExecutedMessage) streamMessage;
                 // 处理工具调用信息
-                processToolExecutionMessage(aiResponseStringBuilder, chunk, originalChatHistoryList);
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+                processToolExecutionMessage(aiResponseStringBuilder, toolExecutedMessage, originalChatHistoryList, memoryAccount);
                 String toolName = toolExecutedMessage.getName();
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
 
@@ -159,6 +216,7 @@ public class JsonMessageStreamHandler {
                 // 输出前端和要持久化的内容
                 String output = String.format("\n\n%s\n\n", result);
                 chatHistoryStringBuilder.append(output);
+                memoryAccount.addChars(output);
                 return output;
             }
             default -> {
@@ -168,15 +226,35 @@ public class JsonMessageStreamHandler {
         }
     }
 
+    /**
+     * 格式化构建进度，用于前端展示
+     * @param buildProgressMessage 构建进度消息
+     * @return 展示内容
+     */
+    private String formatBuildProgress(BuildProgressMessage buildProgressMessage) {
+        String phaseText = Arrays.stream(VueBuildPhaseEnum.values())
+                .filter(phase -> phase.getValue().equals(buildProgressMessage.getPhase()))
+                .map(VueBuildPhaseEnum::getText)
+                .findFirst()
+                .orElse(buildProgressMessage.getPhase());
+        if (VueBuildJobManager.STATUS_QUEUED.equals(buildProgressMessage.getStatus())) {
+            return String.format("\n\n[构建] %s，任务ID：%s\n\n", phaseText, buildProgressMessage.getJobId());
+        }
+        String statusText = VueBuildJobManager.STATUS_SUCCESS.equals(buildProgressMessage.getStatus()) ? "完成" : "失败";
+        if (buildProgressMessage.getDurationMs() == null) {
+            return String.format("\n\n[构建] %s%s\n\n", phaseText, statusText);
+        }
+        return String.format("\n\n[构建] %s%s，耗时 %d ms\n\n", phaseText, statusText, buildProgressMessage.getDurationMs());
+    }
+
     /**
      * 解析处理工具调用相关信息
      * @param aiResponseStringBuilder
-     * @param chunk
+     * @param toolExecutedMessage
      * @param originalChatHistoryList
+     * @param memoryAccount
      */
-    private void processToolExecutionMessage(StringBuilder aiResponseStringBuilder, String chunk, List<ChatHistoryOriginal> originalChatHistoryList) {
-        // 解析 chunk
-        ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+    private void processToolExecutionMessage(StringBuilder aiResponseStringBuilder, ToolExecutedMessage toolExecutedMessage, List<ChatHistoryOriginal> originalChatHistoryList, StreamMemoryAccount memoryAccount) {
         // 构造工具调用请求对象(工具调用结果的数据就是从请求中拿到的，所以直接在这里处理调用请求信息)
         String aiResponseStr = aiResponseStringBuilder.toString();
         ToolRequestMessage toolRequestMessage = new ToolRequestMessage();
@@ -199,10 +277,16 @@ public class JsonMessageStreamHandler {
         
         // 工具调用结果
         ChatHistoryOriginal toolResultHistory = ChatHistoryOriginal.builder()
-                .message(chunk)
+                // 结果记录中的参数是请求记录的副本，开启压缩时不再重复保存文件内容
+                .message(chatHistoryCompactionConfig.isEnabled()
+                        ? ToolCallHistoryCompactor.compactExecutedMessage(toolExecutedMessage)
+                        : JSONUtil.toJsonStr(toolExecutedMessage))
                 .messageType(ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT.getValue())
                 .build();
         originalChatHistoryList.add(toolResultHistory);
+        // 待入库的工具调用记录在流结束前一直保留在内存中
+        memoryAccount.addChars(toolRequestHistory.getMessage());
+        memoryAccount.addChars(toolResultHistory.getMessage());
 
         // AI 响应内容暂时结束，置空 aiResponseStringBuilder（因为工具调用后，AI 可能会继续响应，需要重新收集）
         aiResponseStringBuilder.setLength(0);
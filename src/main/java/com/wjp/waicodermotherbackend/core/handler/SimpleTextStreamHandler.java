@@ -1,5 +1,12 @@
 package com.wjp.waicodermotherbackend.core.handler;
 
+import com.wjp.waicodermotherbackend.ai.model.message.AIResponseMessage;
+import com.wjp.waicodermotherbackend.ai.model.message.QueuePositionMessage;
+import com.wjp.waicodermotherbackend.ai.model.message.StreamMessage;
+import com.wjp.waicodermotherbackend.core.history.ChatHistoryWriteBehind;
+import com.wjp.waicodermotherbackend.core.history.PendingChatHistory;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpointer;
+import com.wjp.waicodermotherbackend.core.stream.StreamMemoryAccount;
 import com.wjp.waicodermotherbackend.model.entity.User;
 import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
 import com.wjp.waicodermotherbackend.service.ChatHistoryOriginalService;
@@ -14,6 +21,12 @@ import reactor.core.publisher.Flux;
 @Slf4j
 public class SimpleTextStreamHandler {
 
+    private final ChatHistoryWriteBehind chatHistoryWriteBehind;
+
+    public SimpleTextStreamHandler(ChatHistoryWriteBehind chatHistoryWriteBehind) {
+        this.chatHistoryWriteBehind = chatHistoryWriteBehind;
+    }
+
     /**
      * 处理传统流（HTML, MULTI_FILE）
      * 直接收集完整的文本响应
@@ -23,28 +36,41 @@ public class SimpleTextStreamHandler {
      * @param chatHistoryOriginalService 聊天原始服务[包含工具调用信息]
      * @param appId              应用ID
      * @param loginUser          登录用户
+     * @param memoryAccount      当前流的内存账户
+     * @param checkpointer       当前流的检查点写入器
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                ChatHistoryOriginalService chatHistoryOriginalService,
-                               long appId, User loginUser) {
+                               long appId, User loginUser, StreamMemoryAccount memoryAccount,
+                               GenerationCheckpointer checkpointer) {
         StringBuilder aiResponseBuilder = new StringBuilder();
         return originFlux
-                .map(chunk -> {
+                .filter(streamMessage -> streamMessage instanceof AIResponseMessage || streamMessage instanceof QueuePositionMessage)
+                .map(streamMessage -> {
+                    // 排队提示只展示，不计入对话历史
+                    if (streamMessage instanceof QueuePositionMessage queuePositionMessage) {
+                        return queuePositionMessage.toDisplayText();
+                    }
+                    String chunk = ((AIResponseMessage) streamMessage).getData();
                     // 收集AI响应内容
                     aiResponseBuilder.append(chunk);
+                    memoryAccount.addChars(chunk);
+                    // 定期写入检查点，中断后可以从这里继续生成
+                    checkpointer.onProgress(chunk.length(), aiResponseBuilder::toString, null);
                     return chunk;
                 })
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加AI消息到对话历史
                     String aiResponse = aiResponseBuilder.toString();
-                    chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    chatHistoryWriteBehind.submit(PendingChatHistory.chatHistory(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId()));
+                    checkpointer.complete();
                 })
                 .doOnError(error -> {
-                    // 如果AI回复失败，也要记录错误消息
+                    // 如果AI回复失败，也要记录错误消息（检查点保留，用户可以选择继续生成）
                     String errorMessage = "AI回复失败: " + error.getMessage();
-                    chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    chatHistoryWriteBehind.submit(PendingChatHistory.chatHistory(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId()));
                 });
     }
 }
@@ -1,5 +1,10 @@
 package com.wjp.waicodermotherbackend.core.handler;
 
+import com.wjp.waicodermotherbackend.ai.model.message.StreamMessage;
+import com.wjp.waicodermotherbackend.core.history.ChatHistoryWriteBehind;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpointStore;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpointer;
+import com.wjp.waicodermotherbackend.core.stream.StreamMemoryAccount;
 import com.wjp.waicodermotherbackend.model.entity.User;
 import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
 import com.wjp.waicodermotherbackend.service.ChatHistoryOriginalService;
@@ -12,8 +17,9 @@ import reactor.core.publisher.Flux;
 /**
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器：
- * 1. 传统的 Flux<String> 流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
- * 2. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 1. 纯文本消息流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
+ * 2. 包含工具调用的复杂消息流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 处理器输入的是类型化的 StreamMessage，输出的是展示给前端的文本，只在 SSE 出口序列化一次
  */
 @Slf4j
 @Component
@@ -22,6 +28,12 @@ public class StreamHandlerExecutor {
     @Resource
     private JsonMessageStreamHandler jsonMessageStreamHandler;
 
+    @Resource
+    private ChatHistoryWriteBehind chatHistoryWriteBehind;
+
+    @Resource
+    private GenerationCheckpointStore generationCheckpointStore;
+
     /**
      * 创建流处理器并处理聊天历史记录
      * @param originFlux 原始流
@@ -29,17 +41,20 @@ public class StreamHandlerExecutor {
      * @param appId 应用ID
      * @param loginUser 登录用户
      * @param codeGenType 代码生成类型
+     * @param memoryAccount 当前流的内存账户
      * @return 处理后的流
      */
-    public Flux<String> doExecute(Flux<String> originFlux, ChatHistoryService chatHistoryService, ChatHistoryOriginalService chatHistoryOriginalService, long appId, User loginUser, CodeGenTypeEnum codeGenType) {
+    public Flux<String> doExecute(Flux<StreamMessage> originFlux, ChatHistoryService chatHistoryService, ChatHistoryOriginalService chatHistoryOriginalService, long appId, User loginUser, CodeGenTypeEnum codeGenType, StreamMemoryAccount memoryAccount) {
+        // 生成过程中定期写入检查点，中断后可以从检查点继续生成
+        GenerationCheckpointer checkpointer = generationCheckpointStore.open(appId, loginUser.getId(), codeGenType);
         return switch (codeGenType) {
             // Vue 工程模式
             case VUE_PROJECT ->
-                    jsonMessageStreamHandler.handle(originFlux, chatHistoryService,chatHistoryOriginalService, appId, loginUser);
+                    jsonMessageStreamHandler.handle(originFlux, chatHistoryService,chatHistoryOriginalService, appId, loginUser, memoryAccount, checkpointer);
             // 其他模式
             case HTML, MULTI_FILE ->
-                    new SimpleTextStreamHandler()
-                            .handle(originFlux, chatHistoryService,chatHistoryOriginalService, appId, loginUser);
+                    new SimpleTextStreamHandler(chatHistoryWriteBehind)
+                            .handle(originFlux, chatHistoryService,chatHistoryOriginalService, appId, loginUser, memoryAccount, checkpointer);
             default -> throw new RuntimeException("不支持的代码生成类型");
         };
     }
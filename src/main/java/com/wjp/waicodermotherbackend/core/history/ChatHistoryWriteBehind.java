@@ -0,0 +1,499 @@
+package com.wjp.waicodermotherbackend.core.history;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.mybatisflex.core.row.Db;
+import com.mybatisflex.core.row.Row;
+import com.wjp.waicodermotherbackend.ai.memory.ChatMemoryVersion;
+import com.wjp.waicodermotherbackend.config.ChatHistoryWriteBehindConfig;
+import com.wjp.waicodermotherbackend.config.ConversationEventConfig;
+import com.wjp.waicodermotherbackend.exception.BusinessException;
+import com.wjp.waicodermotherbackend.exception.ErrorCode;
+import com.wjp.waicodermotherbackend.exception.ThrowUtils;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistory;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistoryOriginal;
+import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
+import com.wjp.waicodermotherbackend.service.ChatHistoryOriginalService;
+import com.wjp.waicodermotherbackend.service.ChatHistoryService;
+import com.wjp.waicodermotherbackend.service.ConversationEventService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 对话历史异步批量写入（write-behind）
+ *
+ * 流式链路上的对话历史不再在请求线程上逐条入库：
+ *  1、提交时先追加到本地日志（spill 文件），再放入有界内存队列；队列满时在锁外最多等待 offerTimeoutMs，
+ *     仍然没有空间则提交失败（不在提交线程上直接入库，避免阻塞其他提交者、打乱入库顺序）
+ *  2、后台线程攒够 maxBatchSize 条或等待 flushIntervalMs 后，按表多行批量插入；
+ *     开启对话事件日志后只写 conversation_event（见 ConversationEventProjection）
+ *  3、每批入库后在日志中追加 ack 行；队列清空时截断日志
+ *  4、启动时重放日志中未 ack 的记录（按 appId + createTime + 消息类型 + 内容判断是否已入库，避免重复）
+ *
+ * 同一张表的消息按提交顺序入库；依赖入库结果的后续任务（压缩、摘要）通过 onPersisted 回调在入库后执行；
+ * 每批入库后推进涉及应用的对话历史版本（重放的记录不在 Redis 对话记忆中，只推进数据库版本）
+ *
+ * 指标：chat_history_write_behind_queue_size、chat_history_write_behind_lag_seconds（最早未入库消息的等待时间）、
+ *      chat_history_write_behind_flush_size、chat_history_write_behind_failed_total
+ */
+@Component
+@Slf4j
+public class ChatHistoryWriteBehind {
+
+    private static final String SPILL_FILE_NAME = "chat-history-write-behind.log";
+
+    private static final String ACK_KEY = "ack";
+
+    @Resource
+    private ChatHistoryWriteBehindConfig chatHistoryWriteBehindConfig;
+
+    @Resource
+    private ChatHistoryService chatHistoryService;
+
+    @Resource
+    private ChatHistoryOriginalService chatHistoryOriginalService;
+
+    @Resource
+    private ConversationEventConfig conversationEventConfig;
+
+    @Resource
+    private ConversationEventService conversationEventService;
+
+    @Resource
+    private ChatMemoryVersion chatMemoryVersion;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<PendingChatHistory> queue;
+
+    /**
+     * 队列剩余空间：提交前在锁外预占，后台线程取出后归还，预占成功后入队不会失败
+     */
+    private Semaphore queuePermits;
+
+    private final AtomicLong seqGenerator = new AtomicLong();
+
+    /**
+     * 追加日志的写入和截断都在这把锁内
+     */
+    private final Object spillLock = new Object();
+
+    private File spillFile;
+
+    private FileOutputStream spillOutputStream;
+
+    private Writer spillWriter;
+
+    private volatile boolean running = true;
+
+    private Thread flushThread;
+
+    private DistributionSummary flushSizeSummary;
+
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() throws IOException {
+        verifyChatHistorySchema();
+        queue = new ArrayBlockingQueue<>(chatHistoryWriteBehindConfig.getQueueCapacity());
+        queuePermits = new Semaphore(chatHistoryWriteBehindConfig.getQueueCapacity());
+        flushSizeSummary = DistributionSummary.builder("chat_history_write_behind_flush_size")
+                .description("对话历史每批入库条数")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("chat_history_write_behind_failed_total")
+                .description("对话历史最终入库失败的条数")
+                .register(meterRegistry);
+        Gauge.builder("chat_history_write_behind_queue_size", () -> queue.size())
+                .description("对话历史待入库条数")
+                .register(meterRegistry);
+        Gauge.builder("chat_history_write_behind_lag_seconds", this::lagSeconds)
+                .description("最早未入库的对话历史已等待的时间")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        if (!chatHistoryWriteBehindConfig.isEnabled()) {
+            return;
+        }
+        File spillDir = FileUtil.mkdir(chatHistoryWriteBehindConfig.getSpillDir());
+        spillFile = new File(spillDir, SPILL_FILE_NAME);
+        // 1、重放上次进程退出前没有入库的记录
+        replay();
+        // 2、打开追加日志，启动后台写入线程
+        openSpillWriter(false);
+        flushThread = Thread.ofPlatform().name("chat-history-write-behind").daemon().start(this::runFlushLoop);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (flushThread == null) {
+            return;
+        }
+        // 停止前把队列中的消息写完
+        running = false;
+        flushThread.interrupt();
+        flushThread.join(TimeUnit.SECONDS.toMillis(10));
+        synchronized (spillLock) {
+            closeSpillWriter();
+        }
+    }
+
+    /**
+     * 启动时检查对话历史表结构与事件日志开关一致，避免向视图插入或写入没人读取的表
+     * 执行 sql/migration_conversation_event.sql 后 chat_history / chat_history_original 是视图，必须开启事件日志；反之必须关闭
+     */
+    private void verifyChatHistorySchema() {
+        List<Row> tables = Db.selectListBySql(
+                "select TABLE_TYPE as tableType from information_schema.TABLES " +
+                        "where TABLE_SCHEMA = database() and TABLE_NAME in (?, ?)",
+                PendingChatHistory.TABLE_CHAT_HISTORY, PendingChatHistory.TABLE_CHAT_HISTORY_ORIGINAL);
+        boolean views = tables.stream().anyMatch(table -> "VIEW".equalsIgnoreCase(table.getString("tableType")));
+        if (views && !conversationEventConfig.isEnabled()) {
+            throw new IllegalStateException("chat_history / chat_history_original 已迁移为 conversation_event 上的视图，" +
+                    "请开启 chat-history.event-log.enabled");
+        }
+        if (!views && conversationEventConfig.isEnabled()) {
+            throw new IllegalStateException("已开启 chat-history.event-log.enabled，" +
+                    "但 chat_history / chat_history_original 不是视图，请先执行 sql/migration_conversation_event.sql");
+        }
+    }
+
+    /**
+     * 提交一批对话历史
+     * @param records 对话历史（同一张表内按列表顺序入库）
+     * @param onPersisted 全部入库后的回调，可以为 null
+     * @throws BusinessException 队列持续已满
+     */
+    public void submit(List<PendingChatHistory> records, Runnable onPersisted) {
+        List<PendingChatHistory> validRecords = records.stream().filter(ChatHistoryWriteBehind::isValid).toList();
+        if (validRecords.isEmpty()) {
+            runCallback(onPersisted);
+            return;
+        }
+        validRecords.get(validRecords.size() - 1).setOnPersisted(onPersisted);
+        validRecords.get(validRecords.size() - 1).setLastOfSubmit(true);
+        if (!chatHistoryWriteBehindConfig.isEnabled()) {
+            persist(validRecords, true);
+            return;
+        }
+        reserveQueue(validRecords.size());
+        synchronized (spillLock) {
+            for (PendingChatHistory record : validRecords) {
+                record.setSeq(seqGenerator.incrementAndGet());
+                appendSpill(JSONUtil.toJsonStr(record));
+                queue.add(record);
+            }
+        }
+    }
+
+    /**
+     * 提交对话历史
+     */
+    public void submit(PendingChatHistory... records) {
+        submit(List.of(records), null);
+    }
+
+    /**
+     * 在锁外预占队列空间，最多等待 offerTimeoutMs
+     */
+    private void reserveQueue(int size) {
+        ThrowUtils.throwIf(size > chatHistoryWriteBehindConfig.getQueueCapacity(), ErrorCode.PARAMS_ERROR, "对话历史条数超过队列容量");
+        boolean reserved;
+        try {
+            reserved = queuePermits.tryAcquire(size, chatHistoryWriteBehindConfig.getOfferTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reserved = false;
+        }
+        if (!reserved) {
+            failedCounter.increment(size);
+            log.error("对话历史写入队列已满，{} ms 内没有空间，丢弃 {} 条", chatHistoryWriteBehindConfig.getOfferTimeoutMs(), size);
+            throw new BusinessException(ErrorCode.SERVICE_UNAVAILABLE, "对话历史写入繁忙，请稍后再试");
+        }
+    }
+
+    private void runFlushLoop() {
+        List<PendingChatHistory> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingChatHistory first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 攒批：条数达到上限或等待时间到达
+                long deadline = System.currentTimeMillis() + chatHistoryWriteBehindConfig.getFlushIntervalMs();
+                while (running && batch.size() < chatHistoryWriteBehindConfig.getMaxBatchSize()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingChatHistory next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 关闭时被中断：继续把剩余消息写完
+            }
+            queue.drainTo(batch, chatHistoryWriteBehindConfig.getMaxBatchSize() - batch.size());
+            completeSubmitGroup(batch);
+            if (!batch.isEmpty()) {
+                queuePermits.release(batch.size());
+                persist(batch, true);
+                ack(batch.get(batch.size() - 1).getSeq());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 同一次提交的记录（同一条消息的两个投影）不拆到两批，否则无法合并为一条对话事件
+     * 一次提交的记录在锁内连续入队，最后一条很快就会到达
+     */
+    private void completeSubmitGroup(List<PendingChatHistory> batch) {
+        while (!batch.isEmpty() && !batch.get(batch.size() - 1).isLastOfSubmit()) {
+            PendingChatHistory next;
+            try {
+                next = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+            } catch (InterruptedException e) {
+                next = queue.poll();
+            }
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * 按表批量入库，失败重试，仍失败时逐条入库定位问题数据；最后推进对话历史版本并执行回调
+     * @param live 是否为本进程流式生成提交的记录（false 表示启动时重放）
+     */
+    private void persist(List<PendingChatHistory> batch, boolean live) {
+        flushSizeSummary.record(batch.size());
+        if (conversationEventConfig.isEnabled()) {
+            // 事件日志模式：每条消息只写一次，两张表是 conversation_event 上的视图（同一次提交的记录在同一批内，见 completeSubmitGroup）
+            insertWithRetry(ConversationEventProjection.toEvents(batch), conversationEventService::appendEvents,
+                    event -> conversationEventService.save(event));
+            afterPersist(batch, live);
+            return;
+        }
+        List<ChatHistory> chatHistoryList = new ArrayList<>();
+        List<ChatHistoryOriginal> originalList = new ArrayList<>();
+        for (PendingChatHistory record : batch) {
+            if (PendingChatHistory.TABLE_CHAT_HISTORY.equals(record.getTable())) {
+                chatHistoryList.add(record.toChatHistory());
+            } else {
+                originalList.add(record.toChatHistoryOriginal());
+            }
+        }
+        insertWithRetry(chatHistoryList, rows -> chatHistoryService.getMapper().insertBatch(rows),
+                row -> chatHistoryService.save(row));
+        insertWithRetry(originalList, rows -> chatHistoryOriginalService.getMapper().insertBatch(rows),
+                row -> chatHistoryOriginalService.save(row));
+        afterPersist(batch, live);
+    }
+
+    private void afterPersist(List<PendingChatHistory> batch, boolean live) {
+        Set<Long> appIds = new LinkedHashSet<>();
+        for (PendingChatHistory record : batch) {
+            appIds.add(record.getAppId());
+        }
+        for (Long appId : appIds) {
+            chatMemoryVersion.bump(appId, live);
+        }
+        for (PendingChatHistory record : batch) {
+            runCallback(record.getOnPersisted());
+        }
+    }
+
+    private <T> void insertWithRetry(List<T> rows, Consumer<List<T>> batchInsert,
+                                     Consumer<T> singleInsert) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; attempt <= chatHistoryWriteBehindConfig.getMaxRetries(); attempt++) {
+            try {
+                batchInsert.accept(rows);
+                return;
+            } catch (Exception e) {
+                log.warn("对话历史批量入库失败，第 {} 次，共 {} 条: {}", attempt + 1, rows.size(), e.getMessage());
+                sleepQuietly(200L << Math.min(attempt, 4));
+            }
+        }
+        for (T row : rows) {
+            try {
+                singleInsert.accept(row);
+            } catch (Exception e) {
+                failedCounter.increment();
+                log.error("对话历史入库失败，已丢弃: {}", JSONUtil.toJsonStr(row), e);
+            }
+        }
+    }
+
+    /**
+     * 重放追加日志中未 ack 的记录
+     */
+    private void replay() {
+        if (!spillFile.exists()) {
+            return;
+        }
+        List<String> lines = FileUtil.readUtf8Lines(spillFile);
+        long ackedSeq = 0;
+        List<PendingChatHistory> records = new ArrayList<>();
+        for (String line : lines) {
+            if (StrUtil.isBlank(line)) {
+                continue;
+            }
+            try {
+                JSONObject json = JSONUtil.parseObj(line);
+                if (json.containsKey(ACK_KEY)) {
+                    ackedSeq = Math.max(ackedSeq, json.getLong(ACK_KEY));
+                } else {
+                    records.add(json.toBean(PendingChatHistory.class));
+                }
+            } catch (Exception e) {
+                // 进程崩溃时最后一行可能只写了一半
+                log.warn("跳过无法解析的对话历史日志行: {}", StrUtil.maxLength(line, 200));
+            }
+        }
+        long finalAckedSeq = ackedSeq;
+        List<PendingChatHistory> unacked = records.stream()
+                .filter(record -> record.getSeq() > finalAckedSeq)
+                .filter(record -> !isPersisted(record))
+                .toList();
+        if (!unacked.isEmpty()) {
+            log.info("重放对话历史日志，共 {} 条未入库", unacked.size());
+            persist(new ArrayList<>(unacked), false);
+        }
+        FileUtil.del(spillFile);
+    }
+
+    /**
+     * 重放时判断记录是否已经入库（入库后、ack 前进程退出的情况）
+     */
+    private boolean isPersisted(PendingChatHistory record) {
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq("appId", record.getAppId())
+                .eq("messageType", record.getMessageType())
+                .eq("createTime", record.createTime())
+                .eq("message", record.getMessage());
+        return PendingChatHistory.TABLE_CHAT_HISTORY.equals(record.getTable())
+                ? chatHistoryService.count(queryWrapper) > 0
+                : chatHistoryOriginalService.count(queryWrapper) > 0;
+    }
+
+    private void ack(long seq) {
+        synchronized (spillLock) {
+            if (queue.isEmpty()) {
+                // 已经全部入库，截断日志
+                closeSpillWriter();
+                openSpillWriter(false);
+                return;
+            }
+            appendSpill(JSONUtil.createObj().set(ACK_KEY, seq).toString());
+        }
+    }
+
+    private void appendSpill(String line) {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.write(line);
+            spillWriter.write('\n');
+            spillWriter.flush();
+            if (chatHistoryWriteBehindConfig.isFsync()) {
+                spillOutputStream.getFD().sync();
+            }
+        } catch (IOException e) {
+            log.error("写入对话历史日志失败", e);
+        }
+    }
+
+    private void openSpillWriter(boolean append) {
+        try {
+            spillOutputStream = new FileOutputStream(spillFile, append);
+            spillWriter = new OutputStreamWriter(spillOutputStream, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // 日志不可用时仍然异步入库，只是失去崩溃恢复能力
+            log.error("打开对话历史日志失败: {}", spillFile, e);
+            spillWriter = null;
+        }
+    }
+
+    private void closeSpillWriter() {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            log.warn("关闭对话历史日志失败: {}", e.getMessage());
+        }
+        spillWriter = null;
+    }
+
+    private double lagSeconds() {
+        PendingChatHistory oldest = queue == null ? null : queue.peek();
+        return oldest == null ? 0 : (System.currentTimeMillis() - oldest.getCreateTimeMillis()) / 1000.0;
+    }
+
+    private static boolean isValid(PendingChatHistory record) {
+        boolean valid = record.getAppId() != null && record.getAppId() > 0
+                && record.getUserId() != null && record.getUserId() > 0
+                && StrUtil.isNotBlank(record.getMessage())
+                && ChatHistoryMessageTypeEnum.getEnumByValue(record.getMessageType()) != null;
+        if (!valid) {
+            log.warn("丢弃无效的对话历史, appId: {}, messageType: {}", record.getAppId(), record.getMessageType());
+        }
+        return valid;
+    }
+
+    private static void runCallback(Runnable onPersisted) {
+        if (onPersisted == null) {
+            return;
+        }
+        try {
+            onPersisted.run();
+        } catch (Exception e) {
+            log.error("对话历史入库回调执行失败", e);
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.wjp.waicodermotherbackend.core.history;
+
+import com.wjp.waicodermotherbackend.model.entity.ConversationEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 对话事件与两个投影（chat_history / chat_history_original 视图）之间的映射
+ * 同时写入两张表的消息（用户消息、错误消息）合并为一条事件，visibility 同时包含两个投影
+ */
+public final class ConversationEventProjection {
+
+    /**
+     * 展示投影：chat_history
+     */
+    public static final int VISIBILITY_DISPLAY = 1;
+
+    /**
+     * 记忆回放投影：chat_history_original
+     */
+    public static final int VISIBILITY_REPLAY = 2;
+
+    private ConversationEventProjection() {
+    }
+
+    /**
+     * 把待入库的对话历史合并为对话事件（保持提交顺序）
+     * @param records 待入库的对话历史
+     * @return 对话事件
+     */
+    public static List<ConversationEvent> toEvents(List<PendingChatHistory> records) {
+        List<ConversationEvent> events = new ArrayList<>(records.size());
+        List<PendingChatHistory> eventSources = new ArrayList<>(records.size());
+        for (PendingChatHistory record : records) {
+            int visibility = PendingChatHistory.TABLE_CHAT_HISTORY.equals(record.getTable())
+                    ? VISIBILITY_DISPLAY : VISIBILITY_REPLAY;
+            int mergeIndex = findMergeTarget(events, eventSources, record, visibility);
+            if (mergeIndex >= 0) {
+                ConversationEvent event = events.get(mergeIndex);
+                event.setVisibility(event.getVisibility() | visibility);
+                continue;
+            }
+            events.add(ConversationEvent.builder()
+                    .appId(record.getAppId())
+                    .userId(record.getUserId())
+                    .messageType(record.getMessageType())
+                    .visibility(visibility)
+                    .message(record.getMessage())
+                    .createTime(record.createTime())
+                    .build());
+            eventSources.add(record);
+        }
+        return events;
+    }
+
+    /**
+     * 直接写入单个投影的消息（不经过 write-behind 的写入路径）
+     * @param visibility 所属投影
+     * @return 对话事件（createTime 由数据库生成）
+     */
+    public static ConversationEvent toEvent(Long appId, Long userId, String messageType, int visibility, String message) {
+        return ConversationEvent.builder()
+                .appId(appId)
+                .userId(userId)
+                .messageType(messageType)
+                .visibility(visibility)
+                .message(message)
+                .build();
+    }
+
+    /**
+     * 查找可以合并的事件：同一条消息提交到了另一个投影
+     */
+    private static int findMergeTarget(List<ConversationEvent> events, List<PendingChatHistory> eventSources,
+                                       PendingChatHistory record, int visibility) {
+        for (int i = events.size() - 1; i >= 0; i--) {
+            PendingChatHistory source = eventSources.get(i);
+            if ((events.get(i).getVisibility() & visibility) == 0
+                    && Objects.equals(source.getAppId(), record.getAppId())
+                    && Objects.equals(source.getMessageType(), record.getMessageType())
+                    && source.getCreateTimeMillis() == record.getCreateTimeMillis()
+                    && Objects.equals(source.getMessage(), record.getMessage())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,97 @@
+package com.wjp.waicodermotherbackend.core.history;
+
+import com.wjp.waicodermotherbackend.model.entity.ChatHistory;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistoryOriginal;
+import lombok.Data;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 待入库的对话历史（同时也是本地追加日志中的一行）
+ */
+@Data
+public class PendingChatHistory {
+
+    public static final String TABLE_CHAT_HISTORY = "chat_history";
+
+    public static final String TABLE_CHAT_HISTORY_ORIGINAL = "chat_history_original";
+
+    /**
+     * 日志序号（进程内递增）
+     */
+    private long seq;
+
+    /**
+     * 目标表
+     */
+    private String table;
+
+    private Long appId;
+
+    private Long userId;
+
+    private String message;
+
+    private String messageType;
+
+    /**
+     * 提交时间（毫秒，精确到秒），入库时作为 createTime，保证延迟入库不改变消息时间
+     */
+    private long createTimeMillis;
+
+    /**
+     * 本批消息全部入库后的回调（不写入日志）
+     */
+    private transient Runnable onPersisted;
+
+    /**
+     * 是否为一次提交中的最后一条（同一次提交的记录不拆到两批入库，不写入日志）
+     */
+    private transient boolean lastOfSubmit;
+
+    public static PendingChatHistory chatHistory(Long appId, String message, String messageType, Long userId) {
+        return of(TABLE_CHAT_HISTORY, appId, message, messageType, userId);
+    }
+
+    public static PendingChatHistory original(Long appId, String message, String messageType, Long userId) {
+        return of(TABLE_CHAT_HISTORY_ORIGINAL, appId, message, messageType, userId);
+    }
+
+    private static PendingChatHistory of(String table, Long appId, String message, String messageType, Long userId) {
+        PendingChatHistory pendingChatHistory = new PendingChatHistory();
+        pendingChatHistory.setTable(table);
+        pendingChatHistory.setAppId(appId);
+        pendingChatHistory.setUserId(userId);
+        pendingChatHistory.setMessage(message);
+        pendingChatHistory.setMessageType(messageType);
+        // 数据库 createTime 精确到秒，提前截断，重放时才能按时间判断是否已经入库
+        pendingChatHistory.setCreateTimeMillis(System.currentTimeMillis() / 1000 * 1000);
+        return pendingChatHistory;
+    }
+
+    public LocalDateTime createTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(createTimeMillis), ZoneId.systemDefault());
+    }
+
+    public ChatHistory toChatHistory() {
+        return ChatHistory.builder()
+                .appId(appId)
+                .userId(userId)
+                .message(message)
+                .messageType(messageType)
+                .createTime(createTime())
+                .build();
+    }
+
+    public ChatHistoryOriginal toChatHistoryOriginal() {
+        return ChatHistoryOriginal.builder()
+                .appId(appId)
+                .userId(userId)
+                .message(message)
+                .messageType(messageType)
+                .createTime(createTime())
+                .build();
+    }
+}
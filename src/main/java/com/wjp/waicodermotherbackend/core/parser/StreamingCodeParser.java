@@ -0,0 +1,241 @@
+package com.wjp.waicodermotherbackend.core.parser;
+
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 流式代码解析器（增量状态机）
+ * 逐个字符消费 AI 的流式输出，识别 ```html / ```css / ```js 代码围栏，
+ * 每当一个代码块闭合时立即回调，不再需要把完整输出拼接成一个大字符串后再用正则解析。
+ *
+ * 解析语义与 HtmlCodeParser / MultiFileCodeParser 保持一致：
+ *  1、同一种语言只取第一个代码块
+ *  2、代码块在遇到第一个 ``` 时闭合
+ *  3、HTML 类型如果始终没有出现 html 代码块，则把整个输出作为 HTML
+ *
+ * 注意：一个实例只对应一次流式生成，非线程安全
+ */
+public class StreamingCodeParser {
+
+    /**
+     * 代码围栏
+     */
+    private static final int FENCE_LENGTH = 3;
+
+    /**
+     * 围栏信息行（```html）的最大长度，超过则认为不是代码围栏
+     */
+    private static final int MAX_FENCE_INFO_LENGTH = 32;
+
+    /**
+     * 解析状态
+     */
+    private enum State {
+        /**
+         * 代码块之外的普通文本
+         */
+        TEXT,
+        /**
+         * 已读到 ```，正在读取语言标识
+         */
+        FENCE_INFO,
+        /**
+         * 代码块内部
+         */
+        CODE
+    }
+
+    private final CodeGenTypeEnum codeGenTypeEnum;
+
+    /**
+     * 代码块闭合回调：(语言, 代码内容)
+     */
+    private final BiConsumer<String, String> blockListener;
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续读到的反引号数量
+     */
+    private int backtickCount = 0;
+
+    private final StringBuilder fenceInfo = new StringBuilder();
+
+    private final StringBuilder codeBlock = new StringBuilder();
+
+    /**
+     * 当前代码块的语言（已归一化）
+     */
+    private String currentLanguage;
+
+    /**
+     * 已经输出过的语言，同一种语言只取第一个代码块
+     */
+    private final Set<String> emittedLanguages = new HashSet<>();
+
+    /**
+     * HTML 兜底内容：仅 HTML 类型在 html 代码块出现之前保留原始输出
+     */
+    private StringBuilder fallbackBuilder;
+
+    /**
+     * 已消费的字符总数
+     */
+    private long consumedLength = 0;
+
+    public StreamingCodeParser(CodeGenTypeEnum codeGenTypeEnum, BiConsumer<String, String> blockListener) {
+        this.codeGenTypeEnum = codeGenTypeEnum;
+        this.blockListener = blockListener;
+        if (codeGenTypeEnum == CodeGenTypeEnum.HTML) {
+            this.fallbackBuilder = new StringBuilder();
+        }
+    }
+
+    /**
+     * 消费一个流式片段
+     * @param chunk AI 返回的片段
+     */
+    public void append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        consumedLength += chunk.length();
+        if (fallbackBuilder != null) {
+            fallbackBuilder.append(chunk);
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            consume(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * 流结束：未闭合的代码块按正则语义丢弃；HTML 类型没有代码块时整体作为 HTML
+     */
+    public void finish() {
+        if (fallbackBuilder != null) {
+            String fallback = fallbackBuilder.toString().trim();
+            fallbackBuilder = null;
+            if (!fallback.isEmpty()) {
+                blockListener.accept("html", fallback);
+                emittedLanguages.add("html");
+            }
+        }
+        state = State.TEXT;
+        codeBlock.setLength(0);
+        fenceInfo.setLength(0);
+    }
+
+    /**
+     * 是否已经输出过指定语言的代码块
+     */
+    public boolean hasEmitted(String language) {
+        return emittedLanguages.contains(language);
+    }
+
+    /**
+     * 当前缓冲的字符数（未闭合的代码块、围栏信息行、HTML 兜底内容），用于内存记账
+     */
+    public long getBufferedLength() {
+        return codeBlock.length() + fenceInfo.length() + (fallbackBuilder == null ? 0 : fallbackBuilder.length());
+    }
+
+    /**
+     * 已消费的字符总数
+     */
+    public long getConsumedLength() {
+        return consumedLength;
+    }
+
+    private void consume(char c) {
+        switch (state) {
+            case TEXT -> {
+                if (c == '`') {
+                    if (++backtickCount == FENCE_LENGTH) {
+                        backtickCount = 0;
+                        fenceInfo.setLength(0);
+                        state = State.FENCE_INFO;
+                    }
+                } else {
+                    backtickCount = 0;
+                }
+            }
+            case FENCE_INFO -> {
+                if (c == '\n') {
+                    currentLanguage = normalizeLanguage(fenceInfo.toString().trim());
+                    fenceInfo.setLength(0);
+                    codeBlock.setLength(0);
+                    state = State.CODE;
+                } else if (c == '`') {
+                    // 反引号围栏的信息行中不能出现反引号（CommonMark），说明是行内的 ```html```，回到普通文本
+                    // 这个反引号属于行内代码的闭合，不计入新的围栏
+                    fenceInfo.setLength(0);
+                    backtickCount = 0;
+                    state = State.TEXT;
+                } else if (fenceInfo.length() >= MAX_FENCE_INFO_LENGTH) {
+                    // 不是代码围栏（例如行内的 ```xxx```），回到普通文本
+                    fenceInfo.setLength(0);
+                    state = State.TEXT;
+                } else {
+                    fenceInfo.append(c);
+                }
+            }
+            case CODE -> {
+                if (c == '`') {
+                    if (++backtickCount == FENCE_LENGTH) {
+                        backtickCount = 0;
+                        closeBlock();
+                    }
+                    return;
+                }
+                // 不足三个的反引号属于代码内容
+                for (; backtickCount > 0; backtickCount--) {
+                    codeBlock.append('`');
+                }
+                codeBlock.append(c);
+            }
+        }
+    }
+
+    /**
+     * 代码块闭合
+     */
+    private void closeBlock() {
+        state = State.TEXT;
+        String language = currentLanguage;
+        String code = codeBlock.toString().trim();
+        codeBlock.setLength(0);
+        currentLanguage = null;
+        if (language == null || code.isEmpty() || emittedLanguages.contains(language)) {
+            return;
+        }
+        emittedLanguages.add(language);
+        // html 代码块已经出现，不再需要兜底内容
+        if ("html".equals(language)) {
+            fallbackBuilder = null;
+        }
+        blockListener.accept(language, code);
+    }
+
+    /**
+     * 归一化语言标识，只保留当前代码生成类型关心的语言
+     * @param info 围栏后的语言标识
+     * @return 语言，不关心的语言返回 null
+     */
+    private String normalizeLanguage(String info) {
+        String language = info.toLowerCase();
+        if ("html".equals(language)) {
+            return "html";
+        }
+        if (codeGenTypeEnum != CodeGenTypeEnum.MULTI_FILE) {
+            return null;
+        }
+        return switch (language) {
+            case "css" -> "css";
+            case "js", "javascript" -> "js";
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.wjp.waicodermotherbackend.core.saver;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步代码保存器
+ * 把代码文件的写入从 Reactor 回调线程中剥离，交给有界的保存线程池执行，并暴露队列深度和保存耗时指标
+ */
+@Slf4j
+@Component
+public class AsyncCodeFileSaver {
+
+    @Resource
+    private ThreadPoolExecutor codeSaveExecutor;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 保存耗时（从提交到写入完成，包含排队时间）
+     */
+    private Timer saveTimer;
+
+    /**
+     * 保存队列已满被拒绝的任务数
+     */
+    private Counter rejectedCounter;
+
+    /**
+     * 注册监控指标
+     */
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("code_save_queue_size", codeSaveExecutor, executor -> executor.getQueue().size())
+                .description("代码保存队列中等待的任务数")
+                .register(meterRegistry);
+        Gauge.builder("code_save_active_threads", codeSaveExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("正在执行代码保存的线程数")
+                .register(meterRegistry);
+        saveTimer = Timer.builder("code_save_duration_seconds")
+                .description("代码保存耗时（包含排队时间）")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("code_save_rejected_total")
+                .description("保存队列已满被拒绝的代码保存任务数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 提交保存任务
+     * 只负责入队，不会在调用线程上执行保存；队列已满时返回以 RejectedExecutionException 失败的 Future
+     * @param saveTask 保存任务（任务内部自行处理异常）
+     * @return 保存完成的 Future
+     */
+    public CompletableFuture<Void> submit(Runnable saveTask) {
+        long submitTime = System.nanoTime();
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    saveTask.run();
+                } finally {
+                    saveTimer.record(System.nanoTime() - submitTime, TimeUnit.NANOSECONDS);
+                }
+            }, codeSaveExecutor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("代码保存队列已满，拒绝保存任务，队列长度: {}", codeSaveExecutor.getQueue().size());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
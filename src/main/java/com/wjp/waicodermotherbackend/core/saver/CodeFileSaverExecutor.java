@@ -35,4 +35,38 @@ public class CodeFileSaverExecutor {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
         };
     }
+
+    /**
+     * 增量保存单个代码块（流式解析时使用，写入暂存目录）
+     * @param language 代码块语言
+     * @param code 代码内容
+     * @param codeGenType 代码生成类型
+     * @param stagingId 暂存目录 ID
+     * @return 是否写入了文件
+     */
+    public static boolean saveCodeBlock(String language, String code, CodeGenTypeEnum codeGenType, Long appId, String stagingId) {
+        return getSaver(codeGenType).saveCodeBlock(language, code, appId, stagingId);
+    }
+
+    /**
+     * 生成成功：暂存目录中的文件移动到应用目录
+     */
+    public static void commitStaging(CodeGenTypeEnum codeGenType, Long appId, int version, String stagingId) {
+        getSaver(codeGenType).commitStaging(appId, version, stagingId);
+    }
+
+    /**
+     * 生成被取消或失败：丢弃暂存目录
+     */
+    public static void discardStaging(CodeGenTypeEnum codeGenType, Long appId, String stagingId) {
+        getSaver(codeGenType).discardStaging(appId, stagingId);
+    }
+
+    private static CodeFileSaverTemplate<?> getSaver(CodeGenTypeEnum codeGenType) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver;
+            case MULTI_FILE -> multiFileCodeFileSaver;
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
 }
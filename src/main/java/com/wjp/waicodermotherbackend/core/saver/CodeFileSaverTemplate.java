@@ -9,7 +9,11 @@ import com.wjp.waicodermotherbackend.exception.ErrorCode;
 import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
  * 抽象代码文件保存器 - 模版方法模式
@@ -38,6 +42,57 @@ public abstract class CodeFileSaverTemplate<T> {
         return new File(baseDirPath);
     }
 
+    /**
+     * 增量保存单个代码块：流式解析时每闭合一个代码块就保存一次
+     * 代码块先写入本次生成的暂存目录，生成成功后由 commitStaging 移动到应用目录，
+     * 取消或失败的生成不会在应用目录中留下新旧混杂的文件
+     * @param language 代码块语言
+     * @param code 代码内容
+     * @param stagingId 暂存目录 ID（每次生成一个）
+     * @return 是否写入了文件
+     */
+    public final boolean saveCodeBlock(String language, String code, Long appId, String stagingId) {
+        String fileName = resolveFileName(language);
+        if (fileName == null || StrUtil.isBlank(code)) {
+            return false;
+        }
+        String stagingDirPath = buildStagingDir(appId, stagingId);
+        FileUtil.mkdir(stagingDirPath);
+        writeToFile(stagingDirPath, fileName, code);
+        return true;
+    }
+
+    /**
+     * 把暂存目录中的文件移动到应用目录（逐个文件原子替换，应用目录中未重新生成的文件保留）
+     * @param stagingId 暂存目录 ID
+     */
+    public final void commitStaging(Long appId, int version, String stagingId) {
+        File stagingDir = new File(buildStagingDir(appId, stagingId));
+        File[] stagedFiles = stagingDir.listFiles();
+        if (stagedFiles == null) {
+            return;
+        }
+        Path baseDir = Path.of(buildUniqueDir(appId, version));
+        try {
+            for (File stagedFile : stagedFiles) {
+                Files.move(stagedFile.toPath(), baseDir.resolve(stagedFile.getName()),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "代码文件保存失败: " + e.getMessage());
+        } finally {
+            FileUtil.del(stagingDir);
+        }
+    }
+
+    /**
+     * 丢弃暂存目录（生成被取消或失败）
+     * @param stagingId 暂存目录 ID
+     */
+    public final void discardStaging(Long appId, String stagingId) {
+        FileUtil.del(buildStagingDir(appId, stagingId));
+    }
+
     /**
      * 验证输入 (可由子类覆盖)
      * @param result
@@ -70,6 +125,17 @@ public abstract class CodeFileSaverTemplate<T> {
         return dirPath;
     }
 
+    /**
+     * 暂存目录路径: tmp/code_output/bizType_appId.staging_stagingId（与应用目录在同一个文件系统，移动是原子的）
+     */
+    private String buildStagingDir(Long appId, String stagingId) {
+        if (appId == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "appId不能为空");
+        }
+        String stagingDirName = StrUtil.format("{}_{}.staging_{}", getCodeGenType().getValue(), appId, stagingId);
+        return FILE_SAVE_ROOT_DIR + File.separator + stagingDirName;
+    }
+
     /**
      * 保存单个文件
      * @param dirPath 文件根目录
@@ -92,6 +158,13 @@ public abstract class CodeFileSaverTemplate<T> {
      */
     protected abstract void saveFiles(T result, String baseDirPath);
 
+    /**
+     * 根据代码块语言获取要保存的文件名 (交给子类)
+     * @param language 代码块语言
+     * @return 文件名，不需要保存的语言返回 null
+     */
+    protected abstract String resolveFileName(String language);
+
     /**
      * 获取代码类型 (交给子类)
      * @return 代码类型枚举
@@ -20,6 +20,16 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
         writeToFile(baseDirPath, "index.html", result.getHtmlCode());
     }
 
+    /**
+     * 根据代码块语言获取文件名
+     * @param language 代码块语言
+     * @return 文件名
+     */
+    @Override
+    protected String resolveFileName(String language) {
+        return "html".equals(language) ? "index.html" : null;
+    }
+
     /**
      * 获取代码类型
      * @return HTML代码类型枚举
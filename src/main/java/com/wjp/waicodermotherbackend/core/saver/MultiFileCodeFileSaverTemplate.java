@@ -21,6 +21,21 @@ public class MultiFileCodeFileSaverTemplate extends CodeFileSaverTemplate<MultiF
         writeToFile(baseDirPath, "script.js", result.getJsCode());
     }
 
+    /**
+     * 根据代码块语言获取文件名
+     * @param language 代码块语言
+     * @return 文件名
+     */
+    @Override
+    protected String resolveFileName(String language) {
+        return switch (language) {
+            case "html" -> "index.html";
+            case "css" -> "style.css";
+            case "js" -> "script.js";
+            default -> null;
+        };
+    }
+
     /**
      * 获取代码类型
      * @return 代码类型枚举
@@ -0,0 +1,247 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import cn.hutool.json.JSONUtil;
+import lombok.Getter;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 一次进行中的代码生成
+ * 上游的 SSE 帧统一编号后写入有界回放缓冲区（热流），所有观看者共享同一次 AI 调用
+ *
+ * 移出回放缓冲区的内容帧合并为一段完整内容保留下来：观看者需要的帧已经不在缓冲区时，
+ * 先下发一个 reset 事件（截至缓冲区最早一帧之前的完整内容，前端用它替换已显示的内容），再回放缓冲区内的帧
+ */
+public class ActiveGeneration {
+
+    /**
+     * 缺帧时下发的完整内容事件
+     */
+    public static final String RESET_EVENT = "reset";
+
+    @Getter
+    private final Long appId;
+
+    /**
+     * 客户端请求 ID，可为空
+     */
+    @Getter
+    private final String requestId;
+
+    /**
+     * 回放缓冲区：只保留最近的 N 帧
+     */
+    private final Sinks.Many<ServerSentEvent<String>> sink;
+
+    private final int replayBufferSize;
+
+    /**
+     * 与回放缓冲区保持一致的最近 N 帧，观看者订阅时在锁内取快照
+     */
+    private final ArrayDeque<ServerSentEvent<String>> retainedFrames = new ArrayDeque<>();
+
+    /**
+     * 已经移出回放缓冲区的内容
+     */
+    private final StringBuilder evictedContent = new StringBuilder();
+
+    /**
+     * 已经移出回放缓冲区的最后一帧序号（retainedFrames 之前的帧）
+     */
+    private long evictedSequence = 0;
+
+    private final Object bufferLock = new Object();
+
+    /**
+     * 帧序号，作为 SSE 的 id 下发给前端
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 当前观看者数量
+     */
+    private final AtomicInteger viewerCount = new AtomicInteger();
+
+    /**
+     * 对上游生成流的订阅
+     */
+    private volatile Disposable upstream;
+
+    /**
+     * 生成是否仍在进行
+     */
+    private volatile boolean running = true;
+
+    public ActiveGeneration(Long appId, String requestId, int replayBufferSize) {
+        this.appId = appId;
+        this.requestId = requestId;
+        this.replayBufferSize = replayBufferSize;
+        this.sink = Sinks.many().replay().limit(replayBufferSize);
+    }
+
+    /**
+     * 内容帧：内容包装成 JSON 对象（防止空格丢失）
+     */
+    public static ServerSentEvent<String> contentFrame(String content) {
+        return ServerSentEvent.<String>builder()
+                .data(JSONUtil.toJsonStr(Map.of("d", content)))
+                .build();
+    }
+
+    /**
+     * 订阅上游生成流（热启动，与观看者是否在线无关）
+     * @param frames 上游 SSE 帧
+     * @param onFinished 生成结束回调（正常完成 / 出错 / 被取消）
+     */
+    void connect(Flux<ServerSentEvent<String>> frames, Consumer<SignalType> onFinished) {
+        this.upstream = frames
+                .map(frame -> ServerSentEvent.<String>builder()
+                        .id(String.valueOf(sequence.incrementAndGet()))
+                        .event(frame.event())
+                        .data(frame.data())
+                        .build())
+                .doOnNext(this::retain)
+                .doFinally(signalType -> {
+                    running = false;
+                    onFinished.accept(signalType);
+                })
+                .subscribe(
+                        sink::tryEmitNext,
+                        sink::tryEmitError,
+                        sink::tryEmitComplete
+                );
+    }
+
+    /**
+     * 完整内容帧：前端用它替换已显示的内容
+     * @param id 帧序号，可为空
+     */
+    public static ServerSentEvent<String> resetFrame(String content, String id) {
+        return ServerSentEvent.<String>builder()
+                .id(id)
+                .event(RESET_EVENT)
+                .data(JSONUtil.toJsonStr(Map.of("d", content)))
+                .build();
+    }
+
+    /**
+     * 记录写入回放缓冲区的帧，超出容量的内容帧合并到 evictedContent
+     */
+    private void retain(ServerSentEvent<String> frame) {
+        synchronized (bufferLock) {
+            retainedFrames.addLast(frame);
+            if (retainedFrames.size() > replayBufferSize) {
+                ServerSentEvent<String> evicted = retainedFrames.removeFirst();
+                evictedSequence = Long.parseLong(evicted.id());
+                evictedContent.append(contentOf(evicted));
+            }
+        }
+    }
+
+    /**
+     * 截至目前的完整内容（已移出回放缓冲区的内容 + 缓冲区内的内容帧）
+     */
+    public String getContent() {
+        synchronized (bufferLock) {
+            StringBuilder content = new StringBuilder(evictedContent);
+            for (ServerSentEvent<String> frame : retainedFrames) {
+                content.append(contentOf(frame));
+            }
+            return content.toString();
+        }
+    }
+
+    /**
+     * 内容帧中的内容，其他事件为空字符串
+     */
+    private static String contentOf(ServerSentEvent<String> frame) {
+        if (frame.event() != null || frame.data() == null) {
+            return "";
+        }
+        return JSONUtil.parseObj(frame.data()).getStr("d", "");
+    }
+
+    /**
+     * 观看者订阅：先回放 lastEventId 之后的帧，再跟随实时流
+     * lastEventId 之后的帧已经移出回放缓冲区时，先下发 reset 事件补齐完整内容
+     * @param lastEventId 前端最后收到的帧序号，为空时从头回放
+     */
+    Flux<ServerSentEvent<String>> asFlux(Long lastEventId) {
+        return Flux.defer(() -> {
+            long from = lastEventId == null ? 0 : lastEventId;
+            ServerSentEvent<String> reset = null;
+            List<ServerSentEvent<String>> replay = new ArrayList<>();
+            long snapshotSequence;
+            synchronized (bufferLock) {
+                if (from < evictedSequence) {
+                    reset = resetFrame(evictedContent.toString(), String.valueOf(evictedSequence));
+                    from = evictedSequence;
+                }
+                for (ServerSentEvent<String> frame : retainedFrames) {
+                    if (Long.parseLong(frame.id()) > from) {
+                        replay.add(frame);
+                    }
+                }
+                snapshotSequence = retainedFrames.isEmpty() ? evictedSequence : Long.parseLong(retainedFrames.getLast().id());
+            }
+            // 快照之后的帧从回放缓冲区跟随（快照内的帧在锁外才写入 sink，按序号去重）
+            Flux<ServerSentEvent<String>> live = sink.asFlux()
+                    .filter(frame -> Long.parseLong(frame.id()) > snapshotSequence);
+            Flux<ServerSentEvent<String>> head = Flux.fromIterable(replay);
+            if (reset != null) {
+                head = Mono.just(reset).concatWith(head);
+            }
+            return head.concatWith(live);
+        });
+    }
+
+    int attachViewer() {
+        return viewerCount.incrementAndGet();
+    }
+
+    int detachViewer() {
+        return viewerCount.decrementAndGet();
+    }
+
+    int getViewerCount() {
+        return viewerCount.get();
+    }
+
+    /**
+     * 取消上游生成（会向下传递到 AI 流的取消）
+     */
+    void cancel() {
+        Disposable current = upstream;
+        if (current != null && !current.isDisposed()) {
+            current.dispose();
+        }
+        sink.tryEmitComplete();
+    }
+
+    /**
+     * 是否是同一个客户端请求（请求 ID 为空时不认为相同）
+     */
+    public boolean isSameRequest(String otherRequestId) {
+        return requestId != null && requestId.equals(otherRequestId);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getLastSequence() {
+        return sequence.get();
+    }
+}
@@ -0,0 +1,45 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 生成检查点：一次生成中断前已经输出的内容
+ */
+@Data
+public class GenerationCheckpoint implements Serializable {
+
+    /**
+     * 应用 ID
+     */
+    private Long appId;
+
+    /**
+     * 用户 ID
+     */
+    private Long userId;
+
+    /**
+     * 代码生成类型
+     */
+    private String codeGenType;
+
+    /**
+     * 已经展示给用户的内容（对应 chat_history 中的 AI 消息）
+     */
+    private String displayText;
+
+    /**
+     * 需要补回对话记忆的 AI 输出
+     * HTML / MULTI_FILE 为空，表示与展示内容相同；VUE_PROJECT 只有最后一次工具调用之后的文本（工具调用已经写入对话记忆）
+     */
+    private String memoryText;
+
+    /**
+     * 检查点写入时间（毫秒时间戳）
+     */
+    private Long updateTime;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,100 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.wjp.waicodermotherbackend.config.GenerationCheckpointConfig;
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RFuture;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 生成检查点存储
+ * 每个应用最多保留一个检查点，key：gen:checkpoint:{appId}
+ *  1、生成过程中按字符数 / 时间间隔覆盖写入（异步，不阻塞流）
+ *  2、生成正常结束后删除；失败、取消或节点宕机时保留，用户可以选择从检查点继续生成
+ *  3、用户发送新消息后，旧的检查点不再适用，直接删除
+ */
+@Component
+@Slf4j
+public class GenerationCheckpointStore {
+
+    private static final String CHECKPOINT_KEY_PREFIX = "gen:checkpoint:";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private GenerationCheckpointConfig generationCheckpointConfig;
+
+    /**
+     * 为一次生成创建检查点写入器
+     * @param appId 应用 ID
+     * @param userId 用户 ID
+     * @param codeGenType 代码生成类型
+     * @return 检查点写入器（关闭检查点时返回空实现）
+     */
+    public GenerationCheckpointer open(long appId, long userId, CodeGenTypeEnum codeGenType) {
+        if (!generationCheckpointConfig.isEnabled()) {
+            return GenerationCheckpointer.NOOP;
+        }
+        return new GenerationCheckpointer(this, appId, userId, codeGenType.getValue(),
+                generationCheckpointConfig.getIntervalChars(),
+                Duration.ofSeconds(generationCheckpointConfig.getIntervalSeconds()).toMillis());
+    }
+
+    /**
+     * 查询检查点
+     * @param appId 应用 ID
+     * @return 检查点，不存在时返回 null
+     */
+    public GenerationCheckpoint get(long appId) {
+        return parse(getBucket(appId).get());
+    }
+
+    /**
+     * 取出并删除检查点（继续生成时只能使用一次）
+     * @param appId 应用 ID
+     * @return 检查点，不存在时返回 null
+     */
+    public GenerationCheckpoint take(long appId) {
+        return parse(getBucket(appId).getAndDelete());
+    }
+
+    /**
+     * 删除检查点
+     */
+    public void clear(long appId) {
+        getBucket(appId).deleteAsync();
+    }
+
+    /**
+     * 异步写入检查点
+     */
+    RFuture<Void> saveAsync(GenerationCheckpoint checkpoint) {
+        return getBucket(checkpoint.getAppId()).setAsync(JSONUtil.toJsonStr(checkpoint),
+                Duration.ofMinutes(generationCheckpointConfig.getTtlMinutes()));
+    }
+
+    private GenerationCheckpoint parse(String json) {
+        if (StrUtil.isBlank(json)) {
+            return null;
+        }
+        try {
+            return JSONUtil.toBean(json, GenerationCheckpoint.class);
+        } catch (Exception e) {
+            log.warn("生成检查点格式异常，忽略: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private RBucket<String> getBucket(long appId) {
+        return redissonClient.getBucket(CHECKPOINT_KEY_PREFIX + appId, StringCodec.INSTANCE);
+    }
+}
@@ -0,0 +1,105 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RFuture;
+
+import java.util.function.Supplier;
+
+/**
+ * 一次生成的检查点写入器
+ * 流处理器每收到一段输出调用一次 onProgress，新增字符数或距上次写入的时间超过阈值时异步写入检查点。
+ * 上一次写入还没完成时跳过本次（累计的字符数保留，下一段输出到达时再写），写入与删除按顺序执行。
+ *
+ * 流处理器的回调是串行执行的，不需要额外加锁
+ */
+@Slf4j
+public class GenerationCheckpointer {
+
+    /**
+     * 关闭检查点时使用的空实现
+     */
+    public static final GenerationCheckpointer NOOP = new GenerationCheckpointer(null, 0, 0, null, 0, 0);
+
+    private final GenerationCheckpointStore store;
+
+    private final long appId;
+
+    private final long userId;
+
+    private final String codeGenType;
+
+    private final int intervalChars;
+
+    private final long intervalMillis;
+
+    /**
+     * 上次写入后新增的字符数
+     */
+    private int pendingChars;
+
+    private long lastCheckpointMillis = System.currentTimeMillis();
+
+    private RFuture<Void> lastWrite;
+
+    private boolean completed;
+
+    GenerationCheckpointer(GenerationCheckpointStore store, long appId, long userId, String codeGenType,
+                           int intervalChars, long intervalMillis) {
+        this.store = store;
+        this.appId = appId;
+        this.userId = userId;
+        this.codeGenType = codeGenType;
+        this.intervalChars = intervalChars;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * 记录新的输出，达到阈值时写入检查点
+     * @param addedChars 新增字符数
+     * @param displayText 当前已展示的完整内容（只在需要写入时才会计算）
+     * @param memoryText 当前需要补回对话记忆的内容，为空表示与展示内容相同
+     */
+    public void onProgress(int addedChars, Supplier<String> displayText, Supplier<String> memoryText) {
+        if (store == null || completed || addedChars <= 0) {
+            return;
+        }
+        pendingChars += addedChars;
+        long now = System.currentTimeMillis();
+        if (pendingChars < intervalChars && now - lastCheckpointMillis < intervalMillis) {
+            return;
+        }
+        if (lastWrite != null && !lastWrite.isDone()) {
+            return;
+        }
+        GenerationCheckpoint checkpoint = new GenerationCheckpoint();
+        checkpoint.setAppId(appId);
+        checkpoint.setUserId(userId);
+        checkpoint.setCodeGenType(codeGenType);
+        checkpoint.setDisplayText(displayText.get());
+        checkpoint.setMemoryText(memoryText == null ? null : memoryText.get());
+        checkpoint.setUpdateTime(now);
+        pendingChars = 0;
+        lastCheckpointMillis = now;
+        lastWrite = store.saveAsync(checkpoint);
+        lastWrite.whenComplete((result, error) -> {
+            if (error != null) {
+                log.warn("appId: {} 写入生成检查点失败: {}", appId, error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 生成正常结束：删除检查点（等上一次写入完成后再删，避免旧检查点被写回）
+     */
+    public void complete() {
+        if (store == null || completed) {
+            return;
+        }
+        completed = true;
+        if (lastWrite == null) {
+            store.clear(appId);
+            return;
+        }
+        lastWrite.whenComplete((result, error) -> store.clear(appId));
+    }
+}
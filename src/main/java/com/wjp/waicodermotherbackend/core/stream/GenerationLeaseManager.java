@@ -0,0 +1,142 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import cn.hutool.core.util.IdUtil;
+import com.wjp.waicodermotherbackend.config.GenerationStreamConfig;
+import jakarta.annotation.Resource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 应用生成租约（分布式单飞）
+ * 同一个应用同一时刻只允许一个节点上的一次生成，避免并发写同一个代码目录、共享同一份对话记忆
+ *
+ * 租约 key：gen:lease:{appId}，值为 节点ID:请求ID，生成期间定时续期，结束后按值释放
+ * 幂等 key：gen:request:{appId}:{requestId}，生成完成后写入本次生成的完整内容，重复提交直接下发该内容
+ */
+@Component
+@Slf4j
+public class GenerationLeaseManager {
+
+    private static final String LEASE_KEY_PREFIX = "gen:lease:";
+
+    private static final String REQUEST_KEY_PREFIX = "gen:request:";
+
+    /**
+     * 只有租约持有者才能续期
+     */
+    private static final String RENEW_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "else return 0 end";
+
+    /**
+     * 当前节点 ID
+     */
+    @Getter
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private GenerationStreamConfig generationStreamConfig;
+
+    /**
+     * 尝试获取应用的生成租约
+     * @param appId 应用 ID
+     * @param requestId 客户端请求 ID，可为空
+     * @return 租约凭证，获取失败返回 null
+     */
+    public String tryAcquire(Long appId, String requestId) {
+        String token = nodeId + ":" + (requestId != null ? requestId : IdUtil.fastSimpleUUID());
+        boolean acquired = getLeaseBucket(appId).setIfAbsent(token, getLeaseTtl());
+        if (!acquired) {
+            log.info("应用 {} 的生成租约已被占用，持有者: {}", appId, getLeaseBucket(appId).get());
+            return null;
+        }
+        return token;
+    }
+
+    /**
+     * 续期租约
+     * @return 是否仍然持有租约
+     */
+    public boolean renew(Long appId, String token) {
+        Boolean renewed = redissonClient.getScript(StringCodec.INSTANCE).eval(
+                RScript.Mode.READ_WRITE,
+                RENEW_SCRIPT,
+                RScript.ReturnType.BOOLEAN,
+                List.of(LEASE_KEY_PREFIX + appId),
+                token,
+                String.valueOf(getLeaseTtl().toMillis())
+        );
+        return Boolean.TRUE.equals(renewed);
+    }
+
+    /**
+     * 释放租约（只释放自己持有的租约）
+     */
+    public void release(Long appId, String token) {
+        if (!getLeaseBucket(appId).compareAndSet(token, null)) {
+            log.warn("应用 {} 的生成租约已不属于当前请求，跳过释放: {}", appId, token);
+        }
+    }
+
+    /**
+     * 租约是否被其他节点上的生成持有
+     * @param requestId 客户端请求 ID，为空时其他节点上的任意生成都算
+     */
+    public boolean isHeldByOtherNode(Long appId, String requestId) {
+        String holder = getLeaseBucket(appId).get();
+        if (holder == null || holder.startsWith(nodeId + ":")) {
+            return false;
+        }
+        return requestId == null || holder.endsWith(":" + requestId);
+    }
+
+    /**
+     * 记录请求已完成，同时保存本次生成的完整内容，重复提交时直接下发
+     */
+    public void markRequestCompleted(Long appId, String requestId, String content) {
+        if (requestId == null) {
+            return;
+        }
+        getRequestBucket(appId, requestId).set(content,
+                Duration.ofSeconds(generationStreamConfig.getRequestIdTtlSeconds()));
+    }
+
+    /**
+     * 已完成请求的生成内容
+     * @return 请求未完成（或已过期）时返回 null
+     */
+    public String getCompletedContent(Long appId, String requestId) {
+        return requestId == null ? null : getRequestBucket(appId, requestId).get();
+    }
+
+    /**
+     * 续期间隔：租约有效期的三分之一
+     */
+    public Duration getRenewInterval() {
+        return getLeaseTtl().dividedBy(3);
+    }
+
+    private Duration getLeaseTtl() {
+        return Duration.ofSeconds(generationStreamConfig.getLeaseTtlSeconds());
+    }
+
+    private RBucket<String> getLeaseBucket(Long appId) {
+        return redissonClient.getBucket(LEASE_KEY_PREFIX + appId, StringCodec.INSTANCE);
+    }
+
+    private RBucket<String> getRequestBucket(Long appId, String requestId) {
+        return redissonClient.getBucket(REQUEST_KEY_PREFIX + appId + ":" + requestId, StringCodec.INSTANCE);
+    }
+}
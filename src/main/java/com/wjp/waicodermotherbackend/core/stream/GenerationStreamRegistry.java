@@ -0,0 +1,193 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import com.wjp.waicodermotherbackend.config.GenerationStreamConfig;
+import com.wjp.waicodermotherbackend.exception.BusinessException;
+import com.wjp.waicodermotherbackend.exception.ErrorCode;
+import com.wjp.waicodermotherbackend.exception.ThrowUtils;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 进行中的代码生成注册表（按 appId）
+ *
+ * 1、生成流由注册表热订阅，前端断开不会立刻中断 AI 调用
+ * 2、刷新页面后携带 Last-Event-ID 重连，回放缺失的帧（已移出回放缓冲区时先下发 reset 补齐完整内容）后继续跟随实时流
+ * 3、同一个应用的第二个页面直接附着到同一个流，不会再发起一次 AI 调用
+ * 4、所有观看者断开超过宽限时间后，才真正取消生成
+ * 5、跨节点通过 GenerationLeaseManager 的租约保证同一个应用只有一次生成
+ */
+@Component
+@Slf4j
+public class GenerationStreamRegistry {
+
+    private final Map<Long, ActiveGeneration> activeGenerations = new ConcurrentHashMap<>();
+
+    @Resource
+    private GenerationStreamConfig generationStreamConfig;
+
+    @Resource
+    private GenerationLeaseManager generationLeaseManager;
+
+    /**
+     * 获取应用当前的生成（包括刚结束、仍在保留期内的生成）
+     * @param appId 应用 ID
+     * @return 生成，不存在时返回 null
+     */
+    public ActiveGeneration getGeneration(Long appId) {
+        return activeGenerations.get(appId);
+    }
+
+    /**
+     * 注册并启动一次生成
+     *
+     * 1、同一个请求 ID 已经完成过，直接下发完整内容（重复提交不会再次生成）
+     * 2、获取分布式租约，保证同一个应用同一时刻只有一次生成
+     * 3、租约被本节点同一个请求的生成占用时，附着到已有的流；
+     *    被其他节点同一个请求的生成占用时，提示前端携带 Last-Event-ID 重连；其他请求（新的消息）占用时拒绝
+     *
+     * @param appId 应用 ID
+     * @param requestId 客户端请求 ID，可为空
+     * @param framesSupplier 上游 SSE 帧（冷流），只有拿到租约后才会创建
+     * @return 当前观看者的 SSE 流
+     */
+    public Flux<ServerSentEvent<String>> start(Long appId, String requestId,
+                                               Supplier<Flux<ServerSentEvent<String>>> framesSupplier) {
+        Flux<ServerSentEvent<String>> completed = replayCompleted(appId, requestId);
+        if (completed != null) {
+            log.info("应用 {} 的请求 {} 已经完成，忽略重复提交", appId, requestId);
+            return completed;
+        }
+        String leaseToken = generationLeaseManager.tryAcquire(appId, requestId);
+        if (leaseToken == null) {
+            ActiveGeneration local = activeGenerations.get(appId);
+            if (local != null && local.isRunning() && local.isSameRequest(requestId)) {
+                log.info("应用 {} 的请求 {} 正在生成中，附着到已有的流", appId, requestId);
+                return attach(local, null);
+            }
+            ThrowUtils.throwIf(requestId != null && generationLeaseManager.isHeldByOtherNode(appId, requestId),
+                    ErrorCode.GENERATION_ON_OTHER_NODE);
+            throw new BusinessException(ErrorCode.CONFLICT_ERROR, "该应用正在生成中，请勿重复提交");
+        }
+        ActiveGeneration generation = new ActiveGeneration(appId, requestId, generationStreamConfig.getReplayBufferSize());
+        Flux<ServerSentEvent<String>> frames;
+        try {
+            frames = framesSupplier.get();
+        } catch (RuntimeException e) {
+            generationLeaseManager.release(appId, leaseToken);
+            throw e;
+        }
+        activeGenerations.put(appId, generation);
+        // 生成期间定时续期租约
+        Disposable leaseRenewal = Flux.interval(generationLeaseManager.getRenewInterval())
+                .subscribe(tick -> {
+                    if (!generationLeaseManager.renew(appId, leaseToken)) {
+                        log.warn("应用 {} 的生成租约续期失败，租约可能已过期", appId);
+                    }
+                }, error -> log.error("应用 {} 的生成租约续期异常", appId, error));
+        generation.connect(frames, signalType -> {
+            leaseRenewal.dispose();
+            generationLeaseManager.release(appId, leaseToken);
+            if (signalType == SignalType.ON_COMPLETE) {
+                generationLeaseManager.markRequestCompleted(appId, requestId, generation.getContent());
+            }
+            onFinished(generation);
+        });
+        return attach(generation, null);
+    }
+
+    /**
+     * 断线重连时本节点已经没有这次生成（生成在其他节点，或结束后回放已过期）
+     *
+     * 1、生成仍在其他节点进行，提示前端继续重连
+     * 2、请求已经完成，下发完整内容
+     * 3、其他情况直接结束
+     *
+     * @param appId 应用 ID
+     * @param requestId 客户端请求 ID，可为空
+     * @return 当前观看者的 SSE 流
+     */
+    public Flux<ServerSentEvent<String>> resumeFinished(Long appId, String requestId) {
+        ThrowUtils.throwIf(generationLeaseManager.isHeldByOtherNode(appId, requestId), ErrorCode.GENERATION_ON_OTHER_NODE);
+        Flux<ServerSentEvent<String>> completed = replayCompleted(appId, requestId);
+        return completed != null ? completed : Flux.just(namedEvent("done"));
+    }
+
+    /**
+     * 已完成的请求：本节点仍保留着这次生成时完整回放，否则下发保存的完整内容
+     * @return 请求未完成时返回 null
+     */
+    private Flux<ServerSentEvent<String>> replayCompleted(Long appId, String requestId) {
+        String content = generationLeaseManager.getCompletedContent(appId, requestId);
+        if (content == null) {
+            return null;
+        }
+        ActiveGeneration retained = activeGenerations.get(appId);
+        if (retained != null && !retained.isRunning() && retained.isSameRequest(requestId)) {
+            return attach(retained, null);
+        }
+        return Flux.just(ActiveGeneration.resetFrame(content, null), namedEvent("saved"), namedEvent("done"));
+    }
+
+    private static ServerSentEvent<String> namedEvent(String event) {
+        return ServerSentEvent.<String>builder()
+                .event(event)
+                .data("")
+                .build();
+    }
+
+    /**
+     * 附着到一次生成
+     * @param generation 生成
+     * @param lastEventId 前端最后收到的帧序号，为空时从头回放
+     * @return 当前观看者的 SSE 流
+     */
+    public Flux<ServerSentEvent<String>> attach(ActiveGeneration generation, Long lastEventId) {
+        Long appId = generation.getAppId();
+        return generation.asFlux(lastEventId)
+                .doOnSubscribe(subscription -> {
+                    int viewers = generation.attachViewer();
+                    log.info("应用 {} 新增观看者，lastEventId: {}，当前观看者: {}", appId, lastEventId, viewers);
+                })
+                .doFinally(signalType -> {
+                    int viewers = generation.detachViewer();
+                    if (viewers <= 0 && generation.isRunning()) {
+                        scheduleCancel(generation);
+                    }
+                });
+    }
+
+    /**
+     * 所有观看者都已断开：宽限时间内没有重连则取消生成
+     */
+    private void scheduleCancel(ActiveGeneration generation) {
+        Duration grace = Duration.ofSeconds(generationStreamConfig.getDetachGraceSeconds());
+        log.info("应用 {} 所有观看者已断开，{} 秒内无重连将取消生成", generation.getAppId(), grace.getSeconds());
+        Mono.delay(grace).subscribe(ignored -> {
+            if (generation.getViewerCount() <= 0 && generation.isRunning()) {
+                log.warn("应用 {} 等待重连超时，取消生成", generation.getAppId());
+                generation.cancel();
+            }
+        });
+    }
+
+    /**
+     * 生成结束：回放缓冲区再保留一段时间，供断线重连补齐最后的帧
+     */
+    private void onFinished(ActiveGeneration generation) {
+        Long appId = generation.getAppId();
+        log.info("应用 {} 生成结束，共 {} 帧", appId, generation.getLastSequence());
+        Mono.delay(Duration.ofSeconds(generationStreamConfig.getFinishedRetentionSeconds()))
+                .subscribe(ignored -> activeGenerations.remove(appId, generation));
+    }
+}
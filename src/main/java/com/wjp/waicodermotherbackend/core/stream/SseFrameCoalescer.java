@@ -0,0 +1,179 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import com.wjp.waicodermotherbackend.config.SseCoalesceConfig;
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE 帧合并器
+ * 把模型逐 token 输出的小片段合并成较大的帧：攒够 maxBytes 字节或第一个片段等待超过 maxDelayMs 时发送，以先到者为准。
+ * 第一帧不等待，尽快让前端开始渲染。
+ *
+ * 指标：
+ *  sse_frames_total      发送的帧数（按时间求速率即 帧/秒）
+ *  sse_chunks_total      合并前的片段数
+ *  sse_frame_bytes       每帧字节数分布
+ */
+@Component
+public class SseFrameCoalescer {
+
+    @Resource
+    private SseCoalesceConfig sseCoalesceConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Scheduler flushScheduler = Schedulers.parallel();
+
+    /**
+     * 合并内容流
+     * @param contentFlux 原始内容流
+     * @param codeGenTypeEnum 代码生成类型（决定合并策略）
+     * @return 合并后的内容流
+     */
+    public Flux<String> coalesce(Flux<String> contentFlux, CodeGenTypeEnum codeGenTypeEnum) {
+        SseCoalesceConfig.Policy policy = sseCoalesceConfig.getPolicy(codeGenTypeEnum);
+        String codeGenType = codeGenTypeEnum.getValue();
+        Counter frameCounter = Counter.builder("sse_frames_total")
+                .description("发送的 SSE 帧数")
+                .tag("code_gen_type", codeGenType)
+                .register(meterRegistry);
+        Counter chunkCounter = Counter.builder("sse_chunks_total")
+                .description("合并前的内容片段数")
+                .tag("code_gen_type", codeGenType)
+                .register(meterRegistry);
+        DistributionSummary frameBytes = DistributionSummary.builder("sse_frame_bytes")
+                .description("每帧字节数")
+                .baseUnit("bytes")
+                .tag("code_gen_type", codeGenType)
+                .register(meterRegistry);
+        if (!policy.isEnabled()) {
+            return contentFlux.doOnNext(chunk -> {
+                int bytes = utf8Length(chunk);
+                chunkCounter.increment();
+                frameCounter.increment();
+                frameBytes.record(bytes);
+            });
+        }
+        return Flux.create(sink -> {
+            Buffer buffer = new Buffer(sink, policy, frameCounter, frameBytes);
+            Disposable upstream = contentFlux.subscribe(
+                    chunk -> {
+                        chunkCounter.increment();
+                        buffer.append(chunk);
+                    },
+                    error -> {
+                        buffer.flush();
+                        sink.error(error);
+                    },
+                    () -> {
+                        buffer.flush();
+                        sink.complete();
+                    }
+            );
+            sink.onDispose(() -> {
+                buffer.cancelTimer();
+                upstream.dispose();
+            });
+        });
+    }
+
+    /**
+     * 一个流的合并缓冲区（上游回调线程和定时器线程都会访问，统一加锁）
+     */
+    private class Buffer {
+
+        private final FluxSink<String> sink;
+
+        private final SseCoalesceConfig.Policy policy;
+
+        private final Counter frameCounter;
+
+        private final DistributionSummary frameBytes;
+
+        private final StringBuilder pending = new StringBuilder();
+
+        private int pendingBytes = 0;
+
+        private boolean firstFrameSent = false;
+
+        private Disposable timer;
+
+        Buffer(FluxSink<String> sink, SseCoalesceConfig.Policy policy,
+               Counter frameCounter, DistributionSummary frameBytes) {
+            this.sink = sink;
+            this.policy = policy;
+            this.frameCounter = frameCounter;
+            this.frameBytes = frameBytes;
+        }
+
+        synchronized void append(String chunk) {
+            if (chunk == null || chunk.isEmpty()) {
+                return;
+            }
+            pending.append(chunk);
+            pendingBytes += utf8Length(chunk);
+            if (!firstFrameSent || pendingBytes >= policy.getMaxBytes()) {
+                flush();
+                return;
+            }
+            if (timer == null) {
+                timer = flushScheduler.schedule(this::flush, policy.getMaxDelayMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void flush() {
+            cancelTimer();
+            if (pending.isEmpty()) {
+                return;
+            }
+            String frame = pending.toString();
+            frameCounter.increment();
+            frameBytes.record(pendingBytes);
+            pending.setLength(0);
+            pendingBytes = 0;
+            firstFrameSent = true;
+            sink.next(frame);
+        }
+
+        synchronized void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+    }
+
+    /**
+     * 计算字符串的 UTF-8 字节数（不分配字节数组）
+     */
+    static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,78 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个生成流的内存账户
+ * 流处理器每在内存中保留一份输出内容（拼接对话历史、解析缓冲等）就记一次账，流结束时整体归还。
+ * 开户时已经在全局预算中预留了 reserveBytes，实际占用先抵扣预留，超出的部分才计入全局预算
+ */
+public class StreamMemoryAccount {
+
+    /**
+     * 按 UTF-16 估算，每个字符 2 字节
+     */
+    private static final int BYTES_PER_CHAR = 2;
+
+    @Getter
+    private final Long appId;
+
+    private final StreamMemoryBudget budget;
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * 开户时预留的字节数
+     */
+    private final long reserveBytes;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    StreamMemoryAccount(Long appId, StreamMemoryBudget budget, long reserveBytes) {
+        this.appId = appId;
+        this.budget = budget;
+        this.reserveBytes = reserveBytes;
+    }
+
+    /**
+     * 记录保留了一份文本
+     */
+    public void addChars(CharSequence text) {
+        if (text == null) {
+            return;
+        }
+        adjustChars(text.length());
+    }
+
+    /**
+     * 调整保留的字符数：正数为新保留，负数为释放（例如解析缓冲在代码块闭合后清空）
+     */
+    public void adjustChars(long deltaChars) {
+        if (deltaChars == 0 || closed.get()) {
+            return;
+        }
+        long delta = deltaChars * BYTES_PER_CHAR;
+        long current = bytes.addAndGet(delta);
+        // 只有超出预留的部分需要额外记账（释放时同样只归还超出预留的部分）
+        long charged = Math.max(current, reserveBytes) - Math.max(current - delta, reserveBytes);
+        if (charged != 0) {
+            budget.allocate(charged);
+        }
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * 流结束，归还全部内存（包括未用完的预留）
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            budget.release(this, Math.max(bytes.get(), reserveBytes));
+        }
+    }
+}
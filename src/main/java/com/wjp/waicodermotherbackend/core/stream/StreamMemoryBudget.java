@@ -0,0 +1,108 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import com.wjp.waicodermotherbackend.config.GenerationStreamConfig;
+import com.wjp.waicodermotherbackend.exception.BusinessException;
+import com.wjp.waicodermotherbackend.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进行中生成的全局内存预算
+ * 每个流在内存里都保留了若干份完整输出，并发一多就可能把 JVM 推进频繁 GC。
+ * 剩余预算不足以容纳一个新流时，新请求直接返回 503（服务繁忙），而不是继续占用堆内存。
+ *
+ * 指标：
+ *  generation_memory_used_bytes       所有进行中生成已记账的字节数
+ *  generation_memory_budget_bytes     预算上限
+ *  generation_memory_active_streams   进行中的生成数
+ *  generation_memory_stream_max_bytes 单个流占用的最大字节数
+ *  generation_memory_rejected_total   因预算不足被拒绝的请求数
+ */
+@Component
+@Slf4j
+public class StreamMemoryBudget {
+
+    @Resource
+    private GenerationStreamConfig generationStreamConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    private final Set<StreamMemoryAccount> accounts = ConcurrentHashMap.newKeySet();
+
+    private long budgetBytes;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        budgetBytes = (long) (Runtime.getRuntime().maxMemory() * generationStreamConfig.getMemoryBudgetHeapRatio());
+        log.info("生成流内存预算: {} MB", budgetBytes / 1024 / 1024);
+        Gauge.builder("generation_memory_used_bytes", usedBytes, AtomicLong::get)
+                .description("进行中生成已占用的内存（估算）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("generation_memory_budget_bytes", this, budget -> budget.budgetBytes)
+                .description("进行中生成的内存预算")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("generation_memory_active_streams", accounts, Set::size)
+                .description("进行中的生成数")
+                .register(meterRegistry);
+        Gauge.builder("generation_memory_stream_max_bytes", accounts,
+                        all -> all.stream().mapToLong(StreamMemoryAccount::getBytes).max().orElse(0))
+                .description("单个生成流占用的最大内存（估算）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("generation_memory_rejected_total")
+                .description("因内存预算不足被拒绝的生成请求数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 为新的生成开户，剩余预算不足时快速拒绝
+     * 开户时原子地预留 reserveBytes（CAS），同时到达的请求不会看到同一个已用值而全部放行；
+     * 实际占用超过预留后才继续记账，流结束时按 max(实际占用, 预留) 归还
+     * @param appId 应用 ID
+     * @return 内存账户，流结束时必须 close
+     */
+    public StreamMemoryAccount open(Long appId) {
+        long reserveBytes = generationStreamConfig.getMemoryReservePerStreamMb() * 1024L * 1024L;
+        while (true) {
+            long used = usedBytes.get();
+            if (used + reserveBytes > budgetBytes) {
+                rejectedCounter.increment();
+                log.warn("生成流内存预算不足，拒绝 appId: {}，已用: {} bytes，预算: {} bytes，进行中: {}",
+                        appId, used, budgetBytes, accounts.size());
+                throw new BusinessException(ErrorCode.SERVICE_UNAVAILABLE, "当前生成任务过多，请稍后再试");
+            }
+            if (usedBytes.compareAndSet(used, used + reserveBytes)) {
+                break;
+            }
+        }
+        StreamMemoryAccount account = new StreamMemoryAccount(appId, this, reserveBytes);
+        accounts.add(account);
+        return account;
+    }
+
+    void allocate(long bytes) {
+        usedBytes.addAndGet(bytes);
+    }
+
+    void release(StreamMemoryAccount account, long bytes) {
+        if (accounts.remove(account)) {
+            usedBytes.addAndGet(-bytes);
+        }
+    }
+}
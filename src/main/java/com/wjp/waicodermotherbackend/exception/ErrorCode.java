@@ -12,9 +12,12 @@ public enum ErrorCode {
     NO_AUTH_ERROR(40101, "无权限"),
     NOT_FOUND_ERROR(40400, "请求数据不存在"),
     FORBIDDEN_ERROR(40300, "禁止访问"),
+    CONFLICT_ERROR(40900, "请求冲突"),
+    GENERATION_ON_OTHER_NODE(40901, "生成正在其他节点进行，请携带 Last-Event-ID 重连"),
     TOO_MANY_REQUEST(42900,"请求过于频繁"),
     SYSTEM_ERROR(50000, "系统内部异常"),
-    OPERATION_ERROR(50001, "操作失败");
+    OPERATION_ERROR(50001, "操作失败"),
+    SERVICE_UNAVAILABLE(50300, "服务繁忙，请稍后再试");
 
     /**
      * 状态码
@@ -172,6 +172,10 @@ public class GlobalExceptionHandler {
                 response.setCharacterEncoding("UTF-8");
                 response.setHeader("Cache-Control", "no-cache");
                 response.setHeader("Connection", "keep-alive");
+                // 服务繁忙（内存预算不足等），提示前端稍后重试
+                if (errorCode == ErrorCode.SERVICE_UNAVAILABLE.getCode()) {
+                    response.setHeader("Retry-After", "5");
+                }
                 // 构造错误消息的SSE格式
                 Map<String, Object> errorData = Map.of(
                         "error", true,
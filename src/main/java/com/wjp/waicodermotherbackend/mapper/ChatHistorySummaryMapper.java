@@ -0,0 +1,13 @@
+package com.wjp.waicodermotherbackend.mapper;
+
+import com.mybatisflex.core.BaseMapper;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistorySummary;
+
+/**
+ * 对话摘要 映射层。
+ *
+ * @author <a href="https://github.com/wjp527">π</a>
+ */
+public interface ChatHistorySummaryMapper extends BaseMapper<ChatHistorySummary> {
+
+}
@@ -45,5 +45,11 @@ public class ChatHistoryQueryRequest extends PageRequest implements Serializable
      */
     private LocalDateTime lastCreateTime;
 
+    /**
+     * 游标查询 - 最后一条记录的 id
+     * 与 lastCreateTime 一起使用，创建时间相同的记录不会被跳过或重复返回
+     */
+    private Long lastId;
+
     private static final long serialVersionUID = 1L;
 }
@@ -0,0 +1,80 @@
+package com.wjp.waicodermotherbackend.model.entity;
+
+import com.mybatisflex.annotation.Column;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import java.io.Serial;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 对话摘要 实体类。
+ * 每个应用一条滚动摘要，lastMessageId 之前（含）的 chat_history_original 记录已折叠到摘要中
+ *
+ * @author <a href="https://github.com/wjp527">π</a>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("chat_history_summary")
+public class ChatHistorySummary implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * id
+     */
+    @Id(keyType = KeyType.Auto)
+    private Long id;
+
+    /**
+     * 应用id
+     */
+    @Column("appId")
+    private Long appId;
+
+    /**
+     * 滚动摘要
+     */
+    private String summary;
+
+    /**
+     * 已折叠到摘要中的最后一条 chat_history_original 记录id
+     */
+    @Column("lastMessageId")
+    private Long lastMessageId;
+
+    /**
+     * 已折叠的消息总数
+     */
+    @Column("messageCount")
+    private Integer messageCount;
+
+    /**
+     * 创建时间
+     */
+    @Column("createTime")
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    @Column("updateTime")
+    private LocalDateTime updateTime;
+
+    /**
+     * 是否删除
+     */
+    @Column(value = "isDelete", isLogicDelete = true)
+    private Integer isDelete;
+
+}
@@ -0,0 +1,85 @@
+package com.wjp.waicodermotherbackend.model.entity;
+
+import com.mybatisflex.annotation.Column;
+import com.mybatisflex.annotation.Id;
+import com.mybatisflex.annotation.KeyType;
+import com.mybatisflex.annotation.Table;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import java.io.Serial;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 对话事件 实体类。
+ * 统一的追加写对话日志，每条消息只写一次；chat_history（展示）和 chat_history_original（记忆回放）是按 visibility 过滤的视图
+ *
+ * @author <a href="https://github.com/wjp527">π</a>
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("conversation_event")
+public class ConversationEvent implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * id
+     */
+    @Id(keyType = KeyType.Auto)
+    private Long id;
+
+    /**
+     * 应用id
+     */
+    @Column("appId")
+    private Long appId;
+
+    /**
+     * 创建用户id
+     */
+    @Column("userId")
+    private Long userId;
+
+    /**
+     * 消息类型：user/ai/toolExecutionRequest/toolExecutionResult
+     */
+    @Column("messageType")
+    private String messageType;
+
+    /**
+     * 所属投影：1 展示，2 记忆回放，3 两者
+     */
+    private Integer visibility;
+
+    /**
+     * 消息
+     */
+    private String message;
+
+    /**
+     * 创建时间
+     */
+    @Column("createTime")
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    @Column("updateTime")
+    private LocalDateTime updateTime;
+
+    /**
+     * 是否删除
+     */
+    @Column(value = "isDelete", isLogicDelete = true)
+    private Integer isDelete;
+
+}
@@ -0,0 +1,37 @@
+package com.wjp.waicodermotherbackend.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 游标分页结果（不统计总数）
+ * 下一页请求时把 lastCreateTime、lastId 原样带回
+ */
+@Data
+public class CursorPageVO<T> implements Serializable {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 下一页游标 - 当前页最后一条记录的创建时间
+     */
+    private LocalDateTime lastCreateTime;
+
+    /**
+     * 下一页游标 - 当前页最后一条记录的 id（创建时间相同时用于区分）
+     */
+    private Long lastId;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -1,6 +1,7 @@
 package com.wjp.waicodermotherbackend.monitor;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Resource;
@@ -29,6 +30,10 @@ public class AiModelMetricsCollector {
     private final ConcurrentMap<String, Counter> errorCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Counter> tokenCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Timer> responseTimersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> abortCountersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> savedTokenCountersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> promptCacheCountersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> promptCacheHitRatioCache = new ConcurrentHashMap<>();
 
     /**
      * 记录请求次数
@@ -97,4 +102,63 @@ public class AiModelMetricsCollector {
         );
         timer.record(duration);
     }
+
+    /**
+     * 记录客户端断开导致的提前终止，以及预计节省的 Token 数
+     */
+    public void recordGenerationAbort(String userId, String appId, String codeGenType, long tokensSaved) {
+        String key = String.format("%s_%s_%s", userId, appId, codeGenType);
+        Counter abortCounter = abortCountersCache.computeIfAbsent(key, k ->
+                Counter.builder("ai_generation_aborted_total")
+                        .description("客户端断开导致提前终止的生成次数")
+                        .tag("user_id", userId)
+                        .tag("app_id", appId)
+                        .tag("code_gen_type", codeGenType)
+                        .register(meterRegistry)
+        );
+        abortCounter.increment();
+        Counter savedTokenCounter = savedTokenCountersCache.computeIfAbsent(key, k ->
+                Counter.builder("ai_generation_tokens_saved_total")
+                        .description("提前终止生成预计节省的Token数")
+                        .tag("user_id", userId)
+                        .tag("app_id", appId)
+                        .tag("code_gen_type", codeGenType)
+                        .register(meterRegistry)
+        );
+        savedTokenCounter.increment(tokensSaved);
+    }
+
+    /**
+     * 记录供应商提示词前缀缓存命中情况（只按模型统计，命中率与用户、应用无关）
+     * @param modelName 模型名称
+     * @param inputTokens 输入 Token 数
+     * @param cachedTokens 命中缓存的输入 Token 数
+     */
+    public void recordPromptCache(String modelName, long inputTokens, long cachedTokens) {
+        if (inputTokens <= 0) {
+            return;
+        }
+        long hitTokens = Math.min(cachedTokens, inputTokens);
+        promptCacheCounter(modelName, "hit").increment(hitTokens);
+        promptCacheCounter(modelName, "miss").increment(inputTokens - hitTokens);
+        DistributionSummary hitRatio = promptCacheHitRatioCache.computeIfAbsent(modelName, k ->
+                DistributionSummary.builder("ai_model_prompt_cache_hit_ratio")
+                        .description("AI模型单次请求提示词缓存命中率")
+                        .tag("model_name", modelName)
+                        .publishPercentiles(0.5, 0.9)
+                        .register(meterRegistry)
+        );
+        hitRatio.record((double) hitTokens / inputTokens);
+    }
+
+    private Counter promptCacheCounter(String modelName, String result) {
+        String key = String.format("%s_%s", modelName, result);
+        return promptCacheCountersCache.computeIfAbsent(key, k ->
+                Counter.builder("ai_model_prompt_cache_tokens_total")
+                        .description("AI模型提示词缓存命中/未命中的输入Token数")
+                        .tag("model_name", modelName)
+                        .tag("result", result)
+                        .register(meterRegistry)
+        );
+    }
 }
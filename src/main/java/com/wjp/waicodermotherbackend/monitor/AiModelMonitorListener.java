@@ -4,6 +4,7 @@ import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
 import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
 import dev.langchain4j.model.output.TokenUsage;
 import jakarta.annotation.Resource;
 import lombok.Builder;
@@ -112,6 +113,14 @@ public class AiModelMonitorListener implements ChatModelListener {
             aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "input", tokenUsage.inputTokenCount());
             aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "output", tokenUsage.outputTokenCount());
             aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "total", tokenUsage.totalTokenCount());
+            // 供应商返回了缓存命中数时记录提示词缓存命中率
+            if (tokenUsage instanceof OpenAiTokenUsage openAiTokenUsage
+                    && openAiTokenUsage.inputTokensDetails() != null
+                    && openAiTokenUsage.inputTokensDetails().cachedTokens() != null
+                    && tokenUsage.inputTokenCount() != null) {
+                aiModelMetricsCollector.recordPromptCache(modelName, tokenUsage.inputTokenCount(),
+                        openAiTokenUsage.inputTokensDetails().cachedTokens());
+            }
         }
     }
 }
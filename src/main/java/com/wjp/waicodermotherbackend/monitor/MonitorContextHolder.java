@@ -1,6 +1,8 @@
 package com.wjp.waicodermotherbackend.monitor;
 
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 
 /**
  * 监控上下文持有者 - 同线程内共享
@@ -33,4 +35,24 @@ public class MonitorContextHolder {
     public static void clearContext() {
         CONTEXT_HOLDER.remove();
     }
+
+    /**
+     * 订阅时恢复监控上下文（排队放行后，模型流可能在其他线程上被订阅）
+     */
+    public static <T> Flux<T> withContext(Flux<T> flux, MonitorContext context) {
+        Publisher<T> publisher = subscriber -> {
+            MonitorContext previous = CONTEXT_HOLDER.get();
+            CONTEXT_HOLDER.set(context);
+            try {
+                flux.subscribe(subscriber);
+            } finally {
+                if (previous == null) {
+                    CONTEXT_HOLDER.remove();
+                } else {
+                    CONTEXT_HOLDER.set(previous);
+                }
+            }
+        };
+        return Flux.from(publisher);
+    }
 }
@@ -29,6 +29,14 @@ public interface AppService extends IService<App> {
      */
     Flux<String> chatToGenCode(Long appId, String message, User loginUser);
 
+    /**
+     * 从检查点继续上一次中断的生成
+     * @param appId 应用Id
+     * @param loginUser 登录用户
+     * @return 生成的代码【流式】
+     */
+    Flux<String> continueGenCode(Long appId, User loginUser);
+
     /**
      * 部署应用
      * @param appId 应用Id
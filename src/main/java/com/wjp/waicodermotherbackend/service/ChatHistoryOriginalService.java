@@ -2,7 +2,7 @@ package com.wjp.waicodermotherbackend.service;
 
 import com.mybatisflex.core.service.IService;
 import com.wjp.waicodermotherbackend.model.entity.ChatHistoryOriginal;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 
 import java.util.List;
 
@@ -44,7 +44,14 @@ public interface ChatHistoryOriginalService extends IService<ChatHistoryOriginal
      * @param maxCount 最大数量
      * @return 加载结果
      */
-    int loadOriginalChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadOriginalChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount);
+
+    /**
+     * 压缩应用的工具调用历史：同一个文件只保留最新一次 writeFile 的完整内容
+     * @param appId 应用ID
+     * @return 被压缩的记录数
+     */
+    int compactToolCallHistory(Long appId);
 
 
 }
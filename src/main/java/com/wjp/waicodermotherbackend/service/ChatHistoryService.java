@@ -6,7 +6,8 @@ import com.mybatisflex.core.service.IService;
 import com.wjp.waicodermotherbackend.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.wjp.waicodermotherbackend.model.entity.ChatHistory;
 import com.wjp.waicodermotherbackend.model.entity.User;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import com.wjp.waicodermotherbackend.model.vo.CursorPageVO;
+import dev.langchain4j.memory.ChatMemory;
 
 import java.time.LocalDateTime;
 
@@ -34,7 +35,7 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      * @param maxCount 最大消息数量
      * @return 加载成功的消息数量
      */
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount);
 
     /**
      * 根据应用Id删除对话消息
@@ -55,6 +56,26 @@ public interface ChatHistoryService extends IService<ChatHistory> {
                                                LocalDateTime lastCreateTime,
                                                User loginUser);
 
+    /**
+     * 游标分页获取应用对话历史（不统计总数）
+     * @param appId 应用Id
+     * @param pageSize 页面大小
+     * @param lastCreateTime 上一页最后一条记录的创建时间
+     * @param lastId 上一页最后一条记录的 id
+     * @param loginUser 登录用户
+     * @return 游标分页结果
+     */
+    CursorPageVO<ChatHistory> listAppChatHistoryByCursor(Long appId, int pageSize,
+                                                         LocalDateTime lastCreateTime, Long lastId,
+                                                         User loginUser);
+
+    /**
+     * 游标分页查询对话历史（管理员，不统计总数）
+     * @param chatHistoryQueryRequest 查询条件（游标为 lastCreateTime、lastId）
+     * @return 游标分页结果
+     */
+    CursorPageVO<ChatHistory> listChatHistoryByCursor(ChatHistoryQueryRequest chatHistoryQueryRequest);
+
     /**
      * 获取查询包装类 【游标】
      *
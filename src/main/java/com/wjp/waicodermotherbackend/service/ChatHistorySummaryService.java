@@ -0,0 +1,36 @@
+package com.wjp.waicodermotherbackend.service;
+
+import com.mybatisflex.core.service.IService;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistorySummary;
+
+/**
+ * 对话摘要 服务层。
+ *
+ * @author <a href="https://github.com/wjp527">π</a>
+ */
+public interface ChatHistorySummaryService extends IService<ChatHistorySummary> {
+
+    /**
+     * 获取应用的滚动摘要
+     * @param appId 应用ID
+     * @return 摘要，没有时返回 null
+     */
+    ChatHistorySummary getByAppId(Long appId);
+
+    /**
+     * 保存应用的滚动摘要（不存在则新增，存在则覆盖）
+     * @param appId 应用ID
+     * @param summary 摘要内容
+     * @param lastMessageId 已折叠的最后一条 chat_history_original 记录ID
+     * @param messageCount 已折叠的消息总数
+     * @return 保存结果
+     */
+    boolean saveSummary(Long appId, String summary, Long lastMessageId, int messageCount);
+
+    /**
+     * 根据 appId 删除摘要
+     * @param appId 应用ID
+     * @return 删除结果
+     */
+    boolean deleteByAppId(Long appId);
+}
@@ -0,0 +1,21 @@
+package com.wjp.waicodermotherbackend.service;
+
+import com.mybatisflex.core.service.IService;
+import com.wjp.waicodermotherbackend.model.entity.ConversationEvent;
+
+import java.util.List;
+
+/**
+ * 对话事件 服务层。
+ *
+ * @author <a href="https://github.com/wjp527">π</a>
+ */
+public interface ConversationEventService extends IService<ConversationEvent> {
+
+    /**
+     * 批量追加对话事件（多行插入）
+     * @param events 对话事件
+     * @return 插入条数
+     */
+    int appendEvents(List<ConversationEvent> events);
+}
@@ -7,13 +7,25 @@ import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
-import com.wjp.waicodermotherbackend.ai.AiCodeGenTypeRoutingService;
-import com.wjp.waicodermotherbackend.ai.AiCodeGenTypeRoutingServiceFactory;
+import com.wjp.waicodermotherbackend.ai.AiCodeGeneratorServiceFactory;
+import com.wjp.waicodermotherbackend.ai.admission.AdmissionRequest;
+import com.wjp.waicodermotherbackend.ai.admission.LlmAdmissionController;
+import com.wjp.waicodermotherbackend.ai.memory.ChatMemoryHydrator;
+import com.wjp.waicodermotherbackend.ai.model.message.QueuePositionMessage;
+import com.wjp.waicodermotherbackend.ai.model.message.StreamMessage;
+import com.wjp.waicodermotherbackend.ai.routing.CodeGenTypeRouter;
 import com.wjp.waicodermotherbackend.constant.AppConstant;
 import com.wjp.waicodermotherbackend.constant.UserConstant;
 import com.wjp.waicodermotherbackend.core.AiCodeGeneratorFacade;
 import com.wjp.waicodermotherbackend.core.builder.VueProjectBuilder;
 import com.wjp.waicodermotherbackend.core.handler.StreamHandlerExecutor;
+import com.wjp.waicodermotherbackend.core.history.ChatHistoryWriteBehind;
+import com.wjp.waicodermotherbackend.core.history.PendingChatHistory;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpoint;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpointStore;
+import com.wjp.waicodermotherbackend.core.stream.SseFrameCoalescer;
+import com.wjp.waicodermotherbackend.core.stream.StreamMemoryAccount;
+import com.wjp.waicodermotherbackend.core.stream.StreamMemoryBudget;
 import com.wjp.waicodermotherbackend.exception.BusinessException;
 import com.wjp.waicodermotherbackend.exception.ErrorCode;
 import com.wjp.waicodermotherbackend.exception.ThrowUtils;
@@ -54,6 +66,13 @@ import java.util.stream.Collectors;
 @Slf4j
 public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppService {
 
+    /**
+     * 从检查点继续生成时发给模型的指令
+     */
+    private static final String CONTINUE_TEXT_PROMPT = "你上一次的输出在中途中断了，请紧接着中断的位置继续输出剩余内容，不要重复已经输出的部分，也不要添加任何说明。";
+
+    private static final String CONTINUE_VUE_PROJECT_PROMPT = "上一次生成在中途中断了，请检查已经写入的文件，继续完成剩余的工作，不要重复写入已经完成的文件。";
+
     @Resource
     private UserService userService;
 
@@ -72,6 +91,24 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Resource
     private StreamHandlerExecutor streamHandlerExecutor;
 
+    @Resource
+    private SseFrameCoalescer sseFrameCoalescer;
+
+    @Resource
+    private LlmAdmissionController llmAdmissionController;
+
+    @Resource
+    private StreamMemoryBudget streamMemoryBudget;
+
+    @Resource
+    private ChatMemoryHydrator chatMemoryHydrator;
+
+    @Resource
+    private ChatHistorySummaryService chatHistorySummaryService;
+
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
     @Resource
     private VueProjectBuilder vueProjectBuilder;
 
@@ -79,11 +116,17 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     private ScreenshotService screenshotService;
 
     @Resource
-    private AiCodeGenTypeRoutingServiceFactory aiCodeGenTypeRoutingServiceFactory;
+    private CodeGenTypeRouter codeGenTypeRouter;
 
     @Resource
     private ChatHistoryOriginalService chatHistoryOriginalService;
 
+    @Resource
+    private ChatHistoryWriteBehind chatHistoryWriteBehind;
+
+    @Resource
+    private GenerationCheckpointStore generationCheckpointStore;
+
 
     /**
      * 通过聊天生成应用代码
@@ -128,9 +171,84 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         ThrowUtils.throwIf(codeGenTypeEnum == null, ErrorCode.SYSTEM_ERROR, "代码生成类型错误");
 
-        // 5. 将用户的消息保存到对话记忆里
-        chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-        chatHistoryOriginalService.addOriginalChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
+        // 内存预算：剩余预算不足时直接拒绝，不再保存消息、调用模型
+        StreamMemoryAccount memoryAccount = streamMemoryBudget.open(appId);
+        try {
+            return doChatToGenCode(app, message, loginUser, codeGenTypeEnum, version, memoryAccount, null)
+                    .doFinally(signalType -> memoryAccount.close());
+        } catch (RuntimeException e) {
+            memoryAccount.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 从检查点继续上一次中断的生成
+     * 已输出的内容作为 AI 消息补回对话记忆，模型只需要输出剩余部分，不用从头再来
+     *
+     * @param appId     应用Id
+     * @param loginUser 登录用户
+     * @return 生成的代码【流式】
+     */
+    @Override
+    public Flux<String> continueGenCode(Long appId, User loginUser) {
+        // 1、参数校验
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用Id不能为空");
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR);
+        // 2、查询应用信息并校验权限
+        App app = this.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIf(!app.getUserId().equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR, "无权限操作");
+        Integer version = app.getVersion();
+        if (version == null || version == 0) {
+            version = 1;
+        }
+        CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
+        ThrowUtils.throwIf(codeGenTypeEnum == null, ErrorCode.SYSTEM_ERROR, "代码生成类型错误");
+        // 3、校验检查点
+        GenerationCheckpoint checkpoint = generationCheckpointStore.get(appId);
+        ThrowUtils.throwIf(checkpoint == null, ErrorCode.NOT_FOUND_ERROR, "没有可以继续的生成");
+        ThrowUtils.throwIf(!codeGenTypeEnum.getValue().equals(checkpoint.getCodeGenType()), ErrorCode.OPERATION_ERROR, "代码生成类型已变更，无法继续生成");
+        // 内存预算：剩余预算不足时直接拒绝，检查点保留
+        StreamMemoryAccount memoryAccount = streamMemoryBudget.open(appId);
+        try {
+            // 检查点只能使用一次，继续生成的过程中会重新写入
+            checkpoint = generationCheckpointStore.take(appId);
+            ThrowUtils.throwIf(checkpoint == null, ErrorCode.CONFLICT_ERROR, "检查点已被使用");
+            String prompt = codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT ? CONTINUE_VUE_PROJECT_PROMPT : CONTINUE_TEXT_PROMPT;
+            return doChatToGenCode(app, prompt, loginUser, codeGenTypeEnum, version, memoryAccount, checkpoint)
+                    .doFinally(signalType -> memoryAccount.close());
+        } catch (RuntimeException e) {
+            memoryAccount.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 保存用户消息并开始生成
+     * @param checkpoint 继续生成时使用的检查点，为空表示正常生成
+     */
+    private Flux<String> doChatToGenCode(App app, String message, User loginUser, CodeGenTypeEnum codeGenTypeEnum,
+                                        int version, StreamMemoryAccount memoryAccount, GenerationCheckpoint checkpoint) {
+        Long appId = app.getId();
+        if (checkpoint == null) {
+            // 5. 将用户的消息保存到对话记忆里
+            // 异步批量入库（先写本地日志，不阻塞请求线程）
+            chatHistoryWriteBehind.submit(
+                    PendingChatHistory.chatHistory(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId()),
+                    PendingChatHistory.original(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId()));
+            // 发送了新消息，上一次中断的检查点不再适用
+            generationCheckpointStore.clear(appId);
+        } else if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
+            // 继续生成不保存"继续"指令，只补上中断前已输出的内容
+            // HTML / MULTI_FILE 的已输出内容会放在新的流前面，和后续输出一起入库；VUE_PROJECT 的新一轮从工具调用重新开始，中断的内容单独入库
+            List<PendingChatHistory> records = new ArrayList<>();
+            records.add(PendingChatHistory.chatHistory(appId, checkpoint.getDisplayText(), ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId()));
+            if (StrUtil.isNotEmpty(checkpoint.getMemoryText())) {
+                records.add(PendingChatHistory.original(appId, checkpoint.getMemoryText(), ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId()));
+            }
+            chatHistoryWriteBehind.submit(records, null);
+        }
         // 6、设置监控上下文（用户Id 和 应用Id）
         MonitorContext monitorContext = MonitorContext.builder()
                 .userId(String.valueOf(loginUser.getId()))
@@ -140,12 +258,19 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         MonitorContextHolder.setContext(monitorContext);
         // 7、调用 AI服务生成代码
         // 这里不使用 app 里面的提示词，是因为这个方法不仅仅用于创建应用，后面还需要修改，多轮对话，反不能一直用最一开始的提示词吧
-        Flux<String> contentFlux = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId, version);
-
-        // 8、收集AI响应内容并在完成后记录到对话历史
-        StringBuilder aiResponseBuilder = new StringBuilder();
-        // 9、收集AI 响应内容并在完成后记录到对话历史中
-        return streamHandlerExecutor.doExecute(contentFlux, chatHistoryService,chatHistoryOriginalService, appId, loginUser, codeGenTypeEnum)
+        Flux<StreamMessage> contentFlux = aiCodeGeneratorFacade.generateAndSaveCodeMessageStream(message, codeGenTypeEnum, appId, version, checkpoint, memoryAccount);
+
+        // 8、准入控制：模型并发已满时排队并推送排队位置，放行后才真正调用模型
+        AdmissionRequest admissionRequest = new AdmissionRequest(appId, loginUser.getId(), app.getPriority());
+        Flux<StreamMessage> admittedFlux = llmAdmissionController.admit(
+                LlmAdmissionController.getModelKey(codeGenTypeEnum),
+                admissionRequest,
+                MonitorContextHolder.withContext(contentFlux, monitorContext),
+                QueuePositionMessage::new);
+        // 9、收集AI 响应内容并在完成后记录到对话历史中（流式代码解析器的缓冲由门面按实际占用记账）
+        Flux<String> handledFlux = streamHandlerExecutor.doExecute(admittedFlux, chatHistoryService,chatHistoryOriginalService, appId, loginUser, codeGenTypeEnum, memoryAccount);
+        // 10、合并细碎的片段，减少 SSE 帧数
+        return sseFrameCoalescer.coalesce(handledFlux, codeGenTypeEnum)
                 .doFinally(singalType -> {
                     // 流结束时清理（无论成功/失败/取消）
                     MonitorContextHolder.clearContext();
@@ -278,9 +403,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         app.setUserId(loginUser.getId());
         // 应用名称暂时为 initPrompt 前 12 位
         app.setAppName(initPrompt.substring(0, Math.min(initPrompt.length(), 12)));
-        // 使用AI智能选择代码生成类型(多例模式)
-        AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService = aiCodeGenTypeRoutingServiceFactory.createAiCodeGenTypeRoutingService();
-        CodeGenTypeEnum codeGenTypeEnum = aiCodeGenTypeRoutingService.routeCodeGenType(initPrompt);
+        // 智能选择代码生成类型（缓存 -> 本地关键词分类 -> 路由模型）
+        CodeGenTypeEnum codeGenTypeEnum = codeGenTypeRouter.route(initPrompt, loginUser.getId());
         app.setCodeGenType(codeGenTypeEnum.getValue());
         // 插入数据库
         boolean result = this.save(app);
@@ -308,12 +432,33 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         try {
             chatHistoryService.deleteByAppId(appId);
             chatHistoryOriginalService.deleteByAppId(appId);
+            chatHistorySummaryService.deleteByAppId(appId);
+            // 对话历史已删除，Redis 对话记忆不再可信
+            chatMemoryHydrator.invalidate(appId);
         } catch (Exception e) {
             // 记录日志但不阻止应用删除
             log.error("删除应用关联对话历史失败: {}", e.getMessage());
         }
         // 删除应用
-        return super.removeById(id);
+        boolean result = super.removeById(id);
+        // 移除所有节点上缓存的 AI 服务实例（实例绑定了该应用的对话记忆）
+        aiCodeGeneratorServiceFactory.invalidateAiCodeGeneratorService(appId);
+        return result;
+    }
+
+    /**
+     * 更新应用：代码生成类型变更时，移除所有节点上缓存的 AI 服务实例
+     *
+     * @param app 应用
+     * @return 是否成功
+     */
+    @Override
+    public boolean updateById(App app) {
+        boolean result = super.updateById(app);
+        if (result && app.getId() != null && StrUtil.isNotBlank(app.getCodeGenType())) {
+            aiCodeGeneratorServiceFactory.invalidateAiCodeGeneratorService(app.getId());
+        }
+        return result;
     }
 
 
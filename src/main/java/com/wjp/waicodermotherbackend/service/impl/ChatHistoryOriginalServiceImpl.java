@@ -4,22 +4,34 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.json.JSONUtil;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.wjp.waicodermotherbackend.ai.memory.ChatMemoryVersion;
+import com.wjp.waicodermotherbackend.ai.memory.ToolCallHistoryCompactor;
 import com.wjp.waicodermotherbackend.ai.model.message.ToolExecutedMessage;
 import com.wjp.waicodermotherbackend.ai.model.message.ToolRequestMessage;
+import com.wjp.waicodermotherbackend.config.ChatHistoryCompactionConfig;
+import com.wjp.waicodermotherbackend.config.ChatSummaryConfig;
+import com.wjp.waicodermotherbackend.config.ConversationEventConfig;
+import com.wjp.waicodermotherbackend.core.history.ConversationEventProjection;
 import com.wjp.waicodermotherbackend.exception.ErrorCode;
 import com.wjp.waicodermotherbackend.exception.ThrowUtils;
 import com.wjp.waicodermotherbackend.model.entity.ChatHistoryOriginal;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistorySummary;
+import com.wjp.waicodermotherbackend.model.entity.ConversationEvent;
 import com.wjp.waicodermotherbackend.mapper.ChatHistoryOriginalMapper;
 import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
 import com.wjp.waicodermotherbackend.service.ChatHistoryOriginalService;
+import com.wjp.waicodermotherbackend.service.ChatHistorySummaryService;
+import com.wjp.waicodermotherbackend.service.ConversationEventService;
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -34,6 +46,24 @@ import java.util.stream.Stream;
 @Slf4j
 public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOriginalMapper, ChatHistoryOriginal>  implements ChatHistoryOriginalService{
 
+    @Resource
+    private ChatHistoryCompactionConfig chatHistoryCompactionConfig;
+
+    @Resource
+    private ChatSummaryConfig chatSummaryConfig;
+
+    @Resource
+    private ChatHistorySummaryService chatHistorySummaryService;
+
+    @Resource
+    private ChatMemoryVersion chatMemoryVersion;
+
+    @Resource
+    private ConversationEventConfig conversationEventConfig;
+
+    @Resource
+    private ConversationEventService conversationEventService;
+
     /**
      * 加载对话历史
      * @param appId 应用ID
@@ -62,7 +92,10 @@ public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOrigi
                 .userId(userId)
                 .build();
 
-        return this.save(chatHistoryOriginal);
+        boolean result = saveOriginals(List.of(chatHistoryOriginal));
+        // 不经过流式生成写入的消息不在 Redis 对话记忆中
+        chatMemoryVersion.bump(appId, false);
+        return result;
     }
 
     /**
@@ -89,7 +122,24 @@ public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOrigi
         }
 
         // 3、批量入库
-        return this.saveBatch(validMessage);
+        boolean result = saveOriginals(validMessage);
+        validMessage.stream().map(ChatHistoryOriginal::getAppId).distinct()
+                .forEach(appId -> chatMemoryVersion.bump(appId, false));
+        return result;
+    }
+
+    /**
+     * 入库：事件日志模式下 chat_history_original 是 conversation_event 上的视图，不能直接插入，改为追加记忆回放投影的事件
+     */
+    private boolean saveOriginals(List<ChatHistoryOriginal> chatHistoryOriginals) {
+        if (!conversationEventConfig.isEnabled()) {
+            return chatHistoryOriginals.size() == 1 ? this.save(chatHistoryOriginals.get(0)) : this.saveBatch(chatHistoryOriginals);
+        }
+        List<ConversationEvent> events = chatHistoryOriginals.stream()
+                .map(original -> ConversationEventProjection.toEvent(original.getAppId(), original.getUserId(),
+                        original.getMessageType(), ConversationEventProjection.VISIBILITY_REPLAY, original.getMessage()))
+                .toList();
+        return conversationEventService.appendEvents(events) == events.size();
     }
 
     /**
@@ -113,20 +163,35 @@ public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOrigi
      * @return 加载结果
      */
     @Override
-    public int loadOriginalChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public int loadOriginalChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount) {
         try {
-            // 1、查询历史记录，考虑边缘记录类型
-            List<ChatHistoryOriginal> originalHistoryList = queryHistoryWithEdgeCheck(appId, maxCount);
-            if(CollUtil.isEmpty(originalHistoryList)) {
+            // 1、查询滚动摘要：已折叠到摘要中的消息不再回放
+            ChatHistorySummary summary = chatSummaryConfig.isEnabled() ? chatHistorySummaryService.getByAppId(appId) : null;
+            Long afterId = summary == null ? null : summary.getLastMessageId();
+
+            // 2、查询历史记录，考虑边缘记录类型和尚未入库的用户消息
+            List<ChatHistoryOriginal> originalHistoryList = queryHistoryWithEdgeCheck(appId, maxCount, afterId);
+            if(CollUtil.isEmpty(originalHistoryList) && summary == null) {
                 return 0;
             }
 
-            // 2、翻转列表，确保时间郑旭（老的在前，新的在后）
+            // 翻转列表，确保时间郑旭（老的在前，新的在后）
             originalHistoryList = originalHistoryList.reversed();
 
             // 3、先清理当前 app 的历史缓存，防止重复加载
             chatMemory.clear();
 
+            // 摘要作为对话记忆的前缀（不能用系统消息，会被 AI 服务自己的系统提示词替换）
+            if (summary != null) {
+                chatMemory.add(UserMessage.from("以下是我们之前对话的摘要：\n" + summary.getSummary()));
+                chatMemory.add(AiMessage.from("好的，我已了解之前的对话内容，会在此基础上继续。"));
+            }
+
+            // 压缩尚未入库压缩的旧文件内容，减少回放的 Token
+            if (chatHistoryCompactionConfig.isEnabled()) {
+                ToolCallHistoryCompactor.compact(originalHistoryList);
+            }
+
             // 4、遍历原始历史记录，根据类型将消息添加到记忆中
             int loadedCount = loadMessagesToMemory(originalHistoryList, chatMemory);
             log.info("成功为 appId：{} 加载 {} 条历史对话", appId, loadedCount);
@@ -139,111 +204,101 @@ public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOrigi
     }
 
 
+    /**
+     * 压缩应用的工具调用历史：同一个文件只保留最新一次 writeFile 的完整内容
+     * 只查询还没有压缩过的 writeFile 记录，每个文件的最新版本不会被修改
+     * @param appId 应用ID
+     * @return 被压缩的记录数
+     */
+    @Override
+    public int compactToolCallHistory(Long appId) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "appId不能为空");
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .select(ChatHistoryOriginal::getId, ChatHistoryOriginal::getMessage, ChatHistoryOriginal::getMessageType)
+                .eq(ChatHistoryOriginal::getAppId, appId)
+                .in(ChatHistoryOriginal::getMessageType,
+                        ChatHistoryMessageTypeEnum.TOOL_EXECUTION_REQUEST.getValue(),
+                        ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT.getValue())
+                .like(ChatHistoryOriginal::getMessage, ToolCallHistoryCompactor.WRITE_FILE_TOOL)
+                .notLike(ChatHistoryOriginal::getMessage, ToolCallHistoryCompactor.CONTENT_HASH_KEY)
+                .orderBy(ChatHistoryOriginal::getId, true);
+        List<ChatHistoryOriginal> historyList = this.list(queryWrapper);
+        List<ChatHistoryOriginal> changedList = ToolCallHistoryCompactor.compact(historyList);
+        for (ChatHistoryOriginal history : changedList) {
+            ChatHistoryOriginal updateHistory = new ChatHistoryOriginal();
+            updateHistory.setId(history.getId());
+            updateHistory.setMessage(history.getMessage());
+            this.updateById(updateHistory);
+        }
+        if (!changedList.isEmpty()) {
+            // 改写后的内容和 Redis 对话记忆不一致，下次重新加载
+            chatMemoryVersion.bump(appId, false);
+            log.info("appId: {} 压缩工具调用历史 {} 条", appId, changedList.size());
+        }
+        return changedList.size();
+    }
+
     /**
      * 查询历史记录，考虑边缘记录类型
      * 工具调用信息必须是成对并且有序的: tool_request -> tool_result，否则就会报错！
      * 错误信息：dev.langchain4j.exception.HttpException: {"error":{"message":"Messages with role 'tool' must be a response to a preceding message with 'tool_calls'","type":"invalid_request_error","param":null,"code":"invalid_request_error"}}
-     *     1. 边缘检查的意义在于当查询到的第 maxCount + 1 那条数据是 tool_result 时就丢失了一条 tool_request，导致报错
-     *     2. 这里改为了按 id 倒序查询，时间戳排序可能因为相近值而不稳定，当 tool_request 和 tool_result 的顺序加载错了会导致报错（MyBatis-flex的雪花算法生成的ID是严格递增的）
+     *
+     * 只查询一次：按 (appId, id) 倒序取 maxCount + 2 条（可能跳过的最新一条 + maxCount 条 + 1 条边界探测），
+     * 不做 COUNT 也不用 OFFSET，边界的工具请求 / 结果在内存中修正。
+     * 只查询加载记忆用到的列，走 (appId, isDelete, id) 索引倒序扫描，每行按主键回表读取 message。
+     * 按 id 倒序而不是时间，时间戳相近时顺序不稳定，tool_request 和 tool_result 的顺序加载错了同样会报错（自增 id 是严格递增的）
      *
      * @param appId 应用ID
      * @param maxCount 最大记录数
-     * @return 历史记录列表
+     * @param afterId 只查询 id 大于该值的记录（已折叠到摘要中的记录不再查询），为 null 时不限制
+     * @return 历史记录列表（新的在前）
      */
-    private List<ChatHistoryOriginal> queryHistoryWithEdgeCheck(Long appId, int maxCount) {
-        // 1、检查总记录数
-        QueryWrapper countQueryWrapper = QueryWrapper.create()
-                .eq(ChatHistoryOriginal::getAppId, appId);
-        long totalCount = this.count(countQueryWrapper);
-
-        // 2、如果总记录数小于等于1，直接返回空数组(因为我们要跳过第一条记录，todo: 我感觉是用户只发了消息，AI并没有做回复，所以参考性不大)
-        if(totalCount <= 1) {
-            log.debug("总记录数：({}) 小于等于1，没有足够的对话记录可加载", totalCount);
+    private List<ChatHistoryOriginal> queryHistoryWithEdgeCheck(Long appId, int maxCount, Long afterId) {
+        if (maxCount <= 0) {
             return Collections.emptyList();
         }
-
-        // 3、计算实际可查询的最大记录数(减去要跳过的第一条记录， todo: why)
-        // 原因：  - 第一条记录（最新的记录）通常是用户刚发送的消息
-        //  - 这条消息已经在当前对话中，不需要从历史记录中加载
-        //  - 因此跳过第一条，从第二条开始查询
-        long availableCount = totalCount - 1;
-
-        // todo: 这里不管大于小于的情况，都是会从 chatHistoryOriginal 表中查询 降序后的n条记录
-        // 4、如果总记录数小于等于 maxCount+1，则不需要检查边缘记录
-        if(totalCount <= maxCount + 1) {
-            log.debug("总记录数 ({}) 小于等于 maxCount+1 ({})，不需要检查边缘记录", totalCount, maxCount + 1);
-
-            // 直接查询所有可用记录（跳过最新的用户消息） todo: 是不是这里可以设置下最多 查询多少条
-            QueryWrapper queryWrapper = QueryWrapper.create()
-                    .eq(ChatHistoryOriginal::getAppId, appId)
-                    .orderBy(ChatHistoryOriginal::getId, false) // 使用id倒序，保证顺序性
-                    .limit(1, availableCount); // 跳过用户最新发送的消息
-            return this.list(queryWrapper);
-        }
-
-        // 5、如果总记录大于 maxCount+1，则需要检查边缘记录
-        // why:查询第 maxCount + 1 条记录（便于记录）
-        // 原因：如果 + 1的这条记录是 tool_result，那么就会丢失一条 tool_request，会导致 模型 无法解析。所以需要额外处理，确保工具调用的完整性
-        QueryWrapper edgeQueryWrapper = QueryWrapper.create()
-                .eq(ChatHistoryOriginal::getAppId, appId)
-                .orderBy(ChatHistoryOriginal::getId, false)
-                .limit(maxCount, 1); // 跳过 maxCount条消息，查询 第 maxCount + 1 条记录（todo：只有一条数据）
-
-        // 获取边缘记录
-        ChatHistoryOriginal edgeRecord = this.getOne(edgeQueryWrapper);
-
-        // 6、如果边缘记录是 TOOL_EXECUTION_RESULT 类型，则需要额外查询一条 TOOL_EXECUTION_REQUEST 记录
-        // 反之：如果 边缘记录是 TOOL_EXECUTION_REQUEST 类型，那么就可以确保 TOOL_EXECUTION_RESULT 也在 查询结果中
-        boolean needExtraRequest = false;
-        if(edgeRecord != null) {
-            String edgeMessageType = edgeRecord.getMessageType();
-            ChatHistoryMessageTypeEnum edgeMessageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(edgeMessageType);
-            // 查询 边缘消息是否是 工具调用结果
-            needExtraRequest = (edgeMessageTypeEnum == ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT);
-        }
-
-        // 7、计算实际需要查询的记录数 todo:不太懂
-        // 原因：如果 needExtraRequest 是 true，那就说明 他是 TOOL_EXECUTION_RESULT， 可能缺少 TOOL_EXECUTION_REQUEST，需要 + 1
-        // 否则，就是 maxCount
-        long actualLimit = Math.min(needExtraRequest ? maxCount + 1 : maxCount, availableCount);
-
-        // 8、查询历史记录 todo: 不太懂
         QueryWrapper queryWrapper = QueryWrapper.create()
+                .select(ChatHistoryOriginal::getId, ChatHistoryOriginal::getMessage, ChatHistoryOriginal::getMessageType)
                 .eq(ChatHistoryOriginal::getAppId, appId)
+                .gt(ChatHistoryOriginal::getId, afterId, afterId != null)
                 .orderBy(ChatHistoryOriginal::getId, false)
-                .limit(1, actualLimit); // 查询从第二条开始的 actualLimit 记录
+                .limit(maxCount + 2);
+        return trimHistoryWindow(this.list(queryWrapper), maxCount);
+    }
 
-        List<ChatHistoryOriginal> originalHistoryList = this.list(queryWrapper);
-        if(CollUtil.isEmpty(originalHistoryList)) {
+    /**
+     * 从倒序查询结果中截取要加载的记录
+     *  1、最新一条是用户消息时跳过：本轮消息已经入库（或者上一轮没有得到回复），AI 服务调用时会重新写入；
+     *     用户消息通过 write-behind 异步入库，最新一条是 AI 回复或工具结果时说明本轮消息还在队列中，不能跳过
+     *  2、最多保留 maxCount 条；最老的一条是 tool_result 时，带上紧挨着的 tool_request（多查的那一条）
+     *  3、仍然找不到对应请求的 tool_result（到了历史开头或摘要边界）直接丢弃
+     *
+     * @param newestFirst 按 id 倒序的查询结果，最多 maxCount + 2 条
+     * @param maxCount 最大记录数
+     * @return 要加载的记录（新的在前）
+     */
+    static List<ChatHistoryOriginal> trimHistoryWindow(List<ChatHistoryOriginal> newestFirst, int maxCount) {
+        int start = !newestFirst.isEmpty() && isMessageType(newestFirst.getFirst(), ChatHistoryMessageTypeEnum.USER) ? 1 : 0;
+        if (newestFirst.size() <= start) {
+            log.debug("总记录数：({}) 没有足够的对话记录可加载", newestFirst.size());
             return Collections.emptyList();
         }
-
-        // 9、检查是否需要 调整 maxCount todo: 是不是 TOOL_EXECUTION_REQUEST 要和 TOOL_EXECUTION_RESULT 进行绑定，才好让 AI进行了解之前的对话
-        if(needExtraRequest && originalHistoryList.size() <= maxCount) {
-            // 如果需要额外的 TOOL_EXECUTION_REQUEST 记录，并且实际返回的记录数小于 maxCount，则需要将 maxCount 调整为实际返回的记录数减1
-            log.warn("边缘记录是 TOOL_EXECUTION_RESULT 类型，单位获取到足够的记录包含 TOOL_EXECUTION_REQUEST，将 maxCount - 1");
-            maxCount = Math.max(0, maxCount - 1); // 确保maxCount 不小于 0
-
-            // 如果 maxCount 变为0，直接返回空列表
-            if(maxCount == 0) {
-                log.info("调整后 maxCount 为0，不加载任何历史记录");
-                return Collections.emptyList();
-            }
-
-            // 重新查询，使用调整后的 maxCount
-            actualLimit = Math.min(maxCount, availableCount);
-            queryWrapper = QueryWrapper.create()
-                    .eq(ChatHistoryOriginal::getAppId, appId)
-                    .orderBy(ChatHistoryOriginal::getId, false)
-                    .limit(1, actualLimit); // 查询从第二条开始的 actualLimit 记录
-
-            originalHistoryList = this.list(queryWrapper);
-
-            if(CollUtil.isEmpty(originalHistoryList)) {
-                return Collections.emptyList();
-            }
+        int end = Math.min(newestFirst.size(), start + maxCount);
+        List<ChatHistoryOriginal> window = new ArrayList<>(newestFirst.subList(start, end));
+        if (isMessageType(window.getLast(), ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT)
+                && end < newestFirst.size()
+                && isMessageType(newestFirst.get(end), ChatHistoryMessageTypeEnum.TOOL_EXECUTION_REQUEST)) {
+            window.add(newestFirst.get(end));
         }
-        return originalHistoryList;
+        while (!window.isEmpty() && isMessageType(window.getLast(), ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT)) {
+            log.warn("边缘记录是 TOOL_EXECUTION_RESULT 类型，找不到对应的 TOOL_EXECUTION_REQUEST，跳过该记录, id: {}", window.getLast().getId());
+            window.removeLast();
+        }
+        return window;
+    }
+
+    private static boolean isMessageType(ChatHistoryOriginal history, ChatHistoryMessageTypeEnum messageTypeEnum) {
+        return messageTypeEnum.getValue().equals(history.getMessageType());
     }
 
     /**
@@ -253,7 +308,7 @@ public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOrigi
      * @param chatMemory 聊天记忆
      * @return 加载的记录数
      */
-    private int loadMessagesToMemory(List<ChatHistoryOriginal> originalHistoryList, MessageWindowChatMemory chatMemory) {
+    private int loadMessagesToMemory(List<ChatHistoryOriginal> originalHistoryList, ChatMemory chatMemory) {
         int loadCount = 0;
         // 遍历原始历史记录，根据类型将消息添加到记忆中
         for (ChatHistoryOriginal history : originalHistoryList) {
@@ -5,7 +5,10 @@ import cn.hutool.core.util.StrUtil;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.wjp.waicodermotherbackend.ai.memory.ChatMemoryVersion;
+import com.wjp.waicodermotherbackend.config.ConversationEventConfig;
 import com.wjp.waicodermotherbackend.constant.UserConstant;
+import com.wjp.waicodermotherbackend.core.history.ConversationEventProjection;
 import com.wjp.waicodermotherbackend.exception.ErrorCode;
 import com.wjp.waicodermotherbackend.exception.ThrowUtils;
 import com.wjp.waicodermotherbackend.model.dto.chathistory.ChatHistoryQueryRequest;
@@ -14,18 +17,21 @@ import com.wjp.waicodermotherbackend.model.entity.ChatHistory;
 import com.wjp.waicodermotherbackend.mapper.ChatHistoryMapper;
 import com.wjp.waicodermotherbackend.model.entity.User;
 import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
+import com.wjp.waicodermotherbackend.model.vo.CursorPageVO;
 import com.wjp.waicodermotherbackend.service.AppService;
 import com.wjp.waicodermotherbackend.service.ChatHistoryService;
+import com.wjp.waicodermotherbackend.service.ConversationEventService;
 import com.wjp.waicodermotherbackend.service.UserService;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -44,6 +50,15 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Lazy
     private AppService appService;
 
+    @Resource
+    private ChatMemoryVersion chatMemoryVersion;
+
+    @Resource
+    private ConversationEventConfig conversationEventConfig;
+
+    @Resource
+    private ConversationEventService conversationEventService;
+
 
 
     /**
@@ -63,13 +78,23 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         // 验证消息类型是否有效
         ChatHistoryMessageTypeEnum messageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(messageType);
         ThrowUtils.throwIf(messageTypeEnum == null, ErrorCode.PARAMS_ERROR, "不支持的消息类型: " + messageType);
-        ChatHistory chatHistory = ChatHistory.builder()
-                .appId(appId)
-                .message(message)
-                .messageType(messageType)
-                .userId(userId)
-                .build();
-        return this.save(chatHistory);
+        boolean result;
+        if (conversationEventConfig.isEnabled()) {
+            // 事件日志模式：chat_history 是 conversation_event 上的视图，不能直接插入
+            result = conversationEventService.save(ConversationEventProjection.toEvent(
+                    appId, userId, messageType, ConversationEventProjection.VISIBILITY_DISPLAY, message));
+        } else {
+            ChatHistory chatHistory = ChatHistory.builder()
+                    .appId(appId)
+                    .message(message)
+                    .messageType(messageType)
+                    .userId(userId)
+                    .build();
+            result = this.save(chatHistory);
+        }
+        // 不经过流式生成写入的消息不在 Redis 对话记忆中
+        chatMemoryVersion.bump(appId, false);
+        return result;
     }
 
     /**
@@ -80,20 +105,21 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
      * @return 加载成功的消息数量
      */
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount) {
         try {
             // 参数校验
             if((appId < 0 || appId == null) && maxCount < 0 && chatMemory == null) {
                 return 0;
             }
-            // 整合查询条件
+            // 整合查询条件（多查一条：最新一条可能是本轮的用户消息；createTime 只精确到秒，用 id 保证同一秒内的顺序）
             QueryWrapper queryWrapper = QueryWrapper.create()
                     .eq(ChatHistory::getAppId, appId)
                     .orderBy(ChatHistory::getCreateTime, false)
-                    .limit(1, maxCount);
+                    .orderBy(ChatHistory::getId, false)
+                    .limit(maxCount + 1);
 
             // 找到对应app最近的历史记录(最新的数据在前面)
-            List<ChatHistory> historyList = this.list(queryWrapper);
+            List<ChatHistory> historyList = skipPendingUserMessage(this.list(queryWrapper), maxCount);
 
             if(CollUtil.isEmpty(historyList)) {
                 return 0;
@@ -161,6 +187,25 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         }
     }
 
+    /**
+     * 去掉本轮的用户消息，最多保留 maxCount 条
+     * 用户消息通过 write-behind 异步入库，加载对话记忆时不一定已经落库：
+     *  1、最新一条是用户消息：本轮消息已经入库（或者上一轮没有得到回复），AI 服务调用时会重新写入，跳过
+     *  2、最新一条是 AI 回复：本轮消息还在队列中，不能跳过，否则会丢掉上一轮的回复
+     *
+     * @param newestFirst 按时间倒序的查询结果，最多 maxCount + 1 条
+     * @param maxCount 最大记录数
+     * @return 要加载的记录（新的在前）
+     */
+    static List<ChatHistory> skipPendingUserMessage(List<ChatHistory> newestFirst, int maxCount) {
+        if (CollUtil.isEmpty(newestFirst)) {
+            return new ArrayList<>();
+        }
+        int start = ChatHistoryMessageTypeEnum.USER.getValue().equals(newestFirst.getFirst().getMessageType()) ? 1 : 0;
+        int end = Math.min(newestFirst.size(), start + maxCount);
+        return new ArrayList<>(newestFirst.subList(start, Math.max(start, end)));
+    }
+
     /**
      * 根据应用Id删除对话消息
      * @param appId 应用Id
@@ -186,15 +231,7 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     public Page<ChatHistory> listAppChatHistoryByPage(Long appId, int pageSize,
                                                       LocalDateTime lastCreateTime,
                                                       User loginUser) {
-        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
-        ThrowUtils.throwIf(pageSize <= 0 || pageSize > 50, ErrorCode.PARAMS_ERROR, "页面大小必须在1-50之间");
-        ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR);
-        // 验证权限：只有应用创建者和管理员可以查看
-        App app = appService.getById(appId);
-        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
-        boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
-        boolean isCreator = app.getUserId().equals(loginUser.getId());
-        ThrowUtils.throwIf(!isAdmin && !isCreator, ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
+        checkViewAuth(appId, pageSize, loginUser);
         // 构建查询条件
         ChatHistoryQueryRequest queryRequest = new ChatHistoryQueryRequest();
         queryRequest.setAppId(appId);
@@ -205,6 +242,93 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     }
 
 
+    /**
+     * 游标分页获取应用对话历史（不统计总数）
+     * @param appId 应用Id
+     * @param pageSize 页面大小
+     * @param lastCreateTime 上一页最后一条记录的创建时间
+     * @param lastId 上一页最后一条记录的 id
+     * @param loginUser 登录用户
+     * @return 游标分页结果
+     */
+    @Override
+    public CursorPageVO<ChatHistory> listAppChatHistoryByCursor(Long appId, int pageSize,
+                                                                LocalDateTime lastCreateTime, Long lastId,
+                                                                User loginUser) {
+        checkViewAuth(appId, pageSize, loginUser);
+        ChatHistoryQueryRequest queryRequest = new ChatHistoryQueryRequest();
+        queryRequest.setAppId(appId);
+        queryRequest.setLastCreateTime(lastCreateTime);
+        queryRequest.setLastId(lastId);
+        return listByCursor(queryRequest, pageSize);
+    }
+
+    /**
+     * 游标分页查询对话历史（管理员，不统计总数）
+     * @param chatHistoryQueryRequest 查询条件（游标为 lastCreateTime、lastId）
+     * @return 游标分页结果
+     */
+    @Override
+    public CursorPageVO<ChatHistory> listChatHistoryByCursor(ChatHistoryQueryRequest chatHistoryQueryRequest) {
+        ThrowUtils.throwIf(chatHistoryQueryRequest == null, ErrorCode.PARAMS_ERROR);
+        int pageSize = chatHistoryQueryRequest.getPageSize();
+        ThrowUtils.throwIf(pageSize <= 0 || pageSize > 50, ErrorCode.PARAMS_ERROR, "页面大小必须在1-50之间");
+        return listByCursor(chatHistoryQueryRequest, pageSize);
+    }
+
+    /**
+     * 游标分页查询
+     * 按 (createTime, id) 倒序，游标条件为 createTime < ? or (createTime = ? and id < ?)，创建时间相同的记录不会被跳过或重复；
+     * 多查一条判断是否还有下一页，不执行 COUNT（走 idx_appId_createTime / idx_createTime，二级索引自带主键 id）
+     *
+     * @param chatHistoryQueryRequest 查询条件
+     * @param pageSize 页面大小
+     * @return 游标分页结果
+     */
+    private CursorPageVO<ChatHistory> listByCursor(ChatHistoryQueryRequest chatHistoryQueryRequest, int pageSize) {
+        QueryWrapper queryWrapper = QueryWrapper.create();
+        appendFilters(queryWrapper, chatHistoryQueryRequest);
+        LocalDateTime lastCreateTime = chatHistoryQueryRequest.getLastCreateTime();
+        Long lastId = chatHistoryQueryRequest.getLastId();
+        if (lastCreateTime != null && lastId != null) {
+            queryWrapper.and("(createTime < ? or (createTime = ? and id < ?))", lastCreateTime, lastCreateTime, lastId);
+        } else if (lastCreateTime != null) {
+            // 兼容只传创建时间的旧游标
+            queryWrapper.lt("createTime", lastCreateTime);
+        }
+        queryWrapper.orderBy("createTime", false)
+                .orderBy("id", false)
+                .limit(pageSize + 1);
+        List<ChatHistory> records = this.list(queryWrapper);
+        boolean hasMore = records.size() > pageSize;
+        if (hasMore) {
+            records = records.subList(0, pageSize);
+        }
+        CursorPageVO<ChatHistory> cursorPageVO = new CursorPageVO<>();
+        cursorPageVO.setRecords(records);
+        cursorPageVO.setHasMore(hasMore);
+        if (!records.isEmpty()) {
+            ChatHistory lastRecord = records.getLast();
+            cursorPageVO.setLastCreateTime(lastRecord.getCreateTime());
+            cursorPageVO.setLastId(lastRecord.getId());
+        }
+        return cursorPageVO;
+    }
+
+    /**
+     * 校验查看应用对话历史的权限：只有应用创建者和管理员可以查看
+     */
+    private void checkViewAuth(Long appId, int pageSize, User loginUser) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        ThrowUtils.throwIf(pageSize <= 0 || pageSize > 50, ErrorCode.PARAMS_ERROR, "页面大小必须在1-50之间");
+        ThrowUtils.throwIf(loginUser == null, ErrorCode.NOT_LOGIN_ERROR);
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
+        boolean isCreator = app.getUserId().equals(loginUser.getId());
+        ThrowUtils.throwIf(!isAdmin && !isCreator, ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
+    }
+
     /**
      * 获取查询包装类 【游标】
      *
@@ -217,20 +341,11 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         if (chatHistoryQueryRequest == null) {
             return queryWrapper;
         }
-        Long id = chatHistoryQueryRequest.getId();
-        String message = chatHistoryQueryRequest.getMessage();
-        String messageType = chatHistoryQueryRequest.getMessageType();
-        Long appId = chatHistoryQueryRequest.getAppId();
-        Long userId = chatHistoryQueryRequest.getUserId();
         LocalDateTime lastCreateTime = chatHistoryQueryRequest.getLastCreateTime();
         String sortField = chatHistoryQueryRequest.getSortField();
         String sortOrder = chatHistoryQueryRequest.getSortOrder();
         // 拼接查询条件
-        queryWrapper.eq("id", id)
-                .like("message", message)
-                .eq("messageType", messageType)
-                .eq("appId", appId)
-                .eq("userId", userId);
+        appendFilters(queryWrapper, chatHistoryQueryRequest);
         // 游标查询逻辑 - 只使用 createTime 作为游标
         if (lastCreateTime != null) {
             queryWrapper.lt("createTime", lastCreateTime);
@@ -245,5 +360,16 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         return queryWrapper;
     }
 
+    /**
+     * 拼接过滤条件（值为空的条件不会生效）
+     */
+    private void appendFilters(QueryWrapper queryWrapper, ChatHistoryQueryRequest chatHistoryQueryRequest) {
+        queryWrapper.eq("id", chatHistoryQueryRequest.getId())
+                .like("message", chatHistoryQueryRequest.getMessage())
+                .eq("messageType", chatHistoryQueryRequest.getMessageType())
+                .eq("appId", chatHistoryQueryRequest.getAppId())
+                .eq("userId", chatHistoryQueryRequest.getUserId());
+    }
+
 
 }
@@ -0,0 +1,75 @@
+package com.wjp.waicodermotherbackend.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.mybatisflex.core.query.QueryWrapper;
+import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.wjp.waicodermotherbackend.exception.ErrorCode;
+import com.wjp.waicodermotherbackend.exception.ThrowUtils;
+import com.wjp.waicodermotherbackend.mapper.ChatHistorySummaryMapper;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistorySummary;
+import com.wjp.waicodermotherbackend.service.ChatHistorySummaryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * 对话摘要 服务层实现。
+ *
+ * @author <a href="https://github.com/wjp527">π</a>
+ */
+@Service
+@Slf4j
+public class ChatHistorySummaryServiceImpl extends ServiceImpl<ChatHistorySummaryMapper, ChatHistorySummary> implements ChatHistorySummaryService {
+
+    /**
+     * 获取应用的滚动摘要
+     * @param appId 应用ID
+     * @return 摘要，没有时返回 null
+     */
+    @Override
+    public ChatHistorySummary getByAppId(Long appId) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "appId不能为空");
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(ChatHistorySummary::getAppId, appId);
+        return this.getOne(queryWrapper);
+    }
+
+    /**
+     * 保存应用的滚动摘要（不存在则新增，存在则覆盖）
+     * @param appId 应用ID
+     * @param summary 摘要内容
+     * @param lastMessageId 已折叠的最后一条 chat_history_original 记录ID
+     * @param messageCount 已折叠的消息总数
+     * @return 保存结果
+     */
+    @Override
+    public boolean saveSummary(Long appId, String summary, Long lastMessageId, int messageCount) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "appId不能为空");
+        ThrowUtils.throwIf(StrUtil.isBlank(summary), ErrorCode.PARAMS_ERROR, "摘要不能为空");
+        ThrowUtils.throwIf(lastMessageId == null || lastMessageId <= 0, ErrorCode.PARAMS_ERROR, "lastMessageId不能为空");
+        ChatHistorySummary chatHistorySummary = ChatHistorySummary.builder()
+                .appId(appId)
+                .summary(summary)
+                .lastMessageId(lastMessageId)
+                .messageCount(messageCount)
+                .build();
+        ChatHistorySummary oldSummary = getByAppId(appId);
+        if (oldSummary == null) {
+            return this.save(chatHistorySummary);
+        }
+        chatHistorySummary.setId(oldSummary.getId());
+        return this.updateById(chatHistorySummary);
+    }
+
+    /**
+     * 根据 appId 删除摘要
+     * @param appId 应用ID
+     * @return 删除结果
+     */
+    @Override
+    public boolean deleteByAppId(Long appId) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "appId不能为空");
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(ChatHistorySummary::getAppId, appId);
+        return this.remove(queryWrapper);
+    }
+}
@@ -0,0 +1,34 @@
+package com.wjp.waicodermotherbackend.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import com.mybatisflex.spring.service.impl.ServiceImpl;
+import com.wjp.waicodermotherbackend.mapper.ConversationEventMapper;
+import com.wjp.waicodermotherbackend.model.entity.ConversationEvent;
+import com.wjp.waicodermotherbackend.service.ConversationEventService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 对话事件 服务层实现。
+ *
+ * @author <a href="https://github.com/wjp527">π</a>
+ */
+@Service
+@Slf4j
+public class ConversationEventServiceImpl extends ServiceImpl<ConversationEventMapper, ConversationEvent> implements ConversationEventService {
+
+    /**
+     * 批量追加对话事件（多行插入）
+     * @param events 对话事件
+     * @return 插入条数
+     */
+    @Override
+    public int appendEvents(List<ConversationEvent> events) {
+        if (CollUtil.isEmpty(events)) {
+            return 0;
+        }
+        return this.getMapper().insertBatch(events);
+    }
+}
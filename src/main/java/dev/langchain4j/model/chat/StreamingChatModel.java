@@ -68,9 +68,22 @@ public interface StreamingChatModel {
 
             @Override
             public void onError(Throwable error) {
-                ChatModelListenerUtils.onError(error, finalChatRequest, provider(), attributes, listeners);
+                // errors caused by aborting a cancelled stream are not model errors
+                if (!handler.isCancelled()) {
+                    ChatModelListenerUtils.onError(error, finalChatRequest, provider(), attributes, listeners);
+                }
                 handler.onError(error);
             }
+
+            @Override
+            public boolean isCancelled() {
+                return handler.isCancelled();
+            }
+
+            @Override
+            public Runnable onCancel(Runnable hook) {
+                return handler.onCancel(hook);
+            }
         };
 
         onRequest(finalChatRequest, provider(), attributes, listeners);
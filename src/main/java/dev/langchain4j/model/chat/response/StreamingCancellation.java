@@ -0,0 +1,58 @@
+package dev.langchain4j.model.chat.response;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cancellation signal of one streaming AI service call, shared by every model round of the call
+ * (including the rounds of the tool execution loop).
+ * <p>
+ * Besides being polled, the signal runs registered hooks as soon as it is cancelled, so the HTTP layer
+ * can close the response stream immediately instead of waiting for the next read.
+ */
+public final class StreamingCancellation {
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private final List<Runnable> hooks = new CopyOnWriteArrayList<>();
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Cancels the call and runs the registered hooks on the calling thread.
+     */
+    public void cancel() {
+        if (!cancelled.compareAndSet(false, true)) {
+            return;
+        }
+        for (Runnable hook : hooks) {
+            runOnce(hook);
+        }
+    }
+
+    /**
+     * Registers a hook that runs once when the call is cancelled, immediately if it already is.
+     *
+     * @return a handle that unregisters the hook, to be run once the hook is no longer needed
+     */
+    public Runnable onCancel(Runnable hook) {
+        hooks.add(hook);
+        if (cancelled.get()) {
+            runOnce(hook);
+        }
+        return () -> hooks.remove(hook);
+    }
+
+    /**
+     * A hook may be seen both by {@link #cancel()} and by a concurrent {@link #onCancel(Runnable)};
+     * whoever removes it runs it.
+     */
+    private void runOnce(Runnable hook) {
+        if (hooks.remove(hook)) {
+            hook.run();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package dev.langchain4j.model.chat.response;
+
+/**
+ * Carries the handler of the current streaming request from the chat model down to the HTTP layer,
+ * which uses its cancellation signal.
+ * <p>
+ * The handler is bound only while the streaming HTTP request is being submitted, so an HTTP client
+ * can capture it and close the response body as soon as the request is cancelled
+ * (see {@link StreamingChatResponseHandler#onCancel(Runnable)}).
+ */
+public final class StreamingCancellationContext {
+
+    private static final ThreadLocal<StreamingChatResponseHandler> CURRENT = new ThreadLocal<>();
+
+    private StreamingCancellationContext() {
+    }
+
+    public static void bind(StreamingChatResponseHandler handler) {
+        CURRENT.set(handler);
+    }
+
+    /**
+     * @return the handler bound to the current thread, or {@code null} if none
+     */
+    public static StreamingChatResponseHandler current() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
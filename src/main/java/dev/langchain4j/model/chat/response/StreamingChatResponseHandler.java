@@ -58,4 +58,27 @@ public interface StreamingChatResponseHandler {
      * @param error The error that occurred
      */
     void onError(Throwable error);
+
+    /**
+     * Whether the consumer of this handler is no longer interested in the response.
+     * A cancelled handler allows the model to abort the underlying HTTP stream.
+     *
+     * @return {@code true} if the streaming should be aborted
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Registers a hook that runs as soon as this handler is cancelled (immediately if it already is),
+     * so the model can abort the underlying HTTP stream without waiting for the next read.
+     * Handlers that are never cancelled ignore the hook.
+     *
+     * @param hook the hook to run once on cancellation
+     * @return a handle that unregisters the hook
+     */
+    default Runnable onCancel(Runnable hook) {
+        return () -> {
+        };
+    }
 }
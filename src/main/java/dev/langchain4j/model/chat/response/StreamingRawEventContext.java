@@ -0,0 +1,33 @@
+package dev.langchain4j.model.chat.response;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries an observer for the raw data of streaming events from the chat model down to the HTTP layer.
+ * <p>
+ * Typed responses drop provider-specific fields (for example DeepSeek's {@code prompt_cache_hit_tokens}),
+ * so the model binds an observer while the streaming HTTP request is being submitted and the HTTP client
+ * forwards the data of every event to it.
+ */
+public final class StreamingRawEventContext {
+
+    private static final ThreadLocal<Consumer<String>> CURRENT = new ThreadLocal<>();
+
+    private StreamingRawEventContext() {
+    }
+
+    public static void bind(Consumer<String> observer) {
+        CURRENT.set(observer);
+    }
+
+    /**
+     * @return the raw event observer bound to the current thread, or {@code null} if none
+     */
+    public static Consumer<String> current() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
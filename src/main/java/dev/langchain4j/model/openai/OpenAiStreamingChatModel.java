@@ -1,6 +1,7 @@
 package dev.langchain4j.model.openai;
 
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
 import dev.langchain4j.http.client.HttpClientBuilder;
 import dev.langchain4j.internal.ExceptionMapper;
 import dev.langchain4j.internal.ToolExecutionRequestBuilder;
@@ -12,13 +13,16 @@ import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.request.ChatRequestParameters;
 import dev.langchain4j.model.chat.request.DefaultChatRequestParameters;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingCancellationContext;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingRawEventContext;
 import dev.langchain4j.model.openai.internal.OpenAiClient;
 import dev.langchain4j.model.openai.internal.chat.*;
 import dev.langchain4j.model.openai.internal.shared.StreamOptions;
 import dev.langchain4j.model.openai.spi.OpenAiStreamingChatModelBuilderFactory;
 
 import java.time.Duration;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
@@ -108,7 +112,7 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
     @Override
     public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
 
-        OpenAiChatRequestParameters parameters = (OpenAiChatRequestParameters) chatRequest.parameters();
+        OpenAiChatRequestParameters parameters = stableToolOrder((OpenAiChatRequestParameters) chatRequest.parameters());
         validate(parameters);
 
         ChatCompletionRequest openAiRequest =
@@ -122,8 +126,48 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
         OpenAiStreamingResponseBuilder openAiResponseBuilder = new OpenAiStreamingResponseBuilder();
         ToolExecutionRequestBuilder toolBuilder = new ToolExecutionRequestBuilder();
 
+        // bind the cancellation signal so that the HTTP client can abort reading the stream
+        StreamingCancellationContext.bind(handler);
+        // let the response builder see provider-specific usage fields (e.g. prompt cache hits)
+        StreamingRawEventContext.bind(openAiResponseBuilder::appendRawEvent);
+        try {
+            streamChatCompletion(openAiRequest, openAiResponseBuilder, toolBuilder, handler);
+        } finally {
+            StreamingCancellationContext.clear();
+            StreamingRawEventContext.clear();
+        }
+    }
+
+    /**
+     * Sorts tool specifications by name so that the serialized request is byte-stable across calls,
+     * JVMs and nodes; providers only reuse their prompt prefix cache when the prefix is identical.
+     */
+    private static OpenAiChatRequestParameters stableToolOrder(OpenAiChatRequestParameters parameters) {
+        List<ToolSpecification> toolSpecifications = parameters.toolSpecifications();
+        if (toolSpecifications == null || toolSpecifications.size() < 2) {
+            return parameters;
+        }
+        List<ToolSpecification> sorted = toolSpecifications.stream()
+                .sorted(Comparator.comparing(ToolSpecification::name))
+                .toList();
+        if (sorted.equals(toolSpecifications)) {
+            return parameters;
+        }
+        return OpenAiChatRequestParameters.builder()
+                .overrideWith(parameters)
+                .toolSpecifications(sorted)
+                .build();
+    }
+
+    private void streamChatCompletion(ChatCompletionRequest openAiRequest,
+                                      OpenAiStreamingResponseBuilder openAiResponseBuilder,
+                                      ToolExecutionRequestBuilder toolBuilder,
+                                      StreamingChatResponseHandler handler) {
         client.chatCompletion(openAiRequest)
                 .onPartialResponse(partialResponse -> {
+                    if (handler.isCancelled()) {
+                        return;
+                    }
                     openAiResponseBuilder.append(partialResponse);
                     handle(partialResponse, toolBuilder, handler);
                 })
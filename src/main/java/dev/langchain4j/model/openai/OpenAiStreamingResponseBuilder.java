@@ -3,6 +3,7 @@ package dev.langchain4j.model.openai;
 import dev.langchain4j.Internal;
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.internal.Json;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.openai.internal.chat.*;
 import dev.langchain4j.model.openai.internal.completion.CompletionChoice;
@@ -31,6 +32,8 @@ import static java.util.stream.Collectors.toList;
 @Internal
 public class OpenAiStreamingResponseBuilder {
 
+    private static final String PROMPT_CACHE_HIT_TOKENS = "prompt_cache_hit_tokens";
+
     private final StringBuffer contentBuilder = new StringBuffer();
 
     private final StringBuffer toolNameBuilder = new StringBuffer();
@@ -45,6 +48,7 @@ public class OpenAiStreamingResponseBuilder {
     private final AtomicReference<String> systemFingerprint = new AtomicReference<>();
     private final AtomicReference<TokenUsage> tokenUsage = new AtomicReference<>();
     private final AtomicReference<FinishReason> finishReason = new AtomicReference<>();
+    private final AtomicReference<Integer> providerCachedTokens = new AtomicReference<>();
 
     public void append(ChatCompletionResponse partialResponse) {
         if (partialResponse == null) {
@@ -135,6 +139,20 @@ public class OpenAiStreamingResponseBuilder {
         }
     }
 
+    /**
+     * Reads prompt cache hits from the raw data of a streaming event.
+     * DeepSeek reports them as {@code usage.prompt_cache_hit_tokens}, which the typed {@link Usage} does not map.
+     */
+    public void appendRawEvent(String data) {
+        if (data == null || !data.contains(PROMPT_CACHE_HIT_TOKENS)) {
+            return;
+        }
+        Object usage = Json.fromJson(data, Map.class).get("usage");
+        if (usage instanceof Map<?, ?> usageMap && usageMap.get(PROMPT_CACHE_HIT_TOKENS) instanceof Number hitTokens) {
+            this.providerCachedTokens.set(hitTokens.intValue());
+        }
+    }
+
     public void append(CompletionResponse partialResponse) {
         if (partialResponse == null) {
             return;
@@ -171,7 +189,7 @@ public class OpenAiStreamingResponseBuilder {
         OpenAiChatResponseMetadata chatResponseMetadata = OpenAiChatResponseMetadata.builder()
                 .id(id.get())
                 .modelName(model.get())
-                .tokenUsage(tokenUsage.get())
+                .tokenUsage(withProviderCachedTokens(tokenUsage.get()))
                 .finishReason(finishReason.get())
                 .created(created.get())
                 .serviceTier(serviceTier.get())
@@ -227,6 +245,25 @@ public class OpenAiStreamingResponseBuilder {
         return null;
     }
 
+    private TokenUsage withProviderCachedTokens(TokenUsage tokenUsage) {
+        Integer cachedTokens = providerCachedTokens.get();
+        if (cachedTokens == null || !(tokenUsage instanceof OpenAiTokenUsage openAiTokenUsage)) {
+            return tokenUsage;
+        }
+        if (openAiTokenUsage.inputTokensDetails() != null && openAiTokenUsage.inputTokensDetails().cachedTokens() != null) {
+            return tokenUsage;
+        }
+        return OpenAiTokenUsage.builder()
+                .inputTokenCount(openAiTokenUsage.inputTokenCount())
+                .inputTokensDetails(OpenAiTokenUsage.InputTokensDetails.builder()
+                        .cachedTokens(cachedTokens)
+                        .build())
+                .outputTokenCount(openAiTokenUsage.outputTokenCount())
+                .outputTokensDetails(openAiTokenUsage.outputTokensDetails())
+                .totalTokenCount(openAiTokenUsage.totalTokenCount())
+                .build();
+    }
+
     private static class ToolExecutionRequestBuilder {
 
         private final StringBuffer idBuilder = new StringBuffer();
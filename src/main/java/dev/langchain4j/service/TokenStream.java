@@ -80,4 +80,13 @@ public interface TokenStream {
      * Will send a request to LLM and start response streaming.
      */
     void start();
+
+    /**
+     * Cancels the stream: the underlying HTTP stream is aborted, pending tool executions are not followed
+     * by another model call and no further callbacks are invoked.
+     * <p>
+     * Has no effect if the stream has not been started or has already completed.
+     */
+    default void cancel() {
+    }
 }
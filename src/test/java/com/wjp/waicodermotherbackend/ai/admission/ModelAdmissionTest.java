@@ -0,0 +1,88 @@
+package com.wjp.waicodermotherbackend.ai.admission;
+
+import com.wjp.waicodermotherbackend.config.LlmAdmissionConfig;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RateLimitException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelAdmissionTest {
+
+    private static ModelAdmission.Waiter waiter(List<String> granted, String name, Long userId, Integer priority) {
+        return new ModelAdmission.Waiter(new AdmissionRequest(null, userId, priority), () -> granted.add(name), position -> {
+        });
+    }
+
+    @Test
+    void grantHigherPriorityFirst() {
+        ModelAdmission admission = new ModelAdmission("test", new LlmAdmissionConfig.ModelLimit(1, 1, 4, 1000), 0.5, 10, 0.05);
+        List<String> granted = new ArrayList<>();
+        admission.enqueue(waiter(granted, "running", 1L, 0));
+        admission.enqueue(waiter(granted, "normal", 2L, 0));
+        admission.enqueue(waiter(granted, "vip", 3L, 99));
+        assertEquals(List.of("running"), granted);
+        assertEquals(2, admission.getQueueSize());
+
+        admission.release();
+        assertEquals(List.of("running", "vip"), granted);
+    }
+
+    @Test
+    void grantUsersFairlyWhenOneUserFloodsTheQueue() {
+        ModelAdmission admission = new ModelAdmission("test", new LlmAdmissionConfig.ModelLimit(2, 1, 4, 1000), 0.5, 10, 0.05);
+        List<String> granted = new ArrayList<>();
+        // 用户 1 占满两个并发，又排了一个；用户 2 后到
+        admission.enqueue(waiter(granted, "user1-a", 1L, 0));
+        admission.enqueue(waiter(granted, "user1-b", 1L, 0));
+        admission.enqueue(waiter(granted, "user1-c", 1L, 0));
+        admission.enqueue(waiter(granted, "user2-a", 2L, 0));
+
+        // 用户 1 仍有一个请求在执行，后到的用户 2 先放行
+        admission.release();
+        assertEquals("user2-a", granted.get(2));
+        admission.release();
+        assertEquals("user1-c", granted.get(3));
+    }
+
+    @Test
+    void lowPriorityIsNotStarvedByContinuousHighPriorityLoad() {
+        ModelAdmission admission = new ModelAdmission("test", new LlmAdmissionConfig.ModelLimit(1, 1, 1, 1000), 0.5, 100, 0.05);
+        List<String> granted = new ArrayList<>();
+        admission.enqueue(waiter(granted, "running", 1L, 0));
+        admission.enqueue(waiter(granted, "normal", 2L, 0));
+        // 精选应用持续有新请求到达：每放行一个就再排一个
+        int vipRequests = 0;
+        while (!granted.contains("normal") && vipRequests < 50) {
+            admission.enqueue(waiter(granted, "vip-" + vipRequests, 3L, 99));
+            vipRequests++;
+            admission.release();
+        }
+        assertTrue(granted.contains("normal"));
+        // 按权重（约 6 倍）多分到并发
+        assertTrue(vipRequests > 3 && vipRequests < 10, "vip 请求数: " + vipRequests);
+    }
+
+    @Test
+    void detectRateLimitByStatusCodeOnly() {
+        assertTrue(LlmAdmissionController.isRateLimited(new RuntimeException(new HttpException(429, "Too Many Requests"))));
+        assertTrue(LlmAdmissionController.isRateLimited(new RateLimitException("rate limited")));
+        assertFalse(LlmAdmissionController.isRateLimited(new HttpException(400, "max_tokens 4290 exceeds limit")));
+        assertFalse(LlmAdmissionController.isRateLimited(new IllegalStateException("request id 429abc failed")));
+    }
+
+    @Test
+    void adaptLimitWithAimd() {
+        ModelAdmission admission = new ModelAdmission("test", new LlmAdmissionConfig.ModelLimit(4, 1, 8, 1000), 0.5, 10, 0.05);
+        admission.onOverload();
+        assertEquals(2, admission.currentLimit());
+        for (int i = 0; i < 10; i++) {
+            admission.onLatency(100);
+        }
+        assertTrue(admission.currentLimit() > 2);
+        assertTrue(admission.currentLimit() <= 8);
+    }
+}
@@ -0,0 +1,184 @@
+package com.wjp.waicodermotherbackend.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageType;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBudgetChatMemoryTest {
+
+    /**
+     * 测试用估算器：每个字符算 1 个 Token
+     */
+    private static final TokenCountEstimator CHAR_ESTIMATOR = new TokenCountEstimator() {
+        @Override
+        public int estimateTokenCountInText(String text) {
+            return text.length();
+        }
+
+        @Override
+        public int estimateTokenCountInMessage(ChatMessage message) {
+            return switch (message) {
+                case UserMessage userMessage -> userMessage.singleText().length();
+                case AiMessage aiMessage -> (aiMessage.text() == null ? 0 : aiMessage.text().length())
+                        + aiMessage.toolExecutionRequests().stream().mapToInt(request -> request.arguments().length()).sum();
+                case ToolExecutionResultMessage resultMessage -> resultMessage.text().length();
+                case SystemMessage systemMessage -> systemMessage.text().length();
+                default -> 0;
+            };
+        }
+
+        @Override
+        public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+            int total = 0;
+            for (ChatMessage message : messages) {
+                total += estimateTokenCountInMessage(message);
+            }
+            return total;
+        }
+    };
+
+    private static TokenBudgetChatMemory newMemory(int maxTokens) {
+        return TokenBudgetChatMemory.builder()
+                .id(1L)
+                .chatMemoryStore(new InMemoryChatMemoryStore())
+                .maxTokens(maxTokens, CHAR_ESTIMATOR)
+                .build();
+    }
+
+    private static AiMessage toolRequest(String id, String arguments) {
+        return AiMessage.from(List.of(ToolExecutionRequest.builder().id(id).name("writeFile").arguments(arguments).build()));
+    }
+
+    @Test
+    void evictOldestMessagesByTokens() {
+        TokenBudgetChatMemory chatMemory = newMemory(10);
+        chatMemory.add(SystemMessage.from("sys"));
+        chatMemory.add(UserMessage.from("aaaa"));
+        chatMemory.add(AiMessage.from("bbbb"));
+        chatMemory.add(UserMessage.from("cc"));
+        List<ChatMessage> messages = chatMemory.messages();
+        // 系统消息保留，最早的用户消息被淘汰：3 + 4 + 2 <= 10
+        assertEquals(3, messages.size());
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertEquals("bbbb", ((AiMessage) messages.get(1)).text());
+    }
+
+    @Test
+    void neverSplitToolRequestFromResults() {
+        TokenBudgetChatMemory chatMemory = newMemory(12);
+        chatMemory.add(UserMessage.from("u"));
+        chatMemory.add(toolRequest("1", "aa"));
+        chatMemory.add(ToolExecutionResultMessage.from("1", "writeFile", "ok"));
+        chatMemory.add(toolRequest("2", "bb"));
+        chatMemory.add(ToolExecutionResultMessage.from("2", "writeFile", "ok"));
+        // 新的大工具结果：必须连同请求一起淘汰前面的单元，不能留下孤立的工具结果
+        chatMemory.add(toolRequest("3", "cccc"));
+        chatMemory.add(ToolExecutionResultMessage.from("3", "writeFile", "dddd"));
+        List<ChatMessage> messages = chatMemory.messages();
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof ToolExecutionResultMessage) {
+                assertTrue(i > 0, "工具结果不能出现在开头");
+                ChatMessage previous = messages.get(i - 1);
+                assertTrue(previous instanceof ToolExecutionResultMessage
+                        || (previous instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()));
+            }
+        }
+        assertEquals("3", ((ToolExecutionResultMessage) messages.get(messages.size() - 1)).id());
+    }
+
+    @Test
+    void keepLatestUnitEvenIfOverBudget() {
+        TokenBudgetChatMemory chatMemory = newMemory(5);
+        chatMemory.add(UserMessage.from("hello"));
+        chatMemory.add(UserMessage.from("a very long message"));
+        List<ChatMessage> messages = chatMemory.messages();
+        assertEquals(1, messages.size());
+        assertEquals("a very long message", ((UserMessage) messages.get(0)).singleText());
+    }
+
+    @Test
+    void keepSystemMessageFirstAndEvictToTarget() {
+        TokenBudgetChatMemory chatMemory = TokenBudgetChatMemory.builder()
+                .id(1L)
+                .chatMemoryStore(new InMemoryChatMemoryStore())
+                .maxTokens(20, CHAR_ESTIMATOR)
+                .evictionTargetRatio(0.5)
+                .build();
+        chatMemory.add(UserMessage.from("aaaa"));
+        chatMemory.add(AiMessage.from("bbbb"));
+        // 后来替换的系统消息仍然在第一条，保证请求前缀稳定
+        chatMemory.add(SystemMessage.from("sys"));
+        chatMemory.add(UserMessage.from("cccc"));
+        List<ChatMessage> messages = chatMemory.messages();
+        assertEquals(4, messages.size());
+        assertEquals("sys", ((SystemMessage) messages.get(0)).text());
+        // 超出 20 后一次淘汰到 10 以下，只剩系统消息和最新的一条
+        chatMemory.add(AiMessage.from("dd"));
+        chatMemory.add(UserMessage.from("eeeeeeeeeeeee"));
+        messages = chatMemory.messages();
+        assertEquals(2, messages.size());
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+    }
+
+    /**
+     * 哈希值固定的消息，用来模拟哈希冲突
+     */
+    private record CollidingMessage(String text, int tokens) implements ChatMessage {
+
+        @Override
+        public ChatMessageType type() {
+            return ChatMessageType.USER;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    @Test
+    void hashCollisionDoesNotShareTokenCount() {
+        TokenCountEstimator estimator = new TokenCountEstimator() {
+            @Override
+            public int estimateTokenCountInText(String text) {
+                return text.length();
+            }
+
+            @Override
+            public int estimateTokenCountInMessage(ChatMessage message) {
+                return message instanceof CollidingMessage collidingMessage ? collidingMessage.tokens() : 0;
+            }
+
+            @Override
+            public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+                int total = 0;
+                for (ChatMessage message : messages) {
+                    total += estimateTokenCountInMessage(message);
+                }
+                return total;
+            }
+        };
+        TokenBudgetChatMemory chatMemory = TokenBudgetChatMemory.builder()
+                .id(1L)
+                .chatMemoryStore(new InMemoryChatMemoryStore())
+                .maxTokens(10, estimator)
+                .build();
+        chatMemory.add(new CollidingMessage("short", 1));
+        chatMemory.add(new CollidingMessage("long", 20));
+        // 第二条按自己的 Token 数计算：1 + 20 超出预算，淘汰第一条
+        List<ChatMessage> messages = chatMemory.messages();
+        assertEquals(1, messages.size());
+        assertEquals("long", ((CollidingMessage) messages.get(0)).text());
+    }
+}
@@ -0,0 +1,55 @@
+package com.wjp.waicodermotherbackend.ai.memory;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.wjp.waicodermotherbackend.ai.model.message.ToolRequestMessage;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistoryOriginal;
+import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolCallHistoryCompactorTest {
+
+    private static ChatHistoryOriginal writeFileRequest(long id, String path, String content) {
+        ToolRequestMessage toolRequestMessage = new ToolRequestMessage();
+        toolRequestMessage.setId("call_" + id);
+        toolRequestMessage.setName(ToolCallHistoryCompactor.WRITE_FILE_TOOL);
+        toolRequestMessage.setArguments(JSONUtil.createObj()
+                .set("relativeFilePath", path)
+                .set("content", content)
+                .toString());
+        return ChatHistoryOriginal.builder()
+                .id(id)
+                .message(JSONUtil.toJsonStr(toolRequestMessage))
+                .messageType(ChatHistoryMessageTypeEnum.TOOL_EXECUTION_REQUEST.getValue())
+                .build();
+    }
+
+    private static JSONObject arguments(ChatHistoryOriginal history) {
+        return JSONUtil.parseObj(JSONUtil.toBean(history.getMessage(), ToolRequestMessage.class).getArguments());
+    }
+
+    @Test
+    void keepOnlyLatestVersionOfEachFile() {
+        List<ChatHistoryOriginal> historyList = new ArrayList<>();
+        historyList.add(writeFileRequest(1, "src/App.vue", "<template>v1</template>"));
+        historyList.add(writeFileRequest(2, "src/main.js", "createApp(App)"));
+        historyList.add(writeFileRequest(3, "src/App.vue", "<template>v2</template>"));
+
+        List<ChatHistoryOriginal> changedList = ToolCallHistoryCompactor.compact(historyList);
+
+        assertEquals(1, changedList.size());
+        assertEquals(1L, changedList.get(0).getId());
+        JSONObject oldArguments = arguments(historyList.get(0));
+        assertNotNull(oldArguments.getStr(ToolCallHistoryCompactor.CONTENT_HASH_KEY));
+        assertTrue(oldArguments.getStr("content").contains("readFile"));
+        assertEquals("createApp(App)", arguments(historyList.get(1)).getStr("content"));
+        assertEquals("<template>v2</template>", arguments(historyList.get(2)).getStr("content"));
+        // 再次压缩不会重复修改
+        assertTrue(ToolCallHistoryCompactor.compact(historyList).isEmpty());
+    }
+}
@@ -0,0 +1,48 @@
+package com.wjp.waicodermotherbackend.ai.routing;
+
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordCodeGenTypeClassifierTest {
+
+    private static KeywordCodeGenTypeClassifier.Classification classify(String prompt) {
+        return KeywordCodeGenTypeClassifier.classify(KeywordCodeGenTypeClassifier.normalize(prompt), 4, 3);
+    }
+
+    @Test
+    void classifyClearPrompts() {
+        KeywordCodeGenTypeClassifier.Classification vue = classify("做一个 Vue 后台管理系统，包含用户登录和权限");
+        assertTrue(vue.confident());
+        assertEquals(CodeGenTypeEnum.VUE_PROJECT, vue.codeGenType());
+
+        KeywordCodeGenTypeClassifier.Classification html = classify("帮我写一个产品介绍的单页面");
+        assertTrue(html.confident());
+        assertEquals(CodeGenTypeEnum.HTML, html.codeGenType());
+    }
+
+    @Test
+    void fallBackForAmbiguousPrompts() {
+        assertFalse(classify("帮我做一个网站").confident());
+        // 同时命中多个类型且分差不足时交给路由模型
+        assertFalse(classify("简单的单页面，带登录注册和购物车").confident());
+    }
+
+    @Test
+    void overlappingKeywordsScoreOnce() {
+        // 只算最长的 "后台管理"，不再叠加 "后台"
+        assertEquals(4, KeywordCodeGenTypeClassifier.score("后台管理").get(CodeGenTypeEnum.VUE_PROJECT));
+        // 只算 "单页面"，不再叠加 "单页"
+        assertEquals(4, KeywordCodeGenTypeClassifier.score("单页面").get(CodeGenTypeEnum.HTML));
+        // 不重叠的多次出现仍然只计一次
+        assertEquals(2, KeywordCodeGenTypeClassifier.score("后台和后台").get(CodeGenTypeEnum.VUE_PROJECT));
+    }
+
+    @Test
+    void genericWordsDoNotRouteToVue() {
+        assertEquals(0, KeywordCodeGenTypeClassifier.score("带登录注册").get(CodeGenTypeEnum.VUE_PROJECT));
+        assertEquals(0, KeywordCodeGenTypeClassifier.score("用 react 写").get(CodeGenTypeEnum.VUE_PROJECT));
+        assertFalse(classify("做一个带登录注册的页面").confident());
+    }
+}
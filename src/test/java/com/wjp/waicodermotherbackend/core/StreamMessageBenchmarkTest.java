@@ -0,0 +1,161 @@
+package com.wjp.waicodermotherbackend.core;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.wjp.waicodermotherbackend.ai.model.message.AIResponseMessage;
+import com.wjp.waicodermotherbackend.ai.model.message.StreamMessage;
+import com.wjp.waicodermotherbackend.ai.model.message.StreamMessageTypeEnum;
+import com.wjp.waicodermotherbackend.config.GenerationStreamConfig;
+import com.wjp.waicodermotherbackend.core.handler.JsonMessageStreamHandler;
+import com.wjp.waicodermotherbackend.core.history.ChatHistoryWriteBehind;
+import com.wjp.waicodermotherbackend.core.history.PendingChatHistory;
+import com.wjp.waicodermotherbackend.core.stream.GenerationCheckpointer;
+import com.wjp.waicodermotherbackend.core.stream.StreamMemoryAccount;
+import com.wjp.waicodermotherbackend.core.stream.StreamMemoryBudget;
+import com.wjp.waicodermotherbackend.model.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * VUE_PROJECT 流式消息链路的基准对比（每个 token 的分配字节数和 CPU 时间）：
+ * 改造前：门面把每个片段序列化为 JSON 字符串，处理器再反序列化（legacyHandle 照搬改造前 JsonMessageStreamHandler 的处理逻辑）
+ * 改造后：门面直接传递 StreamMessage 对象，由真实的 JsonMessageStreamHandler 处理
+ *
+ * 分配量受 JIT 和 GC 影响，不在常规单元测试中运行：
+ * mvn test -Dtest=StreamMessageBenchmarkTest -Dbenchmark=true
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StreamMessageBenchmarkTest {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int TOKENS = 100_000;
+
+    private static final String TOKEN = "<div class=\"card\">";
+
+    private final JsonMessageStreamHandler handler = newHandler();
+
+    private final StreamMemoryBudget memoryBudget = newMemoryBudget();
+
+    private final User loginUser = User.builder().id(1L).build();
+
+    /**
+     * 对话历史不入库
+     */
+    private static JsonMessageStreamHandler newHandler() {
+        JsonMessageStreamHandler handler = new JsonMessageStreamHandler();
+        ReflectionTestUtils.setField(handler, "chatHistoryWriteBehind", new ChatHistoryWriteBehind() {
+            @Override
+            public void submit(List<PendingChatHistory> records, Runnable onPersisted) {
+            }
+        });
+        return handler;
+    }
+
+    private static StreamMemoryBudget newMemoryBudget() {
+        StreamMemoryBudget budget = new StreamMemoryBudget();
+        ReflectionTestUtils.setField(budget, "generationStreamConfig", new GenerationStreamConfig());
+        ReflectionTestUtils.setField(budget, "meterRegistry", new SimpleMeterRegistry());
+        budget.init();
+        ReflectionTestUtils.setField(budget, "budgetBytes", Long.MAX_VALUE / 2);
+        return budget;
+    }
+
+    /**
+     * 改造前的链路：门面逐片段序列化，处理器先按类型反序列化判断构建进度，再在 handleJsonMessageChunk 中反序列化两次
+     */
+    private static Flux<String> legacyHandle(Flux<String> originFlux, StringBuilder chatHistoryStringBuilder,
+                                             StringBuilder aiResponseStringBuilder) {
+        return originFlux
+                .map(chunk -> {
+                    StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
+                    if (StreamMessageTypeEnum.BUILD_PROGRESS.getValue().equals(streamMessage.getType())) {
+                        return "";
+                    }
+                    StreamMessage chunkMessage = JSONUtil.toBean(chunk, StreamMessage.class);
+                    StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(chunkMessage.getType());
+                    if (typeEnum != StreamMessageTypeEnum.AI_RESPONSE) {
+                        return "";
+                    }
+                    AIResponseMessage aiMessage = JSONUtil.toBean(chunk, AIResponseMessage.class);
+                    String data = aiMessage.getData();
+                    chatHistoryStringBuilder.append(data);
+                    aiResponseStringBuilder.append(data);
+                    return data;
+                })
+                .filter(StrUtil::isNotEmpty);
+    }
+
+    /**
+     * 改造前：门面发送 JSON 字符串
+     */
+    private long runLegacy(int tokens) {
+        Flux<String> originFlux = Flux.range(0, tokens)
+                .map(i -> JSONUtil.toJsonStr(new AIResponseMessage(TOKEN)));
+        return drain(legacyHandle(originFlux, new StringBuilder(), new StringBuilder()));
+    }
+
+    /**
+     * 改造后：门面发送 StreamMessage 对象
+     */
+    private long runTyped(int tokens) {
+        Flux<StreamMessage> originFlux = Flux.range(0, tokens)
+                .map(i -> new AIResponseMessage(TOKEN));
+        StreamMemoryAccount memoryAccount = memoryBudget.open(1L);
+        try {
+            return drain(handler.handle(originFlux, null, null, 1L, loginUser, memoryAccount, GenerationCheckpointer.NOOP));
+        } finally {
+            memoryAccount.close();
+        }
+    }
+
+    private static long drain(Flux<String> flux) {
+        Long chars = flux.reduce(0L, (sum, chunk) -> sum + chunk.length()).block();
+        return chars == null ? 0 : chars;
+    }
+
+    /**
+     * @return [每 token 分配字节数, 每 token CPU 纳秒]
+     */
+    private static long[] measure(IntFunction<Long> pipeline) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            pipeline.apply(TOKENS);
+        }
+        long startBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+        long startCpu = threadMXBean.getCurrentThreadCpuTime();
+        long chars = pipeline.apply(TOKENS);
+        long bytes = threadMXBean.getCurrentThreadAllocatedBytes() - startBytes;
+        long cpu = threadMXBean.getCurrentThreadCpuTime() - startCpu;
+        // 两条链路输出的内容必须一致，基准才有意义
+        assertEquals((long) TOKENS * TOKEN.length(), chars);
+        return new long[]{bytes / TOKENS, cpu / TOKENS};
+    }
+
+    @Test
+    void typedMessagesAllocateLessThanJsonRoundTrip() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported());
+        assumeTrue(threadMXBean.isCurrentThreadCpuTimeSupported());
+
+        long[] legacy = measure(this::runLegacy);
+        long[] typed = measure(this::runTyped);
+        log.info("改造前（JSON 往返）：{} 字节/token，{} ns CPU/token", legacy[0], legacy[1]);
+        log.info("改造后（类型化消息）：{} 字节/token，{} ns CPU/token", typed[0], typed[1]);
+
+        assertTrue(typed[0] < legacy[0], "类型化消息的分配量应小于 JSON 往返");
+    }
+}
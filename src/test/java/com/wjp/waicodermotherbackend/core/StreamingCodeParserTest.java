@@ -0,0 +1,100 @@
+package com.wjp.waicodermotherbackend.core;
+
+import com.wjp.waicodermotherbackend.core.parser.StreamingCodeParser;
+import com.wjp.waicodermotherbackend.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingCodeParserTest {
+
+    /**
+     * 按固定长度切分内容，模拟流式片段（围栏会被切断在不同片段中）
+     */
+    private static void feed(StreamingCodeParser parser, String content, int chunkSize) {
+        for (int i = 0; i < content.length(); i += chunkSize) {
+            parser.append(content.substring(i, Math.min(content.length(), i + chunkSize)));
+        }
+        parser.finish();
+    }
+
+    @Test
+    void parseMultiFileCodeIncrementally() {
+        String codeContent = """
+                创建一个完整的网页：
+                ```html
+                <!DOCTYPE html>
+                <html><body><h1>`多文件`示例</h1></body></html>
+                ```
+                ```css
+                h1 { color: blue; }
+                ```
+                ```javascript
+                console.log('hello');
+                ```
+                ```js
+                console.log('ignored');
+                ```
+                """;
+        Map<String, String> blocks = new LinkedHashMap<>();
+        feed(new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, blocks::put), codeContent, 2);
+        assertEquals(3, blocks.size());
+        assertTrue(blocks.get("html").contains("`多文件`"));
+        assertEquals("h1 { color: blue; }", blocks.get("css"));
+        assertEquals("console.log('hello');", blocks.get("js"));
+    }
+
+    @Test
+    void ignoreInlineFenceInProse() {
+        String codeContent = """
+                下面的代码用 ```html``` 包裹：
+                ```html
+                <html><body>真正的代码块</body></html>
+                ```
+                """;
+        for (int chunkSize : new int[]{1, 3, 7}) {
+            Map<String, String> blocks = new LinkedHashMap<>();
+            feed(new StreamingCodeParser(CodeGenTypeEnum.HTML, blocks::put), codeContent, chunkSize);
+            assertEquals("<html><body>真正的代码块</body></html>", blocks.get("html"));
+        }
+    }
+
+    @Test
+    void parseHtmlCodeWithoutFence() {
+        String codeContent = "<html><body>没有代码围栏</body></html>";
+        Map<String, String> blocks = new LinkedHashMap<>();
+        feed(new StreamingCodeParser(CodeGenTypeEnum.HTML, blocks::put), codeContent, 5);
+        assertEquals(codeContent, blocks.get("html"));
+    }
+
+    @Test
+    void ignoreUnclosedBlock() {
+        String codeContent = "```css\nh1 {}\n```\n```html\n<html>";
+        Map<String, String> blocks = new LinkedHashMap<>();
+        feed(new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, blocks::put), codeContent, 3);
+        assertEquals(1, blocks.size());
+        assertNull(blocks.get("html"));
+    }
+
+    @Test
+    void bufferedLengthDropsWhenBlockCloses() {
+        StreamingCodeParser multiFileParser = new StreamingCodeParser(CodeGenTypeEnum.MULTI_FILE, (language, code) -> {
+        });
+        multiFileParser.append("```css\nh1 {}");
+        assertEquals("h1 {}".length(), multiFileParser.getBufferedLength());
+        multiFileParser.append("\n```");
+        assertEquals(0, multiFileParser.getBufferedLength());
+
+        // HTML 类型在 html 代码块闭合前还保留着兜底内容
+        StreamingCodeParser htmlParser = new StreamingCodeParser(CodeGenTypeEnum.HTML, (language, code) -> {
+        });
+        String prefix = "说明\n```html\n<p>";
+        htmlParser.append(prefix);
+        assertEquals(prefix.length() + "<p>".length(), htmlParser.getBufferedLength());
+        htmlParser.append("</p>\n```");
+        assertEquals(0, htmlParser.getBufferedLength());
+    }
+}
@@ -0,0 +1,29 @@
+package com.wjp.waicodermotherbackend.core.history;
+
+import com.wjp.waicodermotherbackend.model.entity.ConversationEvent;
+import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationEventProjectionTest {
+
+    @Test
+    void mergeMessagesWrittenToBothProjections() {
+        String user = ChatHistoryMessageTypeEnum.USER.getValue();
+        String ai = ChatHistoryMessageTypeEnum.AI.getValue();
+        List<ConversationEvent> events = ConversationEventProjection.toEvents(List.of(
+                PendingChatHistory.chatHistory(1L, "做一个博客", user, 2L),
+                PendingChatHistory.original(1L, "做一个博客", user, 2L),
+                PendingChatHistory.chatHistory(1L, "好的，已生成", ai, 2L),
+                PendingChatHistory.original(1L, "已生成", ai, 2L)));
+
+        assertEquals(3, events.size());
+        assertEquals(ConversationEventProjection.VISIBILITY_DISPLAY | ConversationEventProjection.VISIBILITY_REPLAY,
+                events.get(0).getVisibility());
+        assertEquals(ConversationEventProjection.VISIBILITY_DISPLAY, events.get(1).getVisibility());
+        assertEquals(ConversationEventProjection.VISIBILITY_REPLAY, events.get(2).getVisibility());
+    }
+}
@@ -0,0 +1,67 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import cn.hutool.json.JSONUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ActiveGenerationTest {
+
+    private static ActiveGeneration finishedGeneration(int replayBufferSize, String... chunks) {
+        ActiveGeneration generation = new ActiveGeneration(1L, "req-1", replayBufferSize);
+        generation.connect(Flux.fromArray(chunks).map(ActiveGeneration::contentFrame), signalType -> {
+        });
+        return generation;
+    }
+
+    private static String content(ServerSentEvent<String> frame) {
+        return JSONUtil.parseObj(frame.data()).getStr("d");
+    }
+
+    @Test
+    void replayWithinBufferHasNoReset() {
+        ActiveGeneration generation = finishedGeneration(4, "a", "b", "c");
+        List<ServerSentEvent<String>> frames = generation.asFlux(1L).collectList().block();
+
+        assertEquals(2, frames.size());
+        assertNull(frames.get(0).event());
+        assertEquals("2", frames.get(0).id());
+        assertEquals("b", content(frames.get(0)));
+    }
+
+    @Test
+    void lateViewerGetsResetWithEvictedContent() {
+        ActiveGeneration generation = finishedGeneration(2, "a", "b", "c", "d", "e");
+        List<ServerSentEvent<String>> frames = generation.asFlux(null).collectList().block();
+
+        assertEquals(3, frames.size());
+        assertEquals(ActiveGeneration.RESET_EVENT, frames.get(0).event());
+        assertEquals("3", frames.get(0).id());
+        assertEquals("abc", content(frames.get(0)));
+        assertEquals("d", content(frames.get(1)));
+        assertEquals("e", content(frames.get(2)));
+    }
+
+    @Test
+    void reconnectOlderThanBufferGetsReset() {
+        ActiveGeneration generation = finishedGeneration(2, "a", "b", "c", "d", "e");
+        List<ServerSentEvent<String>> frames = generation.asFlux(1L).collectList().block();
+
+        // 前端用 reset 的完整内容替换已显示的 "a"
+        assertEquals(ActiveGeneration.RESET_EVENT, frames.get(0).event());
+        assertEquals("abc", content(frames.get(0)));
+        assertEquals(List.of("4", "5"), frames.subList(1, frames.size()).stream().map(ServerSentEvent::id).toList());
+    }
+
+    @Test
+    void contentIncludesEvictedAndRetainedFrames() {
+        ActiveGeneration generation = finishedGeneration(2, "a", "b", "c", "d", "e");
+
+        assertEquals("abcde", generation.getContent());
+    }
+}
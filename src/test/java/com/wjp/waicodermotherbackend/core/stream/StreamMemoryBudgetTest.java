@@ -0,0 +1,91 @@
+package com.wjp.waicodermotherbackend.core.stream;
+
+import com.wjp.waicodermotherbackend.config.GenerationStreamConfig;
+import com.wjp.waicodermotherbackend.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamMemoryBudgetTest {
+
+    private static final long MB = 1024L * 1024L;
+
+    /**
+     * 预算 5 MB，每个流预留 2 MB：最多同时放行 2 个
+     */
+    private static StreamMemoryBudget newBudget() {
+        StreamMemoryBudget budget = new StreamMemoryBudget();
+        ReflectionTestUtils.setField(budget, "generationStreamConfig", new GenerationStreamConfig());
+        ReflectionTestUtils.setField(budget, "meterRegistry", new SimpleMeterRegistry());
+        budget.init();
+        ReflectionTestUtils.setField(budget, "budgetBytes", 5 * MB);
+        return budget;
+    }
+
+    private static long usedBytes(StreamMemoryBudget budget) {
+        return ((AtomicLong) ReflectionTestUtils.getField(budget, "usedBytes")).get();
+    }
+
+    @Test
+    void burstOfOpensReservesAtomically() throws InterruptedException {
+        StreamMemoryBudget budget = newBudget();
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger admitted = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            long appId = i;
+            Thread.startVirtualThread(() -> {
+                try {
+                    start.await();
+                    budget.open(appId);
+                    admitted.incrementAndGet();
+                } catch (BusinessException | InterruptedException ignored) {
+                    // 预算不足被拒绝
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        // 还没有输出任何内容，也只能放行预留容得下的数量
+        assertEquals(2, admitted.get());
+        assertEquals(4 * MB, usedBytes(budget));
+    }
+
+    @Test
+    void reserveIsCreditedAgainstRealAllocation() {
+        StreamMemoryBudget budget = newBudget();
+        StreamMemoryAccount account = budget.open(1L);
+        // 1 MB 以内的占用抵扣预留，不额外记账
+        account.addChars("a".repeat((int) (MB / 2)));
+        assertEquals(2 * MB, usedBytes(budget));
+        // 超出预留的部分才记账：共 3 MB
+        account.addChars("a".repeat((int) MB));
+        assertEquals(3 * MB, usedBytes(budget));
+        account.close();
+        assertEquals(0, usedBytes(budget));
+    }
+
+    @Test
+    void releasedCharsAreReturnedAboveReserve() {
+        StreamMemoryBudget budget = newBudget();
+        StreamMemoryAccount account = budget.open(1L);
+        // 占用 3 MB（超出预留 1 MB）
+        account.adjustChars(3 * MB / 2);
+        assertEquals(3 * MB, usedBytes(budget));
+        // 释放 1.5 MB：回到预留以内，只归还超出预留的部分
+        account.adjustChars(-3 * MB / 4);
+        assertEquals(2 * MB, usedBytes(budget));
+        assertEquals(3 * MB / 2, account.getBytes());
+        account.close();
+        assertEquals(0, usedBytes(budget));
+    }
+}
@@ -0,0 +1,60 @@
+package com.wjp.waicodermotherbackend.service.impl;
+
+import com.wjp.waicodermotherbackend.model.entity.ChatHistoryOriginal;
+import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatHistoryOriginalServiceImplTest {
+
+    private static ChatHistoryOriginal history(long id, ChatHistoryMessageTypeEnum messageType) {
+        return ChatHistoryOriginal.builder()
+                .id(id)
+                .message("m" + id)
+                .messageType(messageType.getValue())
+                .build();
+    }
+
+    private static List<Long> ids(List<ChatHistoryOriginal> historyList) {
+        return historyList.stream().map(ChatHistoryOriginal::getId).toList();
+    }
+
+    @Test
+    void skipNewestUserMessageAndKeepMaxCount() {
+        List<ChatHistoryOriginal> newestFirst = List.of(
+                history(5, ChatHistoryMessageTypeEnum.USER),
+                history(4, ChatHistoryMessageTypeEnum.AI),
+                history(3, ChatHistoryMessageTypeEnum.USER),
+                history(2, ChatHistoryMessageTypeEnum.AI),
+                history(1, ChatHistoryMessageTypeEnum.USER));
+        assertEquals(List.of(4L, 3L), ids(ChatHistoryOriginalServiceImpl.trimHistoryWindow(newestFirst, 2)));
+        assertTrue(ChatHistoryOriginalServiceImpl.trimHistoryWindow(newestFirst.subList(0, 1), 2).isEmpty());
+    }
+
+    @Test
+    void keepNewestAiReplyWhileUserMessageIsQueued() {
+        // 本轮用户消息还在 write-behind 队列中，最新一条是上一轮的 AI 回复，不能跳过
+        List<ChatHistoryOriginal> newestFirst = List.of(
+                history(4, ChatHistoryMessageTypeEnum.AI),
+                history(3, ChatHistoryMessageTypeEnum.USER),
+                history(2, ChatHistoryMessageTypeEnum.AI),
+                history(1, ChatHistoryMessageTypeEnum.USER));
+        assertEquals(List.of(4L, 3L), ids(ChatHistoryOriginalServiceImpl.trimHistoryWindow(newestFirst, 2)));
+    }
+
+    @Test
+    void keepToolRequestWithEdgeResult() {
+        List<ChatHistoryOriginal> newestFirst = List.of(
+                history(5, ChatHistoryMessageTypeEnum.USER),
+                history(4, ChatHistoryMessageTypeEnum.AI),
+                history(3, ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT),
+                history(2, ChatHistoryMessageTypeEnum.TOOL_EXECUTION_REQUEST));
+        // 边界是工具结果：带上多查的那一条工具请求
+        assertEquals(List.of(4L, 3L, 2L), ids(ChatHistoryOriginalServiceImpl.trimHistoryWindow(newestFirst, 2)));
+        // 找不到对应请求的工具结果直接丢弃
+        assertEquals(List.of(4L), ids(ChatHistoryOriginalServiceImpl.trimHistoryWindow(newestFirst.subList(0, 3), 2)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.wjp.waicodermotherbackend.service.impl;
+
+import com.mybatisflex.core.query.QueryWrapper;
+import com.wjp.waicodermotherbackend.model.entity.ChatHistory;
+import com.wjp.waicodermotherbackend.model.enums.ChatHistoryMessageTypeEnum;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatHistoryServiceImplTest {
+
+    /**
+     * 模拟数据库：list 直接返回已入库的记录（新的在前）
+     */
+    private static ChatHistoryServiceImpl serviceWithRows(List<ChatHistory> newestFirst) {
+        return new ChatHistoryServiceImpl() {
+            @Override
+            public List<ChatHistory> list(QueryWrapper query) {
+                return new ArrayList<>(newestFirst);
+            }
+        };
+    }
+
+    private static ChatHistory history(long id, ChatHistoryMessageTypeEnum messageType, String message) {
+        return ChatHistory.builder()
+                .id(id)
+                .appId(1L)
+                .message(message)
+                .messageType(messageType.getValue())
+                .build();
+    }
+
+    private static List<ChatMessage> hydrate(List<ChatHistory> newestFirst) {
+        MessageWindowChatMemory chatMemory = MessageWindowChatMemory.withMaxMessages(20);
+        serviceWithRows(newestFirst).loadChatHistoryToMemory(1L, chatMemory, 10);
+        return chatMemory.messages();
+    }
+
+    @Test
+    void keepLastReplyWhileUserMessageIsQueued() {
+        // 本轮用户消息还在 write-behind 队列中，数据库最新一条是上一轮的 AI 回复
+        List<ChatMessage> messages = hydrate(List.of(
+                history(2, ChatHistoryMessageTypeEnum.AI, "reply 1"),
+                history(1, ChatHistoryMessageTypeEnum.USER, "question 1")));
+        assertEquals(2, messages.size());
+        assertEquals("question 1", ((UserMessage) messages.get(0)).singleText());
+        assertEquals("reply 1", ((AiMessage) messages.get(1)).text());
+    }
+
+    @Test
+    void skipUserMessageAlreadyPersisted() {
+        // 本轮用户消息已经入库，AI 服务调用时会重新写入，加载时跳过
+        List<ChatMessage> messages = hydrate(List.of(
+                history(3, ChatHistoryMessageTypeEnum.USER, "question 2"),
+                history(2, ChatHistoryMessageTypeEnum.AI, "reply 1"),
+                history(1, ChatHistoryMessageTypeEnum.USER, "question 1")));
+        assertEquals(2, messages.size());
+        assertEquals("reply 1", ((AiMessage) messages.get(1)).text());
+    }
+}